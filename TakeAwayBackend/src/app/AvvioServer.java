@@ -1,15 +1,20 @@
 package app;
 
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.net.InetSocketAddress;
 
 import server.*;
 
 import database.GestoreDatabase;
+import database.StatisticheQuery;
 
+import dominio.CatalogoImmagini;
 import dominio.CatalogoProdotti;
 import dominio.GestoreOrdini;
-import dominio.Carrello;
+import dominio.GestoreCarrelli;
 
 /*
  * ============================================================
@@ -21,9 +26,10 @@ import dominio.Carrello;
  *
  * Qui vengono eseguite tutte le operazioni di inizializzazione:
  * - avvio del server HTTP
+ * - scelta dell'Executor che esegue le richieste
  * - creazione della connessione al database
  * - istanziazione delle classi di dominio principali
- * - registrazione degli HttpHandler (rotte)
+ * - registrazione degli HttpHandler (rotte) e dei filtri
  *
  * ------------------------------------------------------------
  * NOTA SULL'USO DI "throws Exception"
@@ -66,55 +72,139 @@ public class AvvioServer {
         // CONFIGURAZIONE E AVVIO SERVER HTTP
         // ====================================================
 
+        // Elaborazione immagini senza display (server)
+        System.setProperty("java.awt.headless", "true");
+
+        // Lunghezza della coda di connessioni in attesa di accettazione
+        // (0 = valore di default del sistema operativo)
+        int backlog = Integer.getInteger("takeaway.backlog", 0);
+
         // Creazione del server HTTP sulla porta 8080
-        HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
-        System.out.println("Server avviato sulla porta 8080");
+        HttpServer server = HttpServer.create(new InetSocketAddress(8080), backlog);
+
+        // Executor su cui vengono eseguiti gli handler
+        EsecutoreRichieste esecutore = new EsecutoreRichieste();
+        server.setExecutor(esecutore.getExecutor());
+
+        System.out.println("Server avviato sulla porta 8080 ("
+                + esecutore.getDescrizione() + ", backlog " + backlog + ")");
 
         // ====================================================
         // INIZIALIZZAZIONE COMPONENTI PRINCIPALI
         // ====================================================
 
-        // Gestore della connessione e delle operazioni sul database
+        // Gestore del pool di connessioni al database
         GestoreDatabase gestoreDatabase = new GestoreDatabase();
 
         // Catalogo dei prodotti disponibili nel menu
         CatalogoProdotti catalogoProdotti = new CatalogoProdotti(gestoreDatabase);
 
+        // Cache delle immagini dei prodotti e dei derivati ridimensionati,
+        // rigenerati a ogni cambiamento del catalogo
+        CatalogoImmagini catalogoImmagini = new CatalogoImmagini(gestoreDatabase);
+        catalogoImmagini.osserva(catalogoProdotti);
+
         // Gestore degli ordini (creazione, salvataggio, stato)
         GestoreOrdini gestoreOrdini = new GestoreOrdini(gestoreDatabase);
 
-        // Carrello condiviso per la sessione utente
-        Carrello carrello = new Carrello();
+        // Carrelli dei clienti, uno per sessione (cookie)
+        GestoreCarrelli gestoreCarrelli = new GestoreCarrelli();
 
         // ====================================================
         // REGISTRAZIONE DEGLI HANDLER (ROTTE)
         // ====================================================
 
+        // Metriche delle richieste (primo filtro: misura anche
+        // la compressione e i byte effettivamente inviati)
+        FiltroMetriche filtroMetriche = new FiltroMetriche();
+
+        // Filtri applicati a tutte le rotte
+        Filter[] filtri = {
+                filtroMetriche,
+                new FiltroCompressione()
+        };
+
         // Pagina principale con menu prodotti
-        server.createContext("/", new MenuHandler(catalogoProdotti, carrello));
+        registra(server, filtri, "/", new MenuHandler(catalogoProdotti));
 
         // Gestione del carrello (aggiunta, rimozione, visualizzazione)
-        server.createContext("/carrello", new CarrelloHandler(carrello, catalogoProdotti));
+        registra(server, filtri, "/carrello", new CarrelloHandler(gestoreCarrelli, catalogoProdotti));
+
+        // API del carrello usata dal menu (risposte JSON, nessun redirect)
+        registra(server, filtri, "/carrello/api", new CarrelloApiHandler(gestoreCarrelli, catalogoProdotti));
 
         // Creazione e invio dell'ordine
-        server.createContext("/ordine", new OrdineHandler(gestoreOrdini, carrello));
+        registra(server, filtri, "/ordine", new OrdineHandler(gestoreOrdini, gestoreCarrelli));
 
         // Login area staff
-        server.createContext("/staff/login", new LoginStaffHandler());
+        registra(server, filtri, "/staff/login", new LoginStaffHandler());
 
         // Dashboard staff per la gestione degli ordini
-        server.createContext("/staff/dashboard", new DashboardStaffHandler(gestoreOrdini));
+        registra(server, filtri, "/staff/dashboard", new DashboardStaffHandler(gestoreOrdini));
+
+        // Tempi di permanenza degli ordini negli stati (cucina)
+        registra(server, filtri, "/staff/tempi", new TempiStaffHandler(gestoreOrdini.getTempiStato()));
 
-        // Servizio per il recupero delle immagini dal database
-        server.createContext("/img", new ImageHandler(gestoreDatabase));
+        // Eventi degli ordini in tempo reale per la dashboard (SSE)
+        registra(server, filtri, "/staff/eventi", new EventiStaffHandler(gestoreOrdini.getBusEventi()));
+
+        // Servizio delle immagini dei prodotti (cache in memoria + ETag)
+        registra(server, filtri, "/img", new ImageHandler(catalogoImmagini));
 
         // Verifica stato ordine da parte del cliente
-        server.createContext("/ordine/stato", new StatoOrdineClienteHandler(gestoreOrdini));
+        registra(server, filtri, "/ordine/stato", new StatoOrdineClienteHandler(gestoreOrdini));
+
+        // Attesa dei cambi di stato da parte del cliente (long-poll)
+        registra(server, filtri, "/ordine/stato/attesa", new AttesaStatoOrdineHandler(gestoreOrdini));
+
+        // Metriche in formato Prometheus (scraper locale)
+        registra(server, filtri, "/metrics", new MetricheHandler(
+                filtroMetriche, gestoreDatabase, gestoreOrdini, gestoreCarrelli));
 
         // ====================================================
         // AVVIO SERVER
         // ====================================================
 
         server.start();
+
+        // Arresto ordinato: termina le richieste in corso
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            esecutore.chiudi();
+            gestoreCarrelli.chiudi();
+            gestoreOrdini.chiudi();
+
+            // Riepilogo delle query, dalla più onerosa
+            for (StatisticheQuery statistiche : gestoreDatabase.getStatisticheQuery()) {
+                System.out.println("Query " + statistiche);
+            }
+
+            gestoreDatabase.chiudi();
+        }));
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Registra una rotta applicando i filtri comuni.
+     *
+     * @param server  server HTTP
+     * @param filtri  filtri da applicare, nell'ordine
+     * @param percorso percorso della rotta
+     * @param handler handler della rotta
+     */
+    private static void registra(
+            HttpServer server,
+            Filter[] filtri,
+            String percorso,
+            HttpHandler handler
+    ) {
+        HttpContext contesto = server.createContext(percorso, handler);
+
+        for (Filter filtro : filtri) {
+            contesto.getFilters().add(filtro);
+        }
     }
 }
@@ -0,0 +1,318 @@
+package app;
+
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * ============================================================
+ * CLASSE ESECUTORE RICHIESTE
+ * ============================================================
+ *
+ * Questa classe costruisce l'Executor a cui l'HttpServer
+ * affida l'esecuzione degli handler.
+ *
+ * Senza un Executor esplicito l'HttpServer esegue ogni
+ * handler sul proprio thread di dispatch: una richiesta lenta
+ * (caricamento prodotti, lettura di un'immagine) blocca
+ * tutte le altre.
+ *
+ * Modalità disponibili (proprietà di sistema
+ * "takeaway.esecutore"):
+ * - virtuale → un virtual thread per ogni richiesta
+ * - pool     → pool limitato di thread di piattaforma
+ * - singolo  → comportamento originale (nessun Executor)
+ *
+ * Altre proprietà:
+ * - takeaway.thread  → numero di thread del pool
+ *                      (default: il doppio dei core)
+ * - takeaway.coda    → richieste in attesa nel pool
+ *                      prima di rallentare l'accettazione
+ * - takeaway.verificaPinning → abilita il controllo dei
+ *                      virtual thread bloccati ("pinned")
+ */
+public class EsecutoreRichieste {
+
+    // ====================================================
+    // MODALITÀ DI ESECUZIONE
+    // ====================================================
+
+    /**
+     * Modalità con cui vengono eseguiti gli handler HTTP.
+     */
+    public enum Modalita {
+        VIRTUALE,
+        POOL,
+        SINGOLO
+    }
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Modalità richiesta all'avvio.
+     */
+    private static final String MODALITA =
+            System.getProperty("takeaway.esecutore", "virtuale");
+
+    /**
+     * Numero di thread del pool di piattaforma.
+     */
+    private static final int NUMERO_THREAD = Integer.getInteger(
+            "takeaway.thread",
+            Runtime.getRuntime().availableProcessors() * 2
+    );
+
+    /**
+     * Capienza della coda del pool: oltre questo limite la
+     * richiesta viene eseguita dal thread di dispatch, che
+     * smette così di accettare nuove connessioni (backpressure).
+     */
+    private static final int CAPIENZA_CODA =
+            Integer.getInteger("takeaway.coda", 200);
+
+    /**
+     * Abilita il controllo del pinning dei virtual thread.
+     */
+    private static final boolean VERIFICA_PINNING = Boolean.parseBoolean(
+            System.getProperty("takeaway.verificaPinning", "true")
+    );
+
+    /**
+     * Prima versione del driver MySQL che non usa più blocchi
+     * synchronized attorno all'I/O di rete.
+     */
+    private static final int VERSIONE_DRIVER_SENZA_PINNING = 9;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Modalità effettivamente in uso (può differire da quella
+     * richiesta se la JVM non supporta i virtual thread).
+     */
+    private Modalita modalita;
+
+    /**
+     * Executor creato, oppure null in modalità SINGOLO.
+     */
+    private ExecutorService executor;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Crea l'esecutore leggendo la configurazione
+     * dalle proprietà di sistema.
+     */
+    public EsecutoreRichieste() {
+
+        Modalita richiesta;
+
+        try {
+            richiesta = Modalita.valueOf(MODALITA.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Modalità esecutore sconosciuta: " + MODALITA
+                    + " (uso POOL)");
+            richiesta = Modalita.POOL;
+        }
+
+        switch (richiesta) {
+            case VIRTUALE:
+                executor = creaVirtuale();
+
+                if (executor != null) {
+                    modalita = Modalita.VIRTUALE;
+                    verificaPinning();
+                    break;
+                }
+
+                // JVM senza virtual thread: ripieghiamo sul pool
+                executor = creaPool();
+                modalita = Modalita.POOL;
+                break;
+
+            case POOL:
+                executor = creaPool();
+                modalita = Modalita.POOL;
+                break;
+
+            default:
+                executor = null;
+                modalita = Modalita.SINGOLO;
+        }
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Restituisce l'Executor da passare a HttpServer.setExecutor.
+     *
+     * @return executor oppure null per la modalità SINGOLO
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return modalità di esecuzione effettiva
+     */
+    public Modalita getModalita() {
+        return modalita;
+    }
+
+    /**
+     * Descrizione leggibile della configurazione,
+     * stampata all'avvio del server.
+     *
+     * @return descrizione della modalità in uso
+     */
+    public String getDescrizione() {
+
+        switch (modalita) {
+            case VIRTUALE:
+                return "virtual thread per richiesta";
+            case POOL:
+                return "pool di " + NUMERO_THREAD + " thread (coda " + CAPIENZA_CODA + ")";
+            default:
+                return "thread singolo";
+        }
+    }
+
+    /**
+     * Arresta l'esecutore attendendo il completamento
+     * delle richieste in corso.
+     */
+    public void chiudi() {
+
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Crea un executor con un virtual thread per task.
+     *
+     * Il metodo viene invocato per reflection così che il
+     * progetto compili anche con JDK in cui i virtual thread
+     * sono ancora una funzionalità in preview.
+     *
+     * @return executor virtuale oppure null se non disponibile
+     */
+    private ExecutorService creaVirtuale() {
+
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println(
+                    "Virtual thread non disponibili su questa JVM: uso il pool");
+            return null;
+        }
+    }
+
+    /**
+     * Crea un pool limitato di thread di piattaforma.
+     *
+     * Quando coda e thread sono saturi la richiesta viene
+     * eseguita dal thread chiamante (il dispatcher), che
+     * rallenta naturalmente l'accettazione di nuove
+     * connessioni invece di accumularle in memoria.
+     *
+     * @return pool di thread
+     */
+    private ExecutorService creaPool() {
+
+        AtomicInteger contatore = new AtomicInteger();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                NUMERO_THREAD,
+                NUMERO_THREAD,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(CAPIENZA_CODA),
+                r -> {
+                    Thread t = new Thread(r, "http-" + contatore.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Controlla le condizioni che possono bloccare ("pinnare")
+     * un virtual thread sul proprio carrier thread.
+     *
+     * Il driver MySQL fino alla versione 8.x esegue l'I/O di
+     * rete dentro blocchi synchronized: mentre attende il
+     * database il virtual thread occupa il carrier.
+     *
+     * Il controllo:
+     * - attiva il tracciamento JDK del pinning (stack stampato
+     *   su System.out quando un virtual thread resta bloccato)
+     * - segnala la versione del driver se soggetta al problema
+     */
+    private void verificaPinning() {
+
+        if (!VERIFICA_PINNING) {
+            return;
+        }
+
+        // Letta dalla JVM alla creazione del primo virtual thread
+        if (System.getProperty("jdk.tracePinnedThreads") == null) {
+            System.setProperty("jdk.tracePinnedThreads", "short");
+        }
+
+        Enumeration<Driver> drivers = DriverManager.getDrivers();
+
+        while (drivers.hasMoreElements()) {
+
+            Driver driver = drivers.nextElement();
+
+            if (!driver.getClass().getName().startsWith("com.mysql")) {
+                continue;
+            }
+
+            if (driver.getMajorVersion() < VERSIONE_DRIVER_SENZA_PINNING) {
+                System.err.println(
+                        "ATTENZIONE: driver MySQL " + driver.getMajorVersion()
+                                + "." + driver.getMinorVersion()
+                                + " esegue l'I/O dentro blocchi synchronized:"
+                                + " le query bloccano il carrier thread."
+                                + " Il numero di query concorrenti resta"
+                                + " limitato dai carrier disponibili.");
+            }
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package database;
 
+import metriche.Istogramma;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * ============================================================
@@ -13,14 +15,19 @@ import java.sql.SQLException;
  * una connessione al database MySQL dell'applicazione.
  *
  * CARATTERISTICHE IMPORTANTI:
- * - NON mantiene una connessione persistente
- * - NON conserva stato interno
- * - Ogni chiamata restituisce una NUOVA connessione
+ * - le connessioni provengono da un PoolConnessioni
+ * - ogni chiamata presta una connessione già aperta e valida
+ * - chiudere la connessione la restituisce al pool
  *
  * Questo approccio:
- * - evita problemi di connessioni chiuse o scadute
- * - semplifica la gestione delle risorse
- * - rende la classe sicura e riutilizzabile
+ * - evita l'handshake TCP e l'autenticazione a ogni query
+ * - limita il numero di connessioni aperte verso MySQL
+ * - segnala il codice che dimentica di chiudere le connessioni
+ * - riutilizza gli statement preparati e ne misura i tempi
+ *   (attesa della connessione, esecuzione, lettura dei
+ *   risultati, righe e byte binari trasferiti)
+ * - registra le query lente con parametri e chiamante
+ *   (vedi RegistroQueryLente)
  */
 public class GestoreDatabase {
 
@@ -32,9 +39,16 @@ public class GestoreDatabase {
      * URL di connessione al database MySQL.
      * - database: takeaway_express
      * - timezone impostata per evitare warning
+     * - rewriteBatchedStatements: un batch di INSERT viene
+     *   inviato come un'unica INSERT multi-riga
+     * - useServerPrepStmts: gli statement vengono preparati
+     *   da MySQL; il pool li conserva per connessione, quindi
+     *   ogni SQL viene analizzato una sola volta
      */
     private static final String URL =
-            "jdbc:mysql://localhost:3306/takeaway_express?serverTimezone=Europe/Rome";
+            "jdbc:mysql://localhost:3306/takeaway_express?serverTimezone=Europe/Rome"
+                    + "&rewriteBatchedStatements=true"
+                    + "&useServerPrepStmts=true";
 
     /**
      * Nome utente del database
@@ -46,21 +60,81 @@ public class GestoreDatabase {
      */
     private static final String PASSWORD = "user";
 
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Pool delle connessioni verso il database.
+     */
+    private final PoolConnessioni pool;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Crea il gestore e il relativo pool di connessioni.
+     */
+    public GestoreDatabase() {
+        this.pool = new PoolConnessioni(URL, USERNAME, PASSWORD);
+    }
+
     // ====================================================
     // METODI PUBBLICI
     // ====================================================
 
     /**
-     * Restituisce SEMPRE una nuova connessione al database.
+     * Restituisce una connessione prelevata dal pool.
      *
      * La connessione:
-     * - deve essere chiusa da chi la utilizza
-     * - non viene mai salvata come attributo di classe
+     * - deve essere chiusa da chi la utilizza (try-with-resources)
+     * - non va mai salvata come attributo di classe
      *
-     * @return una nuova istanza di {@link Connection}
+     * @return una connessione valida, prestata dal pool
      * @throws SQLException in caso di errore di connessione
+     *                      o di timeout in attesa del pool
      */
     public Connection getConnessione() throws SQLException {
-        return DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        return pool.preleva();
+    }
+
+    /**
+     * Restituisce le statistiche correnti del pool
+     * (connessioni attive, inattive, thread in attesa).
+     *
+     * @return statistiche del pool
+     */
+    public StatistichePool getStatistiche() {
+        return pool.getStatistiche();
+    }
+
+    /**
+     * Restituisce le statistiche di esecuzione di ogni query
+     * (per nome della costante di Query), a partire da quella
+     * che ha occupato il database più a lungo.
+     *
+     * @return statistiche delle query
+     */
+    public List<StatisticheQuery> getStatisticheQuery() {
+        return pool.getRegistroQuery().getStatistiche();
+    }
+
+    /**
+     * Restituisce la distribuzione dell'attesa di una
+     * connessione dal pool, in microsecondi.
+     *
+     * @return attesa della connessione
+     */
+    public Istogramma getAttesaConnessione() {
+        return pool.getAttesaConnessione();
+    }
+
+    /**
+     * Chiude le connessioni del pool.
+     * Da invocare all'arresto del server.
+     */
+    public void chiudi() {
+        pool.chiudi();
     }
 }
@@ -0,0 +1,60 @@
+package database;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+ * ============================================================
+ * CLASSE IMPORTI
+ * ============================================================
+ *
+ * Conversione tra le colonne DECIMAL(10,2) del database
+ * e gli importi del dominio, espressi in centesimi (long).
+ *
+ * Gli importi non passano mai per double: 6,80 € viene
+ * letto come 680 e riscritto come 6.80 esatto.
+ */
+public final class Importi {
+
+    private Importi() {
+    }
+
+    /**
+     * Legge un importo DECIMAL(10,2) in centesimi.
+     *
+     * @param rs      result set posizionato sulla riga
+     * @param colonna nome della colonna
+     * @return importo in centesimi (0 se NULL)
+     * @throws SQLException in caso di errore del database
+     *                      o di importo con più di due decimali
+     */
+    public static long leggi(ResultSet rs, String colonna) throws SQLException {
+
+        BigDecimal valore = rs.getBigDecimal(colonna);
+
+        if (valore == null) {
+            return 0;
+        }
+
+        try {
+            return valore.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new SQLException("Importo non valido in " + colonna + ": " + valore, e);
+        }
+    }
+
+    /**
+     * Imposta un parametro DECIMAL(10,2) a partire dai centesimi.
+     *
+     * @param ps         statement da configurare
+     * @param indice     indice del parametro
+     * @param centesimi  importo in centesimi
+     * @throws SQLException in caso di errore del database
+     */
+    public static void imposta(PreparedStatement ps, int indice, long centesimi)
+            throws SQLException {
+        ps.setBigDecimal(indice, BigDecimal.valueOf(centesimi, 2));
+    }
+}
@@ -0,0 +1,1242 @@
+package database;
+
+import metriche.Istogramma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * ============================================================
+ * CLASSE POOL CONNESSIONI
+ * ============================================================
+ *
+ * Mantiene un insieme di connessioni MySQL già aperte
+ * e le presta alle richieste che ne hanno bisogno.
+ *
+ * Aprire una connessione costa un handshake TCP più
+ * l'autenticazione MySQL: riutilizzarle elimina questo
+ * costo da ogni query.
+ *
+ * Funzionalità:
+ * - numero minimo e massimo di connessioni
+ * - validazione della connessione al prestito
+ * - chiusura delle connessioni inattive da troppo tempo
+ * - timeout sull'attesa di una connessione libera
+ * - rilevamento dei leak: se una connessione non viene
+ *   restituita entro una soglia, viene stampato lo stack
+ *   del codice che l'ha prelevata
+ *
+ * La connessione restituita al chiamante è un proxy:
+ * chiamare close() la riconsegna al pool invece di
+ * chiudere il socket verso il database.
+ *
+ * ------------------------------------------------------------
+ * STATEMENT PREPARATI IN CACHE
+ * ------------------------------------------------------------
+ * Anche prepareStatement() passa dal proxy. Per gli SQL
+ * definiti in Query lo statement viene preparato una sola
+ * volta per connessione fisica e riutilizzato dai prestiti
+ * successivi: close() sullo statement lo rimette in cache.
+ *
+ * - gli statement lasciati aperti vengono rilasciati alla
+ *   restituzione della connessione
+ * - la cache viene eliminata insieme alla connessione
+ * - ogni esecuzione registra durata, righe ed errori nel
+ *   RegistroQuery, sotto il nome della costante di Query
+ *
+ * ------------------------------------------------------------
+ * STRUMENTAZIONE
+ * ------------------------------------------------------------
+ * Per distinguere il tempo passato in attesa del pool, in
+ * MySQL e nel trasferimento dei risultati, per ogni query
+ * vengono misurati separatamente:
+ * - l'attesa della connessione (attribuita alla prima query
+ *   preparata con la connessione prelevata)
+ * - l'esecuzione dello statement
+ * - la lettura del ResultSet, fino alla chiusura o all'ultima
+ *   riga
+ * - le righe e i byte dei campi binari letti (getBytes,
+ *   getBlob, getBinaryStream) o inviati come parametri
+ *
+ * Le esecuzioni oltre la soglia vengono scritte nel
+ * RegistroQueryLente con parametri e chiamante.
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.db.minimo      → connessioni sempre aperte
+ * - takeaway.db.massimo     → connessioni massime
+ * - takeaway.db.attesaMs    → attesa massima di una connessione
+ * - takeaway.db.inattivitaMs → inattività prima della chiusura
+ * - takeaway.db.leakMs      → soglia di segnalazione leak
+ * - takeaway.db.cacheStatement → riuso degli statement
+ *                                 preparati (default true)
+ */
+public class PoolConnessioni {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final int MINIMO =
+            Integer.getInteger("takeaway.db.minimo", 2);
+
+    private static final int MASSIMO =
+            Integer.getInteger("takeaway.db.massimo", 20);
+
+    private static final long ATTESA_MS =
+            Long.getLong("takeaway.db.attesaMs", 5_000);
+
+    private static final long INATTIVITA_MS =
+            Long.getLong("takeaway.db.inattivitaMs", 10 * 60_000);
+
+    private static final long LEAK_MS =
+            Long.getLong("takeaway.db.leakMs", 30_000);
+
+    private static final boolean CACHE_STATEMENT = Boolean.parseBoolean(
+            System.getProperty("takeaway.db.cacheStatement", "true"));
+
+    /**
+     * Secondi concessi a Connection.isValid durante la validazione.
+     */
+    private static final int TIMEOUT_VALIDAZIONE_S = 2;
+
+    /**
+     * Intervallo del controllo periodico (inattività e leak).
+     */
+    private static final long INTERVALLO_MANUTENZIONE_MS = 15_000;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    /**
+     * Connessioni libere. Il prestito avviene dalla testa
+     * (la connessione usata più di recente, ancora "calda"),
+     * la chiusura per inattività dalla coda.
+     */
+    private final LinkedBlockingDeque<ConnessionePool> inattive =
+            new LinkedBlockingDeque<>();
+
+    /**
+     * Connessioni attualmente prestate.
+     */
+    private final Set<ConnessionePool> attive = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Limita il numero di connessioni contemporanee a MASSIMO.
+     */
+    private final Semaphore permessi = new Semaphore(MASSIMO, true);
+
+    private final AtomicInteger inAttesa = new AtomicInteger();
+    private final AtomicLong create = new AtomicLong();
+    private final AtomicLong scartate = new AtomicLong();
+    private final AtomicLong timeout = new AtomicLong();
+    private final AtomicLong leak = new AtomicLong();
+
+    /**
+     * Statistiche di esecuzione per ogni query.
+     */
+    private final RegistroQuery registroQuery = new RegistroQuery();
+
+    /**
+     * Esecuzioni oltre la soglia di durata.
+     */
+    private final RegistroQueryLente registroLente = new RegistroQueryLente();
+
+    /**
+     * Attesa per ottenere una connessione, in microsecondi
+     * (compresa l'eventuale apertura di una nuova connessione).
+     */
+    private final Istogramma attesaConnessione = new Istogramma();
+
+    /**
+     * Thread di manutenzione (inattività, minimo, leak).
+     */
+    private final ScheduledExecutorService manutenzione;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Crea il pool e avvia il thread di manutenzione.
+     *
+     * Le connessioni minime vengono aperte in background:
+     * un database momentaneamente non raggiungibile
+     * non impedisce l'avvio del server.
+     *
+     * @param url      URL JDBC
+     * @param username utente del database
+     * @param password password del database
+     */
+    public PoolConnessioni(String url, String username, String password) {
+
+        this.url = url;
+        this.username = username;
+        this.password = password;
+
+        this.manutenzione = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-connessioni");
+            t.setDaemon(true);
+            return t;
+        });
+
+        manutenzione.scheduleWithFixedDelay(
+                this::eseguiManutenzione,
+                0,
+                INTERVALLO_MANUTENZIONE_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Preleva una connessione dal pool.
+     *
+     * La connessione va sempre chiusa dal chiamante
+     * (try-with-resources): la chiusura la restituisce al pool.
+     *
+     * @return connessione valida
+     * @throws SQLException se nessuna connessione si libera
+     *                      entro il timeout o il database
+     *                      non è raggiungibile
+     */
+    public Connection preleva() throws SQLException {
+
+        long inizio = System.nanoTime();
+
+        inAttesa.incrementAndGet();
+
+        try {
+            if (!permessi.tryAcquire(ATTESA_MS, TimeUnit.MILLISECONDS)) {
+                timeout.incrementAndGet();
+                // Transitoria (SQLState 08001): può riuscire riprovando
+                throw new SQLTransientConnectionException(
+                        "Nessuna connessione disponibile entro " + ATTESA_MS
+                                + " ms (" + getStatistiche() + ")", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attesa della connessione interrotta", e);
+        } finally {
+            inAttesa.decrementAndGet();
+        }
+
+        try {
+            ConnessionePool connessione = prelevaValida();
+            connessione.segnaPrestito();
+            attive.add(connessione);
+
+            long attesa = System.nanoTime() - inizio;
+            attesaConnessione.registra(attesa / 1_000);
+
+            return connessione.creaProxy(attesa);
+
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce lo stato corrente del pool.
+     *
+     * @return statistiche del pool
+     */
+    public StatistichePool getStatistiche() {
+        return new StatistichePool(
+                attive.size(),
+                inattive.size(),
+                inAttesa.get(),
+                create.get(),
+                scartate.get(),
+                timeout.get(),
+                leak.get()
+        );
+    }
+
+    /**
+     * Restituisce il registro con le statistiche delle query.
+     *
+     * @return registro delle query
+     */
+    public RegistroQuery getRegistroQuery() {
+        return registroQuery;
+    }
+
+    /**
+     * Restituisce la distribuzione dell'attesa di una
+     * connessione (µs), per tutti i prestiti riusciti.
+     *
+     * @return attesa della connessione
+     */
+    public Istogramma getAttesaConnessione() {
+        return attesaConnessione;
+    }
+
+    /**
+     * Chiude tutte le connessioni libere e ferma la manutenzione.
+     * Le connessioni ancora prestate vengono chiuse alla restituzione.
+     */
+    public void chiudi() {
+
+        manutenzione.shutdownNow();
+
+        ConnessionePool connessione;
+        while ((connessione = inattive.pollFirst()) != null) {
+            connessione.chiudiFisica();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Restituisce una connessione libera e valida,
+     * creandone una nuova se il pool è vuoto.
+     */
+    private ConnessionePool prelevaValida() throws SQLException {
+
+        ConnessionePool connessione;
+
+        while ((connessione = inattive.pollFirst()) != null) {
+
+            if (connessione.isValida()) {
+                return connessione;
+            }
+
+            scarta(connessione);
+        }
+
+        return apriNuova();
+    }
+
+    /**
+     * Apre una nuova connessione fisica verso il database.
+     */
+    private ConnessionePool apriNuova() throws SQLException {
+        Connection fisica = DriverManager.getConnection(url, username, password);
+        create.incrementAndGet();
+        return new ConnessionePool(fisica);
+    }
+
+    /**
+     * Riconsegna al pool una connessione prestata.
+     * Invocato dal proxy alla chiamata di close().
+     */
+    private void restituisci(ConnessionePool connessione) {
+
+        attive.remove(connessione);
+
+        try {
+            if (connessione.ripristina()) {
+                connessione.segnaRestituzione();
+                inattive.offerFirst(connessione);
+            } else {
+                scarta(connessione);
+            }
+        } finally {
+            permessi.release();
+        }
+    }
+
+    /**
+     * Chiude definitivamente una connessione fisica.
+     */
+    private void scarta(ConnessionePool connessione) {
+        scartate.incrementAndGet();
+        connessione.chiudiFisica();
+    }
+
+    /**
+     * Controllo periodico:
+     * - chiude le connessioni inattive oltre la soglia
+     *   (mantenendo sempre il minimo)
+     * - riporta il pool al numero minimo di connessioni
+     * - segnala le connessioni prestate da troppo tempo
+     */
+    private void eseguiManutenzione() {
+
+        try {
+            long adesso = System.currentTimeMillis();
+
+            // Chiusura connessioni inattive (dalla meno recente)
+            Iterator<ConnessionePool> it = inattive.descendingIterator();
+
+            while (it.hasNext()
+                    && inattive.size() + attive.size() > MINIMO) {
+
+                ConnessionePool connessione = it.next();
+
+                if (adesso - connessione.ultimoUtilizzo > INATTIVITA_MS
+                        && inattive.remove(connessione)) {
+                    scarta(connessione);
+                }
+            }
+
+            // Ripristino del numero minimo
+            while (inattive.size() + attive.size() < MINIMO) {
+                inattive.offerLast(apriNuova());
+            }
+
+            // Rilevamento leak
+            for (ConnessionePool connessione : attive) {
+
+                // Lettura unica: la connessione può essere
+                // restituita (stack azzerato) in qualsiasi momento
+                Exception stack = connessione.stackPrestito;
+                long prelevataIl = connessione.prelevataIl;
+
+                if (stack != null
+                        && !connessione.leakSegnalato
+                        && adesso - prelevataIl > LEAK_MS) {
+
+                    connessione.leakSegnalato = true;
+                    leak.incrementAndGet();
+
+                    System.err.println("Possibile leak: connessione non restituita da "
+                            + (adesso - prelevataIl) + " ms");
+                    stack.printStackTrace();
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Pool connessioni: impossibile aprire le connessioni minime");
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ====================================================
+    // CONNESSIONE GESTITA DAL POOL
+    // ====================================================
+
+    /**
+     * Connessione fisica gestita dal pool, con le
+     * informazioni sul prestito corrente.
+     */
+    private class ConnessionePool {
+
+        /**
+         * Connessione reale verso MySQL.
+         */
+        private final Connection fisica;
+
+        /**
+         * Istante dell'ultima restituzione al pool.
+         */
+        private volatile long ultimoUtilizzo = System.currentTimeMillis();
+
+        /**
+         * Istante del prestito corrente.
+         */
+        private volatile long prelevataIl;
+
+        /**
+         * Stack del codice che ha prelevato la connessione.
+         */
+        private volatile Exception stackPrestito;
+
+        /**
+         * Evita di segnalare più volte lo stesso leak.
+         */
+        private volatile boolean leakSegnalato;
+
+        /**
+         * Statement preparati su questa connessione, per chiave
+         * (nome della query). Usata solo dal thread che ha in
+         * prestito la connessione: il passaggio attraverso la
+         * coda del pool rende visibili le modifiche.
+         */
+        private final Map<String, StatementInCache> statement = new HashMap<>();
+
+        ConnessionePool(Connection fisica) {
+            this.fisica = fisica;
+        }
+
+        void segnaPrestito() {
+            prelevataIl = System.currentTimeMillis();
+            stackPrestito = new Exception("Connessione prelevata da:");
+            leakSegnalato = false;
+        }
+
+        void segnaRestituzione() {
+            ultimoUtilizzo = System.currentTimeMillis();
+            stackPrestito = null;
+        }
+
+        boolean isValida() {
+            try {
+                return fisica.isValid(TIMEOUT_VALIDAZIONE_S);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Riporta la connessione allo stato iniziale:
+         * annulla eventuali transazioni lasciate aperte
+         * e riattiva l'autocommit.
+         *
+         * @return false se la connessione non è più utilizzabile
+         */
+        boolean ripristina() {
+            try {
+                if (fisica.isClosed()) {
+                    return false;
+                }
+
+                if (!fisica.getAutoCommit()) {
+                    fisica.rollback();
+                    fisica.setAutoCommit(true);
+                }
+
+                return true;
+
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void chiudiFisica() {
+
+            // Gli statement vengono chiusi con la connessione
+            statement.clear();
+
+            try {
+                fisica.close();
+            } catch (SQLException e) {
+                // Connessione già compromessa: nulla da fare
+            }
+        }
+
+        /**
+         * Crea il proxy consegnato al chiamante.
+         * Ogni prestito ha il proprio proxy: dopo close()
+         * il proxy non può più raggiungere la connessione fisica.
+         *
+         * @param attesa attesa del prestito (ns)
+         */
+        Connection creaProxy(long attesa) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new GestoreProxy(this, attesa)
+            );
+        }
+    }
+
+    /**
+     * Intercetta le chiamate sul proxy della connessione.
+     */
+    private class GestoreProxy implements InvocationHandler {
+
+        private final ConnessionePool connessione;
+        private boolean chiusa;
+
+        /**
+         * Attesa del prestito (ns), -1 dopo essere stata
+         * attribuita alla prima query.
+         */
+        private long attesa;
+
+        /**
+         * Statement creati durante questo prestito.
+         */
+        private final List<GestoreStatement> statementAperti = new ArrayList<>();
+
+        GestoreProxy(ConnessionePool connessione, long attesa) {
+            this.connessione = connessione;
+            this.attesa = attesa;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] argomenti)
+                throws Throwable {
+
+            switch (metodo.getName()) {
+                case "close":
+                    if (!chiusa) {
+                        chiusa = true;
+                        rilasciaStatement();
+                        restituisci(connessione);
+                    }
+                    return null;
+
+                case "isClosed":
+                    return chiusa || connessione.fisica.isClosed();
+
+                case "equals":
+                    return proxy == argomenti[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "toString":
+                    return "ConnessionePool[" + connessione.fisica + "]";
+
+                default:
+                    break;
+            }
+
+            if (chiusa) {
+                throw new SQLException("Connessione già restituita al pool");
+            }
+
+            if (metodo.getName().equals("prepareStatement")) {
+                return prepara((Connection) proxy, metodo, argomenti);
+            }
+
+            return invoca(connessione.fisica, metodo, argomenti);
+        }
+
+        /**
+         * Restituisce uno statement preparato: dalla cache della
+         * connessione se disponibile, altrimenti ne prepara uno.
+         *
+         * Solo gli SQL di Query (senza opzioni, oppure con la sola
+         * richiesta delle chiavi generate) vanno in cache: il
+         * numero di statement per connessione resta limitato.
+         */
+        private PreparedStatement prepara(
+                Connection proxy,
+                Method metodo,
+                Object[] argomenti
+        ) throws Throwable {
+
+            String nome = RegistroQuery.nomeDi((String) argomenti[0]);
+            StatisticheQuery statistiche = registroQuery.statistiche(nome);
+
+            if (attesa >= 0) {
+                statistiche.registraAttesaConnessione(attesa);
+                attesa = -1;
+            }
+
+            Class<?>[] tipi = metodo.getParameterTypes();
+
+            boolean memorizzabile = CACHE_STATEMENT
+                    && nome != null
+                    && (tipi.length == 1 || (tipi.length == 2 && tipi[1] == int.class));
+
+            StatementInCache voce = null;
+
+            if (memorizzabile) {
+
+                String chiave = tipi.length == 1 ? nome : nome + "#" + argomenti[1];
+                voce = connessione.statement.get(chiave);
+
+                if (voce == null) {
+                    PreparedStatement fisico =
+                            (PreparedStatement) invoca(connessione.fisica, metodo, argomenti);
+                    statistiche.registraPreparazione();
+
+                    voce = new StatementInCache(chiave, fisico);
+                    connessione.statement.put(chiave, voce);
+
+                } else if (voce.inUso) {
+                    // Stesso SQL già aperto in questo prestito:
+                    // statement temporaneo, fuori dalla cache
+                    voce = null;
+                }
+            }
+
+            PreparedStatement fisico;
+
+            if (voce != null) {
+                voce.inUso = true;
+                fisico = voce.fisico;
+            } else {
+                fisico = (PreparedStatement) invoca(connessione.fisica, metodo, argomenti);
+                statistiche.registraPreparazione();
+            }
+
+            GestoreStatement gestore = new GestoreStatement(
+                    connessione, proxy, fisico, voce, statistiche, registroLente);
+            statementAperti.add(gestore);
+
+            return gestore.creaProxy();
+        }
+
+        /**
+         * Rilascia gli statement che il chiamante non ha chiuso.
+         */
+        private void rilasciaStatement() {
+
+            for (GestoreStatement gestore : statementAperti) {
+                gestore.chiudi();
+            }
+
+            statementAperti.clear();
+        }
+    }
+
+    // ====================================================
+    // STATEMENT PREPARATI
+    // ====================================================
+
+    /**
+     * Statement preparato conservato nella cache di una connessione.
+     */
+    private static class StatementInCache {
+
+        private final String chiave;
+
+        private final PreparedStatement fisico;
+
+        /**
+         * true mentre è in uso da parte di un prestito.
+         */
+        private boolean inUso;
+
+        StatementInCache(String chiave, PreparedStatement fisico) {
+            this.chiave = chiave;
+            this.fisico = fisico;
+        }
+    }
+
+    /**
+     * Intercetta le chiamate sul proxy di uno statement:
+     * misura le esecuzioni e, alla chiusura, rimette lo
+     * statement nella cache invece di chiuderlo.
+     *
+     * I parametri impostati vengono conservati (solo il
+     * riferimento) per il registro delle query lente.
+     */
+    private static class GestoreStatement implements InvocationHandler {
+
+        private final ConnessionePool connessione;
+
+        /**
+         * Proxy della connessione (restituito da getConnection).
+         */
+        private final Connection proxyConnessione;
+
+        private final PreparedStatement fisico;
+
+        /**
+         * Voce della cache, null per uno statement temporaneo.
+         */
+        private final StatementInCache voce;
+
+        private final StatisticheQuery statistiche;
+
+        private final RegistroQueryLente registroLente;
+
+        /**
+         * Proxy di questo statement (restituito da getStatement).
+         */
+        private PreparedStatement proxy;
+
+        /**
+         * Ultimo ResultSet aperto, chiuso al rilascio.
+         */
+        private GestoreRisultato risultato;
+
+        /**
+         * Parametri correnti (indice 0 = parametro 1).
+         */
+        private Object[] parametri = new Object[8];
+
+        /**
+         * Esecuzioni accodate con addBatch e byte binari
+         * dei relativi parametri.
+         */
+        private int batch;
+        private long byteBatch;
+
+        private boolean chiuso;
+
+        GestoreStatement(
+                ConnessionePool connessione,
+                Connection proxyConnessione,
+                PreparedStatement fisico,
+                StatementInCache voce,
+                StatisticheQuery statistiche,
+                RegistroQueryLente registroLente
+        ) {
+            this.connessione = connessione;
+            this.proxyConnessione = proxyConnessione;
+            this.fisico = fisico;
+            this.voce = voce;
+            this.statistiche = statistiche;
+            this.registroLente = registroLente;
+        }
+
+        PreparedStatement creaProxy() {
+            proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    this
+            );
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] argomenti)
+                throws Throwable {
+
+            switch (metodo.getName()) {
+                case "close":
+                    chiudi();
+                    return null;
+
+                case "isClosed":
+                    return chiuso || fisico.isClosed();
+
+                case "getConnection":
+                    return proxyConnessione;
+
+                case "equals":
+                    return proxy == argomenti[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "toString":
+                    return "Statement[" + statistiche.getNome() + "]";
+
+                default:
+                    break;
+            }
+
+            if (chiuso) {
+                throw new SQLException("Statement già chiuso");
+            }
+
+            switch (metodo.getName()) {
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                case "execute":
+                    return esegui(metodo, argomenti);
+
+                case "addBatch":
+                    invoca(fisico, metodo, argomenti);
+                    batch++;
+                    byteBatch += byteParametri();
+                    return null;
+
+                case "clearBatch":
+                    invoca(fisico, metodo, argomenti);
+                    batch = 0;
+                    byteBatch = 0;
+                    return null;
+
+                case "clearParameters":
+                    invoca(fisico, metodo, argomenti);
+                    Arrays.fill(parametri, null);
+                    return null;
+
+                default:
+                    Object esito = invoca(fisico, metodo, argomenti);
+
+                    if (metodo.getName().startsWith("set")
+                            && argomenti != null
+                            && argomenti.length >= 2
+                            && argomenti[0] instanceof Integer) {
+                        memorizzaParametro(metodo.getName(), argomenti);
+                    }
+
+                    return esito;
+            }
+        }
+
+        /**
+         * Esegue lo statement misurandone durata e righe.
+         * Per le query la durata complessiva (e l'eventuale
+         * registrazione come lenta) si conosce solo al termine
+         * della lettura del ResultSet.
+         */
+        private Object esegui(Method metodo, Object[] argomenti) throws Throwable {
+
+            // Una nuova esecuzione chiude il ResultSet precedente
+            if (risultato != null) {
+                risultato.termina();
+                risultato = null;
+            }
+
+            boolean inBatch = metodo.getName().endsWith("Batch");
+            int eseguiti = inBatch ? batch : 0;
+            long byteInviati = inBatch ? byteBatch : byteParametri();
+
+            if (inBatch) {
+                batch = 0;
+                byteBatch = 0;
+            }
+
+            statistiche.registraByteBinari(byteInviati);
+
+            long inizio = System.nanoTime();
+            boolean riuscita = false;
+            long durata;
+
+            try {
+                Object esito = invoca(fisico, metodo, argomenti);
+                riuscita = true;
+                durata = System.nanoTime() - inizio;
+
+                if (esito instanceof ResultSet) {
+                    risultato = new GestoreRisultato(
+                            (ResultSet) esito, this, durata, byteInviati);
+                    return risultato.creaProxy();
+                }
+
+                long righe = registraAggiornamenti(esito);
+
+                if (registroLente.supera(durata)) {
+                    registroLente.registra(statistiche, durata, 0, righe,
+                            byteInviati, eseguiti, parametri);
+                }
+
+                return esito;
+
+            } finally {
+                statistiche.registraEsecuzione(System.nanoTime() - inizio, riuscita);
+            }
+        }
+
+        /**
+         * Righe modificate da executeUpdate / executeBatch.
+         *
+         * @return totale delle righe modificate
+         */
+        private long registraAggiornamenti(Object esito) {
+
+            long totale = 0;
+
+            if (esito instanceof Number) {
+                totale = Math.max(0, ((Number) esito).longValue());
+
+            } else if (esito instanceof int[]) {
+                for (int n : (int[]) esito) {
+                    totale += Math.max(0, n);
+                }
+
+            } else if (esito instanceof long[]) {
+                for (long n : (long[]) esito) {
+                    totale += Math.max(0, n);
+                }
+            }
+
+            statistiche.registraRighe(totale);
+            return totale;
+        }
+
+        /**
+         * Conserva il valore di un parametro (setString, setInt...).
+         */
+        private void memorizzaParametro(String nome, Object[] argomenti) {
+
+            int indice = (Integer) argomenti[0] - 1;
+
+            if (indice < 0) {
+                return;
+            }
+
+            if (indice >= parametri.length) {
+                parametri = Arrays.copyOf(parametri, Math.max(indice + 1, parametri.length * 2));
+            }
+
+            Object valore = argomenti[1];
+
+            if (nome.equals("setNull") || valore == null) {
+                valore = RegistroQueryLente.NULL;
+
+            } else if (valore instanceof InputStream || valore instanceof Blob) {
+                long lunghezza = argomenti.length == 3 && argomenti[2] instanceof Number
+                        ? ((Number) argomenti[2]).longValue()
+                        : -1;
+                valore = new RegistroQueryLente.Flusso(lunghezza);
+            }
+
+            parametri[indice] = valore;
+        }
+
+        /**
+         * Byte binari dei parametri correnti (byte[] e flussi
+         * di lunghezza dichiarata).
+         */
+        private long byteParametri() {
+
+            long totale = 0;
+
+            for (Object valore : parametri) {
+
+                if (valore instanceof byte[]) {
+                    totale += ((byte[]) valore).length;
+
+                } else if (valore instanceof RegistroQueryLente.Flusso) {
+                    totale += Math.max(0, ((RegistroQueryLente.Flusso) valore).lunghezza);
+                }
+            }
+
+            return totale;
+        }
+
+        /**
+         * Chiude lo statement: se proviene dalla cache viene
+         * ripulito e reso disponibile al prossimo prestito.
+         */
+        void chiudi() {
+
+            if (chiuso) {
+                return;
+            }
+
+            chiuso = true;
+
+            try {
+                if (risultato != null) {
+                    risultato.termina();
+                    risultato = null;
+                }
+
+                if (voce == null) {
+                    fisico.close();
+                    return;
+                }
+
+                fisico.clearParameters();
+                fisico.clearBatch();
+                voce.inUso = false;
+
+            } catch (SQLException e) {
+                // Statement non più riutilizzabile: fuori dalla cache
+                if (voce != null) {
+                    connessione.statement.remove(voce.chiave);
+
+                    try {
+                        fisico.close();
+                    } catch (SQLException ignorata) {
+                        // Statement già compromesso
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Conta le righe e i byte binari letti da un ResultSet
+     * e misura la durata della lettura.
+     */
+    private static class GestoreRisultato implements InvocationHandler {
+
+        private final ResultSet fisico;
+
+        private final GestoreStatement statement;
+
+        /**
+         * Durata dell'esecuzione che ha prodotto il ResultSet (ns).
+         */
+        private final long esecuzione;
+
+        /**
+         * Byte binari inviati come parametri.
+         */
+        private final long byteInviati;
+
+        private final long inizio = System.nanoTime();
+
+        private long righe;
+
+        private long byteLetti;
+
+        private boolean terminato;
+
+        GestoreRisultato(
+                ResultSet fisico,
+                GestoreStatement statement,
+                long esecuzione,
+                long byteInviati
+        ) {
+            this.fisico = fisico;
+            this.statement = statement;
+            this.esecuzione = esecuzione;
+            this.byteInviati = byteInviati;
+        }
+
+        ResultSet creaProxy() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class },
+                    this
+            );
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] argomenti)
+                throws Throwable {
+
+            StatisticheQuery statistiche = statement.statistiche;
+
+            switch (metodo.getName()) {
+                case "next":
+                    boolean presente = fisico.next();
+
+                    if (presente) {
+                        righe++;
+                        statistiche.registraRighe(1);
+                    } else {
+                        registraLettura();
+                    }
+                    return presente;
+
+                case "close":
+                    termina();
+                    return null;
+
+                case "getBytes":
+                    byte[] dati = (byte[]) invoca(fisico, metodo, argomenti);
+
+                    if (dati != null) {
+                        contaByte(dati.length);
+                    }
+                    return dati;
+
+                case "getBlob":
+                    Blob blob = (Blob) invoca(fisico, metodo, argomenti);
+
+                    if (blob != null) {
+                        contaByte(blob.length());
+                    }
+                    return blob;
+
+                case "getBinaryStream":
+                    InputStream flusso = (InputStream) invoca(fisico, metodo, argomenti);
+                    return flusso != null ? new FlussoContato(flusso, this) : null;
+
+                case "getStatement":
+                    return statement.proxy;
+
+                case "equals":
+                    return proxy == argomenti[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                default:
+                    return invoca(fisico, metodo, argomenti);
+            }
+        }
+
+        void contaByte(long n) {
+            byteLetti += n;
+            statement.statistiche.registraByteBinari(n);
+        }
+
+        /**
+         * Chiude il ResultSet reale registrando la lettura.
+         */
+        void termina() throws SQLException {
+            try {
+                fisico.close();
+            } finally {
+                registraLettura();
+            }
+        }
+
+        /**
+         * Fine della lettura (ultima riga o chiusura):
+         * registrata una sola volta.
+         */
+        private void registraLettura() {
+
+            if (terminato) {
+                return;
+            }
+
+            terminato = true;
+
+            long lettura = System.nanoTime() - inizio;
+            statement.statistiche.registraLettura(lettura);
+
+            if (statement.registroLente.supera(esecuzione + lettura)) {
+                statement.registroLente.registra(statement.statistiche, esecuzione, lettura,
+                        righe, byteInviati + byteLetti, 0, statement.parametri);
+            }
+        }
+    }
+
+    /**
+     * Stream di un campo binario che conta i byte letti.
+     */
+    private static class FlussoContato extends FilterInputStream {
+
+        private final GestoreRisultato risultato;
+
+        FlussoContato(InputStream in, GestoreRisultato risultato) {
+            super(in);
+            this.risultato = risultato;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+
+            if (b != -1) {
+                risultato.contaByte(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int letti = in.read(b, off, len);
+
+            if (letti > 0) {
+                risultato.contaByte(letti);
+            }
+            return letti;
+        }
+    }
+
+    /**
+     * Invoca un metodo sull'oggetto JDBC reale, propagando
+     * l'eccezione originale invece di quella della reflection.
+     */
+    private static Object invoca(Object destinazione, Method metodo, Object[] argomenti)
+            throws Throwable {
+        try {
+            return metodo.invoke(destinazione, argomenti);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
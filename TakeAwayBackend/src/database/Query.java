@@ -1,5 +1,7 @@
 package database;
 
+import java.util.Collections;
+
 /*
  * ============================================================
  * CLASSE QUERY
@@ -27,11 +29,14 @@ public class Query {
     // ============================================================
 
     /**
-     * Seleziona tutti i prodotti del menu.
+     * Seleziona tutti i prodotti del menu, senza immagine.
      * I risultati sono ordinati per categoria e nome.
+     *
+     * La colonna LONGBLOB "immagine" è esclusa: dominio e
+     * carrello lavorano solo sui dati testuali.
      */
     public static final String SELECT_TUTTI_PRODOTTI = """
-            SELECT id, nome, descrizione, prezzo, categoria, immagine
+            SELECT id, nome, descrizione, prezzo, categoria
             FROM prodotto
             ORDER BY categoria, nome
             """;
@@ -46,6 +51,19 @@ public class Query {
             WHERE id = ?
             """;
 
+    /**
+     * Seleziona l'impronta MD5 dell'immagine di ogni prodotto.
+     *
+     * L'hash viene calcolato da MySQL: il LONGBLOB non viene
+     * trasferito. L'impronta versiona l'URL dell'immagine
+     * e coincide con il suo ETag.
+     */
+    public static final String SELECT_IMPRONTE_IMMAGINI = """
+            SELECT id, MD5(immagine) AS impronta
+            FROM prodotto
+            WHERE immagine IS NOT NULL
+            """;
+
     /**
      * Seleziona l'id e l'immagine di tutti i prodotti.
      * Usata per operazioni di recupero immagini multiple.
@@ -73,8 +91,8 @@ public class Query {
      */
     public static final String INSERT_ORDINE = """
             INSERT INTO ordine
-            (codice, nome_cliente, contatto, note, totale, stato)
-            VALUES (?, ?, ?, ?, ?, ?)
+            (codice, nome_cliente, contatto, note, totale, stato, data_creazione)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
             """;
 
     /**
@@ -87,16 +105,92 @@ public class Query {
             """;
 
     /**
-     * Seleziona tutti gli ordini.
-     * Ordinati dal più recente al più vecchio.
-     * Utilizzato nella dashboard dello staff.
+     * Verifica se un ordine con il codice indicato è già
+     * stato scritto (recupero del giornale all'avvio).
      */
-    public static final String SELECT_TUTTI_ORDINI = """
-    	    SELECT id, codice, nome_cliente, contatto, note, totale, stato, data_creazione
-    	    FROM ordine
-    	    ORDER BY data_creazione DESC
-    	    """;
+    public static final String SELECT_ESISTE_CODICE = """
+            SELECT 1 FROM ordine WHERE codice = ?
+            """;
 
+    /**
+     * Riserva un blocco di codici ordine: incrementa il contatore
+     * e ne salva il nuovo valore in LAST_INSERT_ID() della
+     * connessione, letto subito dopo con SELECT_ULTIMO_ID.
+     * L'UPDATE è atomico anche tra più istanze del server.
+     */
+    public static final String RISERVA_BLOCCO_CODICI = """
+            UPDATE sequenza_codice
+            SET prossimo = LAST_INSERT_ID(prossimo + ?)
+            WHERE nome = ?
+            """;
+
+    /**
+     * Valore salvato dall'ultimo LAST_INSERT_ID(espressione)
+     * sulla stessa connessione.
+     */
+    public static final String SELECT_ULTIMO_ID = """
+            SELECT LAST_INSERT_ID()
+            """;
+
+    /**
+     * Crea il contatore dei codici se manca, partendo
+     * dopo l'id più alto già presente.
+     */
+    public static final String INSERT_SEQUENZA_CODICE = """
+            INSERT IGNORE INTO sequenza_codice (nome, prossimo)
+            SELECT ?, COALESCE(MAX(id), 0) + 1 FROM ordine
+            """;
+
+    /**
+     * Seleziona una pagina di ordini, dal più recente
+     * (dashboard dello staff).
+     *
+     * Paginazione a cursore su (data_creazione, id):
+     * - 1° parametro: inizio dell'intervallo (incluso)
+     * - 2°, 3°, 4° parametro: data e id dell'ultimo ordine
+     *   già mostrato (prima pagina: fine dell'intervallo e 0)
+     * - 5° parametro: numero massimo di ordini
+     *
+     * Proiezione ridotta: delle note vengono letti solo i
+     * primi 200 caratteri. Usa l'indice idx_ordine_data.
+     */
+    public static final String SELECT_ORDINI_PAGINA = """
+            SELECT id, codice, nome_cliente, contatto, LEFT(note, 200) AS note,
+                   totale, stato, data_creazione
+            FROM ordine
+            WHERE data_creazione >= ?
+              AND (data_creazione < ? OR (data_creazione = ? AND id < ?))
+            ORDER BY data_creazione DESC, id DESC
+            LIMIT ?
+            """;
+
+    /**
+     * Come SELECT_ORDINI_PAGINA, limitata a uno stato
+     * (1° parametro). Usa l'indice idx_ordine_stato_data.
+     */
+    public static final String SELECT_ORDINI_PAGINA_PER_STATO = """
+            SELECT id, codice, nome_cliente, contatto, LEFT(note, 200) AS note,
+                   totale, stato, data_creazione
+            FROM ordine
+            WHERE stato = ?
+              AND data_creazione >= ?
+              AND (data_creazione < ? OR (data_creazione = ? AND id < ?))
+            ORDER BY data_creazione DESC, id DESC
+            LIMIT ?
+            """;
+
+    /**
+     * Seleziona gli ordini non ancora consegnati, caricati
+     * in memoria all'avvio (GestoreOrdini / OrdiniAttivi).
+     * "data_stato" è l'ingresso nello stato corrente.
+     * Usa l'indice idx_ordine_stato_data.
+     */
+    public static final String SELECT_ORDINI_ATTIVI = """
+            SELECT id, codice, nome_cliente, contatto, note, totale, stato, data_creazione,
+                   COALESCE(data_aggiornamento, data_creazione) AS data_stato
+            FROM ordine
+            WHERE stato <> 'CONSEGNATO'
+            """;
 
     /**
      * Seleziona un ordine tramite il suo ID.
@@ -115,12 +209,31 @@ public class Query {
      * - p = prodotto
      */
     public static final String SELECT_RIGHE_PER_ORDINE = """
-            SELECT r.prodotto, p.nome, r.quantita, r.prezzo_unitario
+            SELECT r.prodotto_id, p.nome, r.quantita, r.prezzo_unitario
             FROM riga_ordine r
             JOIN prodotto p ON r.prodotto_id = p.id
             WHERE r.ordine_id = ?
             """;
 
+    /**
+     * Seleziona le righe di più ordini con una sola query
+     * (dashboard: tutte le righe di una pagina di ordini).
+     *
+     * Esiste in tre dimensioni fisse di IN (8, 32, 128
+     * segnaposto): il chiamante riempie i posti in eccesso
+     * ripetendo l'ultimo id. In questo modo gli statement
+     * preparati restano tre, qualunque sia il numero di
+     * ordini mostrati.
+     *
+     * Le righe arrivano raggruppate per ordine, nell'ordine
+     * di inserimento.
+     */
+    public static final String SELECT_RIGHE_PER_ORDINI_8 = righePerOrdini(8);
+
+    public static final String SELECT_RIGHE_PER_ORDINI_32 = righePerOrdini(32);
+
+    public static final String SELECT_RIGHE_PER_ORDINI_128 = righePerOrdini(128);
+
     /**
      * Recupera un ordine tramite il codice ordine.
      * Utilizzato dal cliente per verificare lo stato.
@@ -132,13 +245,57 @@ public class Query {
             """;
 
     /**
-     * Aggiorna lo stato di un ordine.
-     * Aggiorna anche il timestamp di modifica.
+     * Aggiorna lo stato di un ordine, solo se si trova
+     * ancora nello stato atteso (4° parametro).
+     * Il 2° parametro è l'istante del cambio (orologio del
+     * server), lo stesso scritto nello storico.
+     *
+     * La verifica della transizione avviene nella stessa
+     * istruzione: con due modifiche contemporanee solo una
+     * aggiorna la riga (righe modificate 1), l'altra non
+     * modifica nulla (0).
      */
     public static final String UPDATE_STATO_ORDINE = """
             UPDATE ordine
-            SET stato = ?, data_aggiornamento = CURRENT_TIMESTAMP
-            WHERE id = ?
+            SET stato = ?, data_aggiornamento = ?
+            WHERE id = ? AND stato = ?
+            """;
+
+    /**
+     * Blocca e seleziona tutti gli ordini in uno stato
+     * (avanzamento di gruppo, nella stessa transazione di
+     * UPDATE_STATO_ORDINI). Usa l'indice idx_ordine_stato_data.
+     */
+    public static final String SELECT_ORDINI_PER_STATO_BLOCCO = """
+            SELECT id, codice, nome_cliente, contatto, note, totale, stato, data_creazione,
+                   COALESCE(data_aggiornamento, data_creazione) AS data_stato
+            FROM ordine
+            WHERE stato = ?
+            FOR UPDATE
+            """;
+
+    /**
+     * Porta tutti gli ordini di uno stato (3° parametro)
+     * al nuovo stato (1° parametro) con un'unica istruzione.
+     * Il 2° parametro è l'istante del cambio, lo stesso
+     * scritto nello storico.
+     */
+    public static final String UPDATE_STATO_ORDINI = """
+            UPDATE ordine
+            SET stato = ?, data_aggiornamento = ?
+            WHERE stato = ?
+            """;
+
+    /**
+     * Registra un cambio di stato nello storico (solo
+     * inserimenti), nella stessa transazione dell'UPDATE.
+     *
+     * Parametri: id ordine, stato precedente, nuovo stato,
+     * istante del cambio.
+     */
+    public static final String INSERT_STORICO_STATO = """
+            INSERT INTO storico_stato_ordine (ordine_id, stato_precedente, stato, data_cambio)
+            VALUES (?, ?, ?, ?)
             """;
 
     // ============================================================
@@ -153,4 +310,21 @@ public class Query {
             FROM utente_staff
             WHERE username = ? AND password = ?
             """;
+
+    // ============================================================
+    // ================== METODI DI SUPPORTO ======================
+    // ============================================================
+
+    /**
+     * Costruisce la query delle righe con n segnaposto nella IN.
+     */
+    private static String righePerOrdini(int segnaposto) {
+        return """
+                SELECT r.ordine_id, r.prodotto_id, p.nome, r.quantita, r.prezzo_unitario
+                FROM riga_ordine r
+                JOIN prodotto p ON r.prodotto_id = p.id
+                WHERE r.ordine_id IN (%s)
+                ORDER BY r.ordine_id, r.id
+                """.formatted(String.join(", ", Collections.nCopies(segnaposto, "?")));
+    }
 }
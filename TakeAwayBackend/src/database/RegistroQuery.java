@@ -0,0 +1,121 @@
+package database;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * ============================================================
+ * CLASSE REGISTRO QUERY
+ * ============================================================
+ *
+ * Associa ogni SQL eseguito al nome della costante di
+ * Query che lo contiene e ne raccoglie le statistiche.
+ *
+ * I nomi vengono letti una sola volta dalla classe Query:
+ * aggiungere una costante è sufficiente perché venga
+ * riconosciuta. Gli SQL che non provengono da Query sono
+ * raccolti sotto il nome ALTRO e non vengono messi in cache.
+ */
+public class RegistroQuery {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Nome usato per gli SQL non definiti in Query.
+     */
+    public static final String ALTRO = "ALTRO";
+
+    /**
+     * SQL → nome della costante (immutabile dopo l'avvio).
+     */
+    private static final Map<String, String> NOMI = leggiNomi();
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final Map<String, StatisticheQuery> statistiche =
+            new ConcurrentHashMap<>();
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Nome della costante di Query che contiene l'SQL.
+     *
+     * @param sql testo della query
+     * @return nome della costante, oppure null se l'SQL
+     *         non proviene dalla classe Query
+     */
+    public static String nomeDi(String sql) {
+        return sql != null ? NOMI.get(sql) : null;
+    }
+
+    /**
+     * Statistiche della query indicata (create al primo uso).
+     *
+     * @param nome nome della costante, oppure null per ALTRO
+     * @return statistiche della query
+     */
+    StatisticheQuery statistiche(String nome) {
+        return statistiche.computeIfAbsent(
+                nome != null ? nome : ALTRO,
+                StatisticheQuery::new
+        );
+    }
+
+    /**
+     * Statistiche di tutte le query eseguite, a partire da
+     * quella che ha occupato il database più a lungo.
+     *
+     * @return statistiche ordinate per tempo totale
+     */
+    public List<StatisticheQuery> getStatistiche() {
+
+        List<StatisticheQuery> elenco = new ArrayList<>(statistiche.values());
+
+        elenco.sort(Comparator.comparingLong(
+                (StatisticheQuery s) -> s.getLatenza().getSomma()).reversed());
+
+        return elenco;
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Legge le costanti String pubbliche e statiche di Query.
+     */
+    private static Map<String, String> leggiNomi() {
+
+        Map<String, String> nomi = new HashMap<>();
+
+        for (Field campo : Query.class.getFields()) {
+
+            int modificatori = campo.getModifiers();
+
+            if (!Modifier.isStatic(modificatori)
+                    || campo.getType() != String.class) {
+                continue;
+            }
+
+            try {
+                nomi.put((String) campo.get(null), campo.getName());
+            } catch (IllegalAccessException e) {
+                // Campo pubblico: non può accadere
+            }
+        }
+
+        return Map.copyOf(nomi);
+    }
+}
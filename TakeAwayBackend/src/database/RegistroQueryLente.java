@@ -0,0 +1,289 @@
+package database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * ============================================================
+ * CLASSE REGISTRO QUERY LENTE
+ * ============================================================
+ *
+ * Registra le esecuzioni che superano una soglia di durata
+ * (esecuzione più lettura dei risultati), una riga per
+ * esecuzione:
+ *
+ *   data  LENTA  SELECT_IMG_PRODOTTO  esecuzioneMs=812
+ *         letturaMs=40  righe=1  byteBinari=734012  batch=0
+ *         parametri=[1=<testo 3>]
+ *         chiamante=server.ImmagineHandler.handle:74
+ *         origine=dominio.CatalogoImmagini.leggiOriginale:352
+ *
+ * - "chiamante" è il primo metodo del package server (l'handler
+ *   della richiesta), "origine" il primo metodo fuori dal
+ *   package database: le esecuzioni in background (scrittura
+ *   degli ordini, manutenzione) hanno solo l'origine
+ * - i parametri di testo (nomi, contatti, note dei clienti)
+ *   sono riportati solo come lunghezza; i valori, troncati,
+ *   solo se richiesto esplicitamente. I contenuti binari sono
+ *   sempre riportati solo come dimensione
+ * - lo stack viene letto solo per le esecuzioni lente
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.db.queryLentaMs    → soglia in millisecondi
+ *                                 (default 500, negativa per
+ *                                 disattivare il registro)
+ * - takeaway.db.fileQueryLente  → file in cui aggiungere le
+ *                                 righe (default System.err)
+ * - takeaway.db.queryLenteTesti=true → riporta il contenuto
+ *                                 dei parametri di testo
+ *                                 (dati personali nei log)
+ */
+class RegistroQueryLente {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final long SOGLIA_MS =
+            Long.getLong("takeaway.db.queryLentaMs", 500);
+
+    private static final String FILE =
+            System.getProperty("takeaway.db.fileQueryLente");
+
+    /**
+     * Caratteri massimi riportati per un parametro di testo.
+     */
+    private static final int MASSIMO_TESTO = 64;
+
+    /**
+     * Riporta il contenuto dei parametri di testo.
+     */
+    private static final boolean TESTI_IN_CHIARO =
+            Boolean.getBoolean("takeaway.db.queryLenteTesti");
+
+    /**
+     * Segnaposto per un parametro impostato con setNull.
+     */
+    static final Object NULL = new Object();
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final long sogliaNano =
+            SOGLIA_MS >= 0 ? SOGLIA_MS * 1_000_000 : Long.MAX_VALUE;
+
+    private final Path file = FILE != null ? Path.of(FILE) : null;
+
+    /**
+     * Serializza le scritture sul file.
+     */
+    private final ReentrantLock lockScrittura = new ReentrantLock();
+
+    // ====================================================
+    // METODI
+    // ====================================================
+
+    /**
+     * @param durataNano durata complessiva dell'esecuzione
+     * @return true se l'esecuzione va registrata
+     */
+    boolean supera(long durataNano) {
+        return durataNano >= sogliaNano;
+    }
+
+    /**
+     * Registra un'esecuzione lenta.
+     * Va invocato dal thread che ha eseguito la query.
+     *
+     * @param statistiche  statistiche della query
+     * @param esecuzione   durata dell'esecuzione (ns)
+     * @param lettura      durata della lettura dei risultati (ns)
+     * @param righe        righe lette o modificate
+     * @param byteBinari   byte dei campi binari letti o inviati
+     * @param batch        esecuzioni nel batch (0 se singola)
+     * @param parametri    ultimi parametri impostati (indice 0 =
+     *                     parametro 1), può essere null
+     */
+    void registra(
+            StatisticheQuery statistiche,
+            long esecuzione,
+            long lettura,
+            long righe,
+            long byteBinari,
+            int batch,
+            Object[] parametri
+    ) {
+        statistiche.registraLenta();
+
+        StringBuilder riga = new StringBuilder(256);
+
+        riga.append(LocalDateTime.now())
+            .append("\tLENTA\t").append(statistiche.getNome())
+            .append("\tesecuzioneMs=").append(esecuzione / 1_000_000)
+            .append("\tletturaMs=").append(lettura / 1_000_000)
+            .append("\trighe=").append(righe)
+            .append("\tbyteBinari=").append(byteBinari)
+            .append("\tbatch=").append(batch)
+            .append("\tparametri=");
+
+        appendiParametri(riga, parametri);
+        appendiChiamante(riga);
+
+        scrivi(riga.toString());
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    private static void appendiParametri(StringBuilder riga, Object[] parametri) {
+
+        riga.append('[');
+
+        boolean primo = true;
+
+        for (int i = 0; parametri != null && i < parametri.length; i++) {
+
+            if (parametri[i] == null) {
+                continue;
+            }
+
+            if (!primo) {
+                riga.append(", ");
+            }
+
+            primo = false;
+            riga.append(i + 1).append('=');
+
+            Object valore = parametri[i];
+
+            if (valore == NULL) {
+                riga.append("NULL");
+
+            } else if (valore instanceof Flusso) {
+                long lunghezza = ((Flusso) valore).lunghezza;
+                riga.append(lunghezza >= 0 ? "<flusso " + lunghezza + " byte>" : "<flusso>");
+
+            } else if (valore instanceof byte[]) {
+                riga.append('<').append(((byte[]) valore).length).append(" byte>");
+
+            } else if (valore instanceof InputStream || valore instanceof Reader
+                    || valore instanceof Blob || valore instanceof Clob) {
+                riga.append("<flusso>");
+
+            } else if (valore instanceof CharSequence && !TESTI_IN_CHIARO) {
+                riga.append("<testo ").append(((CharSequence) valore).length()).append('>');
+
+            } else if (valore instanceof CharSequence) {
+                String testo = valore.toString()
+                        .replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+
+                riga.append('\'');
+                if (testo.length() > MASSIMO_TESTO) {
+                    riga.append(testo, 0, MASSIMO_TESTO).append("...");
+                } else {
+                    riga.append(testo);
+                }
+                riga.append('\'');
+
+            } else {
+                riga.append(valore);
+            }
+        }
+
+        riga.append(']');
+    }
+
+    /**
+     * Handler e metodo applicativo che hanno eseguito la query.
+     */
+    private static void appendiChiamante(StringBuilder riga) {
+
+        StackWalker walker = StackWalker.getInstance();
+
+        Optional<StackWalker.StackFrame> chiamante = walker.walk(frame -> frame
+                .filter(f -> f.getClassName().startsWith("server."))
+                .findFirst());
+
+        Optional<StackWalker.StackFrame> origine = walker.walk(frame -> frame
+                .filter(f -> !f.getClassName().startsWith("database.")
+                        && !f.getClassName().startsWith("java.")
+                        && !f.getClassName().startsWith("jdk.")
+                        && !f.getClassName().startsWith("com.sun."))
+                .findFirst());
+
+        chiamante.ifPresent(f -> appendiFrame(riga.append("\tchiamante="), f));
+
+        // L'handler che esegue direttamente la query è anche l'origine
+        if (origine.isPresent()
+                && (chiamante.isEmpty() || !stessoMetodo(chiamante.get(), origine.get()))) {
+            appendiFrame(riga.append("\torigine="), origine.get());
+        }
+    }
+
+    private static boolean stessoMetodo(StackWalker.StackFrame a, StackWalker.StackFrame b) {
+        return a.getClassName().equals(b.getClassName())
+                && a.getMethodName().equals(b.getMethodName());
+    }
+
+    private static void appendiFrame(StringBuilder riga, StackWalker.StackFrame frame) {
+        riga.append(frame.getClassName())
+            .append('.').append(frame.getMethodName())
+            .append(':').append(frame.getLineNumber());
+    }
+
+    private void scrivi(String riga) {
+
+        if (file == null) {
+            System.err.println(riga);
+            return;
+        }
+
+        lockScrittura.lock();
+
+        try {
+            Files.writeString(
+                    file,
+                    riga + System.lineSeparator(),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND
+            );
+
+        } catch (IOException e) {
+            System.err.println(riga);
+
+        } finally {
+            lockScrittura.unlock();
+        }
+    }
+
+    // ====================================================
+    // PARAMETRO A FLUSSO
+    // ====================================================
+
+    /**
+     * Parametro impostato da uno stream (setBinaryStream,
+     * setBlob...): ne conserva solo la lunghezza dichiarata,
+     * -1 se non indicata.
+     */
+    static class Flusso {
+
+        final long lunghezza;
+
+        Flusso(long lunghezza) {
+            this.lunghezza = lunghezza;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package database;
+
+/*
+ * ============================================================
+ * CLASSE STATISTICHE POOL
+ * ============================================================
+ *
+ * Fotografia dello stato del pool di connessioni
+ * in un determinato istante.
+ *
+ * Viene creata da PoolConnessioni.getStatistiche()
+ * e non viene più modificata: può quindi essere letta
+ * liberamente da qualsiasi thread.
+ */
+public class StatistichePool {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Connessioni attualmente in uso da una richiesta.
+     */
+    private final int attive;
+
+    /**
+     * Connessioni aperte e pronte nel pool.
+     */
+    private final int inattive;
+
+    /**
+     * Thread in attesa di ottenere una connessione.
+     */
+    private final int inAttesa;
+
+    /**
+     * Connessioni fisiche create dall'avvio.
+     */
+    private final long create;
+
+    /**
+     * Connessioni scartate (non valide, inattive da troppo
+     * tempo o chiuse in errore).
+     */
+    private final long scartate;
+
+    /**
+     * Richieste di connessione scadute per timeout.
+     */
+    private final long timeout;
+
+    /**
+     * Connessioni segnalate come possibili leak.
+     */
+    private final long leak;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    public StatistichePool(
+            int attive,
+            int inattive,
+            int inAttesa,
+            long create,
+            long scartate,
+            long timeout,
+            long leak
+    ) {
+        this.attive = attive;
+        this.inattive = inattive;
+        this.inAttesa = inAttesa;
+        this.create = create;
+        this.scartate = scartate;
+        this.timeout = timeout;
+        this.leak = leak;
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public int getAttive() {
+        return attive;
+    }
+
+    public int getInattive() {
+        return inattive;
+    }
+
+    public int getInAttesa() {
+        return inAttesa;
+    }
+
+    public long getCreate() {
+        return create;
+    }
+
+    public long getScartate() {
+        return scartate;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getLeak() {
+        return leak;
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    @Override
+    public String toString() {
+        return "attive=" + attive
+                + " inattive=" + inattive
+                + " inAttesa=" + inAttesa
+                + " create=" + create
+                + " scartate=" + scartate
+                + " timeout=" + timeout
+                + " leak=" + leak;
+    }
+}
@@ -0,0 +1,178 @@
+package database;
+
+import metriche.Istogramma;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * ============================================================
+ * CLASSE STATISTICHE QUERY
+ * ============================================================
+ *
+ * Contatori di una singola query, identificata dal nome
+ * della costante di Query (es. "SELECT_ORDINI_PAGINA").
+ *
+ * - esecuzioni e errori
+ * - righe lette (ResultSet) o modificate (UPDATE / INSERT)
+ * - latenza di ogni esecuzione, in microsecondi
+ * - lettura del ResultSet (dall'esecuzione alla chiusura
+ *   o all'ultima riga), in microsecondi
+ * - attesa della connessione dal pool, attribuita alla
+ *   prima query eseguita con la connessione prelevata
+ * - byte dei campi binari (LONGBLOB) letti
+ * - esecuzioni oltre la soglia del RegistroQueryLente
+ * - statement preparati (una volta per connessione)
+ *
+ * I contatori sono aggiornati senza lock dai thread che
+ * eseguono le query e possono essere letti in qualsiasi
+ * momento.
+ */
+public class StatisticheQuery {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final String nome;
+
+    private final LongAdder esecuzioni = new LongAdder();
+
+    private final LongAdder errori = new LongAdder();
+
+    private final LongAdder righe = new LongAdder();
+
+    private final LongAdder preparazioni = new LongAdder();
+
+    private final LongAdder byteBinari = new LongAdder();
+
+    private final LongAdder lente = new LongAdder();
+
+    /**
+     * Durata delle esecuzioni in microsecondi.
+     */
+    private final Istogramma latenza = new Istogramma();
+
+    /**
+     * Durata della lettura dei risultati in microsecondi.
+     */
+    private final Istogramma lettura = new Istogramma();
+
+    /**
+     * Attesa della connessione in microsecondi.
+     */
+    private final Istogramma attesaConnessione = new Istogramma();
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    StatisticheQuery(String nome) {
+        this.nome = nome;
+    }
+
+    // ====================================================
+    // REGISTRAZIONE (package-private)
+    // ====================================================
+
+    void registraEsecuzione(long durataNano, boolean riuscita) {
+        esecuzioni.increment();
+        latenza.registra(durataNano / 1_000);
+
+        if (!riuscita) {
+            errori.increment();
+        }
+    }
+
+    void registraRighe(long n) {
+        if (n > 0) {
+            righe.add(n);
+        }
+    }
+
+    void registraPreparazione() {
+        preparazioni.increment();
+    }
+
+    void registraLettura(long durataNano) {
+        lettura.registra(durataNano / 1_000);
+    }
+
+    void registraAttesaConnessione(long durataNano) {
+        attesaConnessione.registra(durataNano / 1_000);
+    }
+
+    void registraByteBinari(long n) {
+        if (n > 0) {
+            byteBinari.add(n);
+        }
+    }
+
+    void registraLenta() {
+        lente.increment();
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public String getNome() {
+        return nome;
+    }
+
+    public long getEsecuzioni() {
+        return esecuzioni.sum();
+    }
+
+    public long getErrori() {
+        return errori.sum();
+    }
+
+    public long getRighe() {
+        return righe.sum();
+    }
+
+    public long getPreparazioni() {
+        return preparazioni.sum();
+    }
+
+    public long getByteBinari() {
+        return byteBinari.sum();
+    }
+
+    public long getLente() {
+        return lente.sum();
+    }
+
+    public Istogramma getLatenza() {
+        return latenza;
+    }
+
+    public Istogramma getLettura() {
+        return lettura;
+    }
+
+    public Istogramma getAttesaConnessione() {
+        return attesaConnessione;
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    @Override
+    public String toString() {
+        return nome
+                + " esecuzioni=" + getEsecuzioni()
+                + " errori=" + getErrori()
+                + " righe=" + getRighe()
+                + " preparazioni=" + getPreparazioni()
+                + " totaleMs=" + latenza.getSomma() / 1_000
+                + " p50us=" + latenza.getPercentile(0.50)
+                + " p99us=" + latenza.getPercentile(0.99)
+                + " maxUs=" + latenza.getMassimo()
+                + " letturaMs=" + lettura.getSomma() / 1_000
+                + " attesaConnessioneMs=" + attesaConnessione.getSomma() / 1_000
+                + " byteBinari=" + getByteBinari()
+                + " lente=" + getLente();
+    }
+}
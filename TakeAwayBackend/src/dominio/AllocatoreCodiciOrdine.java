@@ -0,0 +1,184 @@
+package dominio;
+
+import database.GestoreDatabase;
+import database.Query;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * ============================================================
+ * CLASSE ALLOCATORE CODICI ORDINE
+ * ============================================================
+ *
+ * Assegna il codice leggibile ("ORD-123") a ogni ordine
+ * prima dell'inserimento nel database.
+ *
+ * Tecnica hi-lo:
+ * - la tabella sequenza_codice contiene il prossimo numero
+ *   libero, condiviso da tutte le istanze del server
+ * - un solo UPDATE riserva un intero blocco di numeri
+ *   (proprietà "takeaway.codici.blocco", default 50)
+ * - i numeri del blocco vengono poi assegnati in memoria,
+ *   senza altri accessi al database
+ *
+ * Due istanze non ricevono mai lo stesso blocco: l'UPDATE
+ * blocca la riga del contatore fino al proprio commit.
+ *
+ * I numeri non usati di un blocco vanno persi al riavvio:
+ * i codici sono univoci ma possono avere dei salti.
+ */
+public class AllocatoreCodiciOrdine {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Numeri riservati con un singolo accesso al database.
+     */
+    private static final int BLOCCO =
+            Integer.getInteger("takeaway.codici.blocco", 50);
+
+    /**
+     * Nome del contatore nella tabella sequenza_codice.
+     */
+    private static final String SEQUENZA = "ordine";
+
+    /**
+     * Prefisso dei codici ordine.
+     */
+    private static final String PREFISSO = "ORD-";
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Gestore delle connessioni al database.
+     */
+    private GestoreDatabase gestoreDatabase;
+
+    /**
+     * Protegge il blocco corrente. È un ReentrantLock e non
+     * synchronized perché durante la riserva si attende il
+     * database (un virtual thread resterebbe bloccato sul carrier).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Prossimo numero da assegnare del blocco corrente.
+     */
+    private long prossimo;
+
+    /**
+     * Primo numero fuori dal blocco corrente.
+     */
+    private long limite;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param gestoreDatabase gestore delle connessioni al database
+     */
+    public AllocatoreCodiciOrdine(GestoreDatabase gestoreDatabase) {
+        this.gestoreDatabase = gestoreDatabase;
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Restituisce un nuovo codice ordine univoco.
+     *
+     * @return codice nel formato "ORD-numero"
+     * @throws SQLException se non è possibile riservare un blocco
+     */
+    public String prossimoCodice() throws SQLException {
+
+        lock.lock();
+
+        try {
+            if (prossimo >= limite) {
+                riservaBlocco();
+            }
+
+            return PREFISSO + prossimo++;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Riserva un nuovo blocco di numeri.
+     *
+     * Usa una connessione dedicata in autocommit: la riga del
+     * contatore resta bloccata solo per il tempo dell'UPDATE,
+     * non per tutta la transazione dell'ordine.
+     */
+    private void riservaBlocco() throws SQLException {
+
+        try (Connection conn = gestoreDatabase.getConnessione()) {
+
+            long fine = incrementa(conn);
+
+            if (fine < 0) {
+                // Contatore assente (database creato prima della
+                // tabella sequenza_codice): viene creato e si riprova
+                try (PreparedStatement ps =
+                             conn.prepareStatement(Query.INSERT_SEQUENZA_CODICE)) {
+                    ps.setString(1, SEQUENZA);
+                    ps.executeUpdate();
+                }
+
+                fine = incrementa(conn);
+            }
+
+            if (fine < 0) {
+                throw new SQLException("Contatore codici ordine non disponibile");
+            }
+
+            // Il contatore indicava il primo numero libero:
+            // dopo l'incremento il blocco è [fine - BLOCCO, fine)
+            prossimo = fine - BLOCCO;
+            limite = fine;
+        }
+    }
+
+    /**
+     * Incrementa il contatore di BLOCCO e ne legge il nuovo valore.
+     *
+     * @return nuovo valore oppure -1 se il contatore non esiste
+     */
+    private long incrementa(Connection conn) throws SQLException {
+
+        try (PreparedStatement ps = conn.prepareStatement(Query.RISERVA_BLOCCO_CODICI)) {
+
+            ps.setInt(1, BLOCCO);
+            ps.setString(2, SEQUENZA);
+
+            if (ps.executeUpdate() == 0) {
+                return -1;
+            }
+        }
+
+        try (
+                PreparedStatement ps = conn.prepareStatement(Query.SELECT_ULTIMO_ID);
+                ResultSet rs = ps.executeQuery()
+        ) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
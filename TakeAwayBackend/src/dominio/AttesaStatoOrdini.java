@@ -0,0 +1,123 @@
+package dominio;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/*
+ * ============================================================
+ * CLASSE ATTESA STATO ORDINI
+ * ============================================================
+ *
+ * Tiene traccia dei clienti in attesa di un cambio di stato
+ * del proprio ordine (long-poll su /ordine/stato/attesa).
+ *
+ * Ogni attesa è un CompletableFuture indicizzato per codice
+ * ordine: nessun thread resta bloccato e il database non
+ * viene interrogato mentre l'ordine è in preparazione.
+ * Quando il BusEventiOrdine pubblica un cambio di stato,
+ * tutte le attese di quell'ordine vengono completate con
+ * il nuovo stato.
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.stato.massimoAttese → attese contemporanee
+ *                                  (default 10000)
+ */
+public class AttesaStatoOrdini implements Consumer<EventoOrdine> {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final int MASSIMO_ATTESE =
+            Integer.getInteger("takeaway.stato.massimoAttese", 10_000);
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Codice ordine → attese registrate.
+     */
+    private final Map<String, Set<CompletableFuture<StatoOrdine>>> attese =
+            new ConcurrentHashMap<>();
+
+    private final AtomicInteger numeroAttese = new AtomicInteger();
+
+    // ====================================================
+    // REGISTRAZIONE
+    // ====================================================
+
+    /**
+     * Registra un'attesa sul cambio di stato di un ordine.
+     *
+     * L'attesa viene rimossa automaticamente al completamento
+     * (anche per timeout o annullamento del chiamante).
+     *
+     * @param codice codice dell'ordine
+     * @return attesa, oppure null se è già stato raggiunto
+     *         il numero massimo di attese
+     */
+    public CompletableFuture<StatoOrdine> registra(String codice) {
+
+        if (numeroAttese.incrementAndGet() > MASSIMO_ATTESE) {
+            numeroAttese.decrementAndGet();
+            return null;
+        }
+
+        CompletableFuture<StatoOrdine> attesa = new CompletableFuture<>();
+
+        attese.computeIfAbsent(codice, c -> ConcurrentHashMap.newKeySet())
+              .add(attesa);
+
+        attesa.whenComplete((stato, errore) -> rimuovi(codice, attesa));
+
+        return attesa;
+    }
+
+    /**
+     * @return numero di clienti in attesa
+     */
+    public int getNumeroAttese() {
+        return numeroAttese.get();
+    }
+
+    // ====================================================
+    // NOTIFICA (dal BusEventiOrdine)
+    // ====================================================
+
+    @Override
+    public void accept(EventoOrdine evento) {
+
+        if (evento.getTipo() != EventoOrdine.Tipo.STATO) {
+            return;
+        }
+
+        Set<CompletableFuture<StatoOrdine>> ordine = attese.get(evento.getCodice());
+
+        if (ordine == null) {
+            return;
+        }
+
+        for (CompletableFuture<StatoOrdine> attesa : ordine) {
+            attesa.complete(evento.getStato());
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    private void rimuovi(String codice, CompletableFuture<StatoOrdine> attesa) {
+
+        attese.computeIfPresent(codice, (c, insieme) -> {
+            if (insieme.remove(attesa)) {
+                numeroAttese.decrementAndGet();
+            }
+            return insieme.isEmpty() ? null : insieme;
+        });
+    }
+}
@@ -0,0 +1,270 @@
+package dominio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/*
+ * ============================================================
+ * CLASSE BUS EVENTI ORDINE
+ * ============================================================
+ *
+ * Distribuisce in memoria gli eventi sugli ordini (nuovo
+ * ordine, cambio di stato) a chi è in ascolto, ad esempio
+ * le dashboard dello staff collegate in streaming.
+ *
+ * Una sola scrittura nel database genera un evento che
+ * raggiunge tutte le dashboard: nessuna di loro deve
+ * ricaricare la pagina per accorgersi delle novità.
+ *
+ * Funzionamento:
+ * - ogni evento riceve un numero progressivo
+ * - gli ultimi eventi restano in un buffer circolare: chi
+ *   si ricollega indicando l'ultimo numero ricevuto
+ *   (Last-Event-ID) riceve quelli persi nel frattempo
+ * - ogni iscritto ha una coda limitata: un client troppo
+ *   lento non rallenta la pubblicazione né gli altri
+ *   iscritti, ma viene scollegato e recupera gli eventi
+ *   dal buffer alla riconnessione
+ * - gli ascoltatori interni (es. AttesaStatoOrdini) ricevono
+ *   ogni evento direttamente, sul thread che lo pubblica
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.eventi.buffer      → eventi conservati (default 1024)
+ * - takeaway.eventi.codaCliente → eventi in attesa per
+ *                                 iscritto (default 256)
+ */
+public class BusEventiOrdine {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final int DIMENSIONE_BUFFER =
+            Integer.getInteger("takeaway.eventi.buffer", 1024);
+
+    private static final int CODA_CLIENTE =
+            Integer.getInteger("takeaway.eventi.codaCliente", 256);
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Buffer circolare degli ultimi eventi: l'evento numero n
+     * occupa la posizione n % DIMENSIONE_BUFFER.
+     */
+    private final EventoOrdine[] buffer = new EventoOrdine[DIMENSIONE_BUFFER];
+
+    /**
+     * Numero dell'ultimo evento pubblicato (0 = nessuno).
+     */
+    private long ultimo;
+
+    /**
+     * Protegge buffer, numerazione e consegna: gli iscritti
+     * ricevono gli eventi nello stesso ordine del buffer.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Set<Iscrizione> iscritti = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Ascoltatori interni, avvisati dopo la consegna agli iscritti.
+     */
+    private final List<Consumer<EventoOrdine>> ascoltatori = new CopyOnWriteArrayList<>();
+
+    // ====================================================
+    // PUBBLICAZIONE
+    // ====================================================
+
+    /**
+     * Pubblica un evento relativo a un ordine.
+     * Non si blocca mai: gli iscritti con la coda piena
+     * vengono scollegati.
+     *
+     * @param tipo   tipo di evento
+     * @param ordine ordine interessato (i dati vengono copiati)
+     */
+    public void pubblica(EventoOrdine.Tipo tipo, Ordine ordine) {
+
+        EventoOrdine evento;
+
+        lock.lock();
+
+        try {
+            evento = new EventoOrdine(ultimo + 1, tipo, ordine);
+
+            ultimo = evento.getNumero();
+            buffer[(int) (ultimo % DIMENSIONE_BUFFER)] = evento;
+
+            for (Iscrizione iscrizione : iscritti) {
+
+                if (!iscrizione.coda.offer(evento)) {
+                    // Client troppo lento: scollegato, recupererà
+                    // gli eventi dal buffer alla riconnessione
+                    iscrizione.scaduta = true;
+                    iscritti.remove(iscrizione);
+                }
+            }
+
+        } finally {
+            lock.unlock();
+        }
+
+        // Fuori dal lock: un ascoltatore lento non blocca
+        // le pubblicazioni degli altri thread
+        for (Consumer<EventoOrdine> ascoltatore : ascoltatori) {
+            try {
+                ascoltatore.accept(evento);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Registra un ascoltatore interno, chiamato per ogni
+     * evento pubblicato. Deve essere rapido e non bloccante.
+     *
+     * @param ascoltatore ascoltatore da avvisare
+     */
+    public void aggiungiAscoltatore(Consumer<EventoOrdine> ascoltatore) {
+        ascoltatori.add(ascoltatore);
+    }
+
+    // ====================================================
+    // ISCRIZIONE
+    // ====================================================
+
+    /**
+     * Iscrive un nuovo ascoltatore.
+     *
+     * @param ultimoRicevuto numero dell'ultimo evento già
+     *                       ricevuto (Last-Event-ID), oppure
+     *                       -1 per ricevere solo i nuovi eventi
+     * @return iscrizione, da chiudere al termine
+     */
+    public Iscrizione iscrivi(long ultimoRicevuto) {
+
+        lock.lock();
+
+        try {
+            Iscrizione iscrizione = new Iscrizione();
+
+            if (ultimoRicevuto >= 0 && ultimoRicevuto < ultimo) {
+
+                long primoDisponibile = Math.max(1, ultimo - DIMENSIONE_BUFFER + 1);
+
+                if (ultimoRicevuto + 1 < primoDisponibile) {
+                    // Eventi persi non più nel buffer
+                    iscrizione.incompleta = true;
+                } else {
+                    for (long n = ultimoRicevuto + 1; n <= ultimo; n++) {
+                        iscrizione.arretrati.add(buffer[(int) (n % DIMENSIONE_BUFFER)]);
+                    }
+                }
+
+            } else if (ultimoRicevuto > ultimo) {
+                // Numero sconosciuto: il server è stato riavviato
+                iscrizione.incompleta = true;
+            }
+
+            iscritti.add(iscrizione);
+            return iscrizione;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return numero di iscritti collegati
+     */
+    public int getIscritti() {
+        return iscritti.size();
+    }
+
+    // ====================================================
+    // ISCRIZIONE DI UN ASCOLTATORE
+    // ====================================================
+
+    /**
+     * Eventi destinati a un singolo ascoltatore.
+     * Va usata da un solo thread.
+     */
+    public class Iscrizione implements AutoCloseable {
+
+        private final BlockingQueue<EventoOrdine> coda =
+                new ArrayBlockingQueue<>(CODA_CLIENTE);
+
+        /**
+         * Eventi persi durante la disconnessione, da inviare
+         * prima di quelli nuovi.
+         */
+        private final List<EventoOrdine> arretrati = new ArrayList<>();
+
+        /**
+         * true se alcuni eventi persi non sono più recuperabili:
+         * il client deve ricaricare la pagina.
+         */
+        private boolean incompleta;
+
+        /**
+         * true se l'iscrizione è stata scollegata dal bus
+         * perché la coda era piena.
+         */
+        private volatile boolean scaduta;
+
+        private Iscrizione() {
+        }
+
+        /**
+         * Eventi persi da recuperare (letti una sola volta).
+         *
+         * @return eventi arretrati, nell'ordine di pubblicazione
+         */
+        public List<EventoOrdine> prelevaArretrati() {
+            List<EventoOrdine> copia = new ArrayList<>(arretrati);
+            arretrati.clear();
+            return copia;
+        }
+
+        public boolean isIncompleta() {
+            return incompleta;
+        }
+
+        public boolean isScaduta() {
+            return scaduta;
+        }
+
+        /**
+         * Attende il prossimo evento.
+         *
+         * @param attesaMs attesa massima
+         * @return evento, oppure null allo scadere dell'attesa
+         *         o se l'iscrizione è scaduta
+         * @throws InterruptedException se il thread viene interrotto
+         */
+        public EventoOrdine prossimo(long attesaMs) throws InterruptedException {
+
+            EventoOrdine evento = coda.poll(attesaMs, TimeUnit.MILLISECONDS);
+
+            // Dopo la scadenza gli eventi in coda non bastano
+            // più: il client si ricollega e li recupera dal buffer
+            return scaduta ? null : evento;
+        }
+
+        @Override
+        public void close() {
+            iscritti.remove(this);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package dominio;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+ * ============================================================
+ * CLASSE CACHE IDEMPOTENZA
+ * ============================================================
+ *
+ * Garantisce che un'operazione identificata da una chiave
+ * (la "chiave di idempotenza" inviata dal form) venga
+ * eseguita una sola volta.
+ *
+ * - prima richiesta con una chiave → esegue l'operazione
+ * - richieste successive con la stessa chiave → ricevono
+ *   lo stesso risultato, senza eseguire nulla
+ * - se la prima richiesta è ancora in corso, le altre
+ *   attendono il suo risultato
+ *
+ * Un risultato null (operazione fallita) non viene
+ * conservato: la richiesta successiva può riprovare.
+ *
+ * La cache è limitata:
+ * - takeaway.idempotenza.ttlMs   → durata di ogni voce
+ *                                  (default 10 minuti)
+ * - takeaway.idempotenza.massimo → numero massimo di voci
+ *                                  (default 10000)
+ *
+ * Tutte le voci hanno la stessa durata, quindi scadono
+ * nell'ordine di inserimento: basta una coda FIFO.
+ *
+ * @param <V> tipo del risultato conservato
+ */
+public class CacheIdempotenza<V> {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final long TTL_MS =
+            Long.getLong("takeaway.idempotenza.ttlMs", 10 * 60_000);
+
+    private static final int MASSIMO =
+            Integer.getInteger("takeaway.idempotenza.massimo", 10_000);
+
+    /**
+     * Attesa massima del risultato di una richiesta in corso.
+     */
+    private static final long ATTESA_MASSIMA_MS = 30_000;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Voci indicizzate per chiave.
+     */
+    private final Map<String, Voce<V>> voci = new ConcurrentHashMap<>();
+
+    /**
+     * Voci in ordine di inserimento (per scadenza e limite).
+     */
+    private final Queue<Voce<V>> ordineInserimento = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Lunghezza della coda (size() della coda concorrente
+     * ha costo lineare).
+     */
+    private final AtomicInteger lunghezzaCoda = new AtomicInteger();
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Esegue l'operazione una sola volta per chiave.
+     *
+     * @param chiave     chiave di idempotenza (null = nessuna protezione)
+     * @param operazione operazione da eseguire
+     * @return risultato dell'operazione, eseguita ora o in precedenza
+     */
+    public V esegui(String chiave, Supplier<V> operazione) {
+
+        if (chiave == null) {
+            return operazione.get();
+        }
+
+        pulisci();
+
+        Voce<V> nuova = new Voce<>(chiave);
+        Voce<V> esistente = voci.putIfAbsent(chiave, nuova);
+
+        if (esistente != null && !esistente.isScaduta()) {
+            // Ripetizione: risultato della prima richiesta
+            return attendi(esistente);
+        }
+
+        if (esistente != null) {
+            // Voce scaduta non ancora rimossa: viene sostituita
+            if (!voci.replace(chiave, esistente, nuova)) {
+                return esegui(chiave, operazione);
+            }
+        }
+
+        ordineInserimento.add(nuova);
+        lunghezzaCoda.incrementAndGet();
+
+        V risultato = null;
+
+        try {
+            risultato = operazione.get();
+            return risultato;
+
+        } finally {
+            nuova.risultato.complete(risultato);
+
+            if (risultato == null) {
+                // Fallimento: la chiave torna libera
+                voci.remove(chiave, nuova);
+            }
+        }
+    }
+
+    /**
+     * @return numero di voci presenti
+     */
+    public int getDimensione() {
+        return voci.size();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Attende il risultato della richiesta che sta
+     * eseguendo (o ha eseguito) l'operazione.
+     *
+     * @return risultato oppure null se non disponibile in tempo
+     */
+    private V attendi(Voce<V> voce) {
+
+        try {
+            return voce.risultato.get(ATTESA_MASSIMA_MS, TimeUnit.MILLISECONDS);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rimuove le voci scadute e, oltre il limite,
+     * le più vecchie.
+     */
+    private void pulisci() {
+
+        Voce<V> testa;
+
+        while ((testa = ordineInserimento.peek()) != null
+                && (testa.isScaduta() || lunghezzaCoda.get() > MASSIMO)) {
+
+            Voce<V> rimossa = ordineInserimento.poll();
+
+            if (rimossa != null) {
+                lunghezzaCoda.decrementAndGet();
+                voci.remove(rimossa.chiave, rimossa);
+            }
+        }
+    }
+
+    // ====================================================
+    // VOCE DELLA CACHE
+    // ====================================================
+
+    /**
+     * Chiave, istante di creazione e risultato
+     * (completato al termine della prima richiesta).
+     */
+    private static final class Voce<V> {
+
+        private final String chiave;
+
+        private final long creataIl = System.currentTimeMillis();
+
+        private final CompletableFuture<V> risultato = new CompletableFuture<>();
+
+        Voce(String chiave) {
+            this.chiave = chiave;
+        }
+
+        boolean isScaduta() {
+            return System.currentTimeMillis() - creataIl > TTL_MS;
+        }
+    }
+}
@@ -19,6 +19,22 @@ import java.util.List;
  * - aumentare la quantità se il prodotto è già presente
  * - diminuire o rimuovere un prodotto
  * - calcolare il totale dell'ordine
+ *
+ * Il totale (in centesimi) e il numero di pezzi vengono
+ * aggiornati a ogni modifica: leggerli non richiede di
+ * scorrere le righe.
+ *
+ * ------------------------------------------------------------
+ * CONCORRENZA
+ * ------------------------------------------------------------
+ * Ogni cliente ha il proprio carrello (vedi GestoreCarrelli),
+ * ma lo stesso cliente può inviare più richieste insieme
+ * (più schede, doppio click). I metodi sono quindi
+ * sincronizzati sul carrello e le righe vengono restituite
+ * come copia: chi le legge non vede modifiche a metà.
+ *
+ * Il lock riguarda un solo carrello: clienti diversi
+ * non si contendono nulla.
  */
 public class Carrello {
 
@@ -26,11 +42,32 @@ public class Carrello {
     // ATTRIBUTI
     // ====================================================
 
+    /**
+     * Identificativo della sessione (valore del cookie).
+     */
+    private final String id;
+
     /**
      * Lista delle righe presenti nel carrello.
      * Ogni riga rappresenta un prodotto con la relativa quantità.
      */
-    private List<RigaCarrello> righe;
+    private final List<RigaCarrello> righe;
+
+    /**
+     * Totale corrente in centesimi, aggiornato a ogni modifica.
+     */
+    private long totaleCentesimi;
+
+    /**
+     * Numero corrente di pezzi, aggiornato a ogni modifica.
+     */
+    private int pezzi;
+
+    /**
+     * Istante dell'ultimo utilizzo (millisecondi epoch),
+     * usato per scadenza ed espulsione dei carrelli inattivi.
+     */
+    private volatile long ultimoAccesso;
 
     // ====================================================
     // COSTRUTTORE
@@ -38,9 +75,13 @@ public class Carrello {
 
     /**
      * Crea un carrello vuoto.
+     *
+     * @param id identificativo della sessione
      */
-    public Carrello() {
+    public Carrello(String id) {
+        this.id = id;
         this.righe = new ArrayList<>();
+        this.ultimoAccesso = System.currentTimeMillis();
     }
 
     // ====================================================
@@ -58,18 +99,20 @@ public class Carrello {
      *
      * @param prodotto prodotto da aggiungere
      */
-    public void aggiungiProdotto(Prodotto prodotto) {
+    public synchronized void aggiungiProdotto(Prodotto prodotto) {
 
         // Cerchiamo se il prodotto è già presente nel carrello
         for (RigaCarrello riga : righe) {
             if (riga.getProdotto().getId().equals(prodotto.getId())) {
                 riga.setQuantita(riga.getQuantita() + 1);
+                registraVariazione(riga.getProdotto(), 1);
                 return;
             }
         }
 
         // Se il prodotto non è presente, aggiungiamo una nuova riga
         righe.add(new RigaCarrello(prodotto, 1));
+        registraVariazione(prodotto, 1);
     }
 
     /**
@@ -78,12 +121,9 @@ public class Carrello {
      * Se la quantità scende a zero:
      * - la riga viene rimossa dal carrello
      *
-     * Metodo privato perché la gestione avviene
-     * tramite handler o logiche superiori.
-     *
      * @param prodottoId id del prodotto da diminuire
      */
-    private void diminuisciProdotto(String prodottoId) {
+    public synchronized void diminuisciProdotto(String prodottoId) {
 
         for (int i = 0; i < righe.size(); i++) {
             RigaCarrello riga = righe.get(i);
@@ -98,41 +138,109 @@ public class Carrello {
                     riga.setQuantita(nuovaQuantita);
                 }
 
+                registraVariazione(riga.getProdotto(), -1);
                 return;
             }
         }
     }
 
     /**
-     * Restituisce la lista delle righe del carrello.
+     * Imposta la quantità di un prodotto.
      *
-     * @return lista di RigaCarrello
+     * - quantità 0 (o negativa) → la riga viene rimossa
+     * - prodotto non presente   → viene aggiunta una riga
+     *
+     * @param prodotto prodotto da modificare
+     * @param quantita nuova quantità
      */
-    public List<RigaCarrello> getRighe() {
-        return righe;
+    public synchronized void impostaQuantita(Prodotto prodotto, int quantita) {
+
+        for (int i = 0; i < righe.size(); i++) {
+            RigaCarrello riga = righe.get(i);
+
+            if (riga.getProdotto().getId().equals(prodotto.getId())) {
+
+                int precedente = riga.getQuantita();
+
+                if (quantita <= 0) {
+                    righe.remove(i);
+                    quantita = 0;
+                } else {
+                    riga.setQuantita(quantita);
+                }
+
+                registraVariazione(riga.getProdotto(), quantita - precedente);
+                return;
+            }
+        }
+
+        if (quantita > 0) {
+            righe.add(new RigaCarrello(prodotto, quantita));
+            registraVariazione(prodotto, quantita);
+        }
     }
 
     /**
-     * Calcola il totale del carrello.
+     * Restituisce una copia delle righe del carrello.
+     *
+     * Le righe restituite sono indipendenti dal carrello:
+     * modifiche successive non le alterano.
      *
-     * @return totale complessivo dei prodotti
+     * @return lista di RigaCarrello
      */
-    public double getTotale() {
+    public synchronized List<RigaCarrello> getRighe() {
 
-        double totale = 0;
+        List<RigaCarrello> copia = new ArrayList<>(righe.size());
 
         for (RigaCarrello riga : righe) {
-            totale += riga.getTotale();
+            copia.add(new RigaCarrello(riga.getProdotto(), riga.getQuantita()));
         }
 
-        return totale;
+        return copia;
+    }
+
+    /**
+     * Restituisce righe, totale e pezzi in un'unica lettura.
+     *
+     * @return copia coerente del contenuto del carrello
+     */
+    public synchronized ContenutoCarrello getContenuto() {
+        return new ContenutoCarrello(getRighe(), totaleCentesimi, pezzi);
+    }
+
+    /**
+     * Restituisce il totale del carrello.
+     *
+     * @return totale complessivo dei prodotti in centesimi
+     */
+    public synchronized long getTotaleCentesimi() {
+        return totaleCentesimi;
+    }
+
+    /**
+     * Conta i pezzi presenti nel carrello
+     * (somma delle quantità di tutte le righe).
+     *
+     * @return numero di pezzi
+     */
+    public synchronized int getNumeroPezzi() {
+        return pezzi;
+    }
+
+    /**
+     * @return true se il carrello non contiene prodotti
+     */
+    public synchronized boolean isVuoto() {
+        return righe.isEmpty();
     }
 
     /**
      * Svuota completamente il carrello.
      */
-    public void svuota() {
+    public synchronized void svuota() {
         righe.clear();
+        totaleCentesimi = 0;
+        pezzi = 0;
     }
 
     /**
@@ -147,4 +255,35 @@ public class Carrello {
     public void aggiungiProdottoById(String prodottoId) {
         // Questo metodo sarà completato dal handler con il Catalogo
     }
+
+    /**
+     * Aggiorna totale e pezzi dopo una variazione di quantità
+     * (chiamato con il lock del carrello acquisito).
+     *
+     * @param prodotto prodotto modificato
+     * @param delta    variazione di quantità (anche negativa)
+     */
+    private void registraVariazione(Prodotto prodotto, int delta) {
+        pezzi += delta;
+        totaleCentesimi += prodotto.getPrezzoCentesimi() * delta;
+    }
+
+    // ====================================================
+    // SESSIONE
+    // ====================================================
+
+    public String getId() {
+        return id;
+    }
+
+    public long getUltimoAccesso() {
+        return ultimoAccesso;
+    }
+
+    /**
+     * Registra un utilizzo del carrello.
+     */
+    void tocca() {
+        ultimoAccesso = System.currentTimeMillis();
+    }
 }
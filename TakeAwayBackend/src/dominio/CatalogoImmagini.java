@@ -0,0 +1,478 @@
+package dominio;
+
+import database.GestoreDatabase;
+import database.Query;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * ============================================================
+ * CLASSE CATALOGO IMMAGINI
+ * ============================================================
+ *
+ * Mantiene in memoria i byte delle immagini dei prodotti
+ * e dei relativi derivati ridimensionati.
+ *
+ * Ogni immagine viene letta dal database una sola volta
+ * (alla prima richiesta) e poi servita dalla memoria.
+ *
+ * Il menu referenzia le immagini con URL versionati
+ * (/img?id=PAN1&v=impronta&dim=miniatura). Fa fede solo
+ * l'impronta dello snapshot del catalogo: un'immagine viene
+ * riletta quando lo snapshot riporta un'impronta diversa da
+ * quella con cui è stata caricata. Una "v" diversa (pagina
+ * vecchia o valore inventato) riceve l'immagine attuale con
+ * una cache breve, senza accessi al database.
+ *
+ * ------------------------------------------------------------
+ * DERIVATI SU DISCO
+ * ------------------------------------------------------------
+ * A ogni nuovo snapshot del catalogo vengono generati in
+ * background i derivati (MINIATURA, SCHEDA, COMPLETA)
+ * delle immagini nuove o modificate. I file vengono salvati
+ * nella cartella "takeaway.immagini.dir", con nome
+ * <id>-<impronta>-<variante>.jpg: dopo un riavvio non è
+ * necessario rigenerarli né rileggere i LONGBLOB.
+ *
+ * I parametri dell'URL non raggiungono mai il file system
+ * senza controllo: l'id deve essere un prodotto dello
+ * snapshot corrente, l'impronta un MD5 esadecimale e il
+ * file risultante deve trovarsi nella cartella dei derivati.
+ */
+public class CatalogoImmagini {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Cartella dei derivati generati.
+     */
+    private static final Path CARTELLA = Paths.get(
+            System.getProperty("takeaway.immagini.dir", "cache/immagini"));
+
+    /**
+     * Estensione dei file derivati.
+     */
+    private static final String ESTENSIONE = ".jpg";
+
+    /**
+     * Formato dell'impronta: MD5 esadecimale minuscolo.
+     */
+    private static final Pattern FORMATO_IMPRONTA = Pattern.compile("[0-9a-f]{32}");
+
+    /**
+     * Cartella dei derivati come percorso assoluto normalizzato,
+     * per il controllo dei percorsi dei file.
+     */
+    private static final Path CARTELLA_ASSOLUTA = CARTELLA.toAbsolutePath().normalize();
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Gestore delle connessioni al database.
+     */
+    private GestoreDatabase gestoreDatabase;
+
+    /**
+     * Catalogo dei prodotti validi (impostato da osserva).
+     */
+    private volatile CatalogoProdotti catalogoProdotti;
+
+    /**
+     * Immagini già caricate, indicizzate per id prodotto e variante.
+     */
+    private final Map<String, VoceCache> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Thread dedicato alla generazione dei derivati.
+     */
+    private final ExecutorService generatore =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "immagini-derivati");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param gestoreDatabase gestore delle connessioni al database
+     */
+    public CatalogoImmagini(GestoreDatabase gestoreDatabase) {
+        this.gestoreDatabase = gestoreDatabase;
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Collega la generazione dei derivati al catalogo prodotti:
+     * a ogni nuovo snapshot vengono preparati i derivati
+     * delle immagini nuove o modificate.
+     *
+     * @param catalogoProdotti catalogo da osservare
+     */
+    public void osserva(CatalogoProdotti catalogoProdotti) {
+        this.catalogoProdotti = catalogoProdotti;
+        catalogoProdotti.aggiungiAscoltatore(
+                snapshot -> generatore.execute(() -> preparaDerivati(snapshot)));
+    }
+
+    /**
+     * Restituisce l'immagine di un prodotto nella variante richiesta.
+     *
+     * @param idProdotto     id del prodotto
+     * @param improntaAttesa impronta indicata nell'URL (null se
+     *                       non specificata): solo validata, il
+     *                       chiamante la confronta con quella
+     *                       dell'immagine per la durata della cache
+     * @param variante       dimensione richiesta
+     * @return immagine oppure null se il prodotto non esiste,
+     *         non ha immagine o l'impronta non è valida
+     */
+    public ImmagineProdotto getImmagine(
+            String idProdotto,
+            String improntaAttesa,
+            VarianteImmagine variante
+    ) {
+
+        CatalogoProdotti catalogo = catalogoProdotti;
+
+        if (catalogo == null
+                || (improntaAttesa != null
+                    && !FORMATO_IMPRONTA.matcher(improntaAttesa).matches())) {
+            return null;
+        }
+
+        SnapshotCatalogo snapshot = catalogo.getSnapshot();
+
+        if (snapshot.getProdotto(idProdotto) == null) {
+            return null;
+        }
+
+        String chiave = idProdotto + ":" + variante;
+
+        // L'impronta dell'URL non decide il ricaricamento:
+        // solo quella dello snapshot
+        String improntaAttuale = snapshot.getImprontaImmagine(idProdotto);
+
+        if (improntaAttuale == null) {
+            cache.remove(chiave);
+            return null;
+        }
+
+        VoceCache voce = cache.get(chiave);
+
+        if (voce != null && voce.impronta.equals(improntaAttuale)) {
+            return voce.immagine;
+        }
+
+        ImmagineProdotto immagine = carica(idProdotto, improntaAttuale, variante);
+
+        if (immagine == null) {
+            cache.remove(chiave);
+            return null;
+        }
+
+        cache.put(chiave, new VoceCache(improntaAttuale, immagine));
+        return immagine;
+    }
+
+    /**
+     * Svuota la cache in memoria: le immagini verranno
+     * rilette alla prossima richiesta.
+     */
+    public void invalida() {
+        cache.clear();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Carica un'immagine:
+     * - per i derivati prova prima il disco (impronta dello snapshot)
+     * - altrimenti legge l'originale dal database e, se
+     *   necessario, genera e salva il derivato
+     */
+    private ImmagineProdotto carica(
+            String idProdotto,
+            String improntaAttuale,
+            VarianteImmagine variante
+    ) {
+
+        if (variante.isDerivata() && improntaAttuale != null) {
+
+            ImmagineProdotto daDisco =
+                    leggiDerivato(idProdotto, improntaAttuale, variante);
+
+            if (daDisco != null) {
+                return daDisco;
+            }
+        }
+
+        byte[] originale = leggiOriginale(idProdotto);
+
+        if (originale == null) {
+            return null;
+        }
+
+        String improntaOrigine = impronta(originale);
+
+        if (!variante.isDerivata()) {
+            return new ImmagineProdotto(
+                    originale, improntaOrigine, improntaOrigine, "image/png");
+        }
+
+        try {
+            return generaDerivato(idProdotto, improntaOrigine, originale, variante);
+        } catch (IOException e) {
+            System.err.println("Errore nella generazione del derivato "
+                    + idProdotto + " " + variante);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Genera i derivati mancanti per tutti i prodotti dello
+     * snapshot ed elimina quelli di immagini non più attuali.
+     * Eseguito sul thread "immagini-derivati".
+     */
+    private void preparaDerivati(SnapshotCatalogo snapshot) {
+
+        for (Prodotto p : snapshot.getProdotti()) {
+
+            String impronta = snapshot.getImprontaImmagine(p.getId());
+
+            if (impronta == null) {
+                continue;
+            }
+
+            try {
+                byte[] originale = null;
+
+                for (VarianteImmagine variante : VarianteImmagine.values()) {
+
+                    if (!variante.isDerivata()
+                            || Files.exists(percorso(p.getId(), impronta, variante))) {
+                        continue;
+                    }
+
+                    // L'originale viene letto una sola volta per prodotto
+                    if (originale == null) {
+                        originale = leggiOriginale(p.getId());
+
+                        // Immagine cambiata dopo lo snapshot: i derivati
+                        // verranno generati con il prossimo snapshot
+                        // (con l'impronta letta qui verrebbero subito
+                        // eliminati come obsoleti)
+                        if (originale != null && !impronta.equals(impronta(originale))) {
+                            originale = null;
+                        }
+                    }
+
+                    if (originale == null) {
+                        break;
+                    }
+
+                    generaDerivato(p.getId(), impronta, originale, variante);
+                }
+
+                eliminaObsoleti(p.getId(), impronta);
+
+            } catch (IOException e) {
+                System.err.println("Errore nella preparazione dei derivati di " + p.getId());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Genera un derivato, lo salva su disco e lo restituisce.
+     */
+    private ImmagineProdotto generaDerivato(
+            String idProdotto,
+            String improntaOrigine,
+            byte[] originale,
+            VarianteImmagine variante
+    ) throws IOException {
+
+        byte[] dati = ElaboratoreImmagini.creaDerivato(originale, variante);
+
+        // Scrittura atomica: prima un file temporaneo, poi lo spostamento
+        Files.createDirectories(CARTELLA);
+        Path destinazione = percorso(idProdotto, improntaOrigine, variante);
+        Path temporaneo = Files.createTempFile(CARTELLA, idProdotto, ".tmp");
+
+        Files.write(temporaneo, dati);
+        Files.move(temporaneo, destinazione,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        return new ImmagineProdotto(
+                dati, impronta(dati), improntaOrigine, ElaboratoreImmagini.TIPO_DERIVATI);
+    }
+
+    /**
+     * Legge un derivato già presente su disco.
+     *
+     * @return derivato oppure null se il file non esiste
+     */
+    private ImmagineProdotto leggiDerivato(
+            String idProdotto,
+            String improntaOrigine,
+            VarianteImmagine variante
+    ) {
+
+        try {
+            Path file = percorso(idProdotto, improntaOrigine, variante);
+
+            if (!Files.exists(file)) {
+                return null;
+            }
+
+            byte[] dati = Files.readAllBytes(file);
+            return new ImmagineProdotto(
+                    dati, impronta(dati), improntaOrigine, ElaboratoreImmagini.TIPO_DERIVATI);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Elimina dal disco i derivati di versioni precedenti
+     * dell'immagine di un prodotto.
+     */
+    private void eliminaObsoleti(String idProdotto, String improntaAttuale)
+            throws IOException {
+
+        if (!Files.isDirectory(CARTELLA)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> files =
+                     Files.newDirectoryStream(CARTELLA, idProdotto + "-*" + ESTENSIONE)) {
+
+            for (Path file : files) {
+                if (!file.getFileName().toString()
+                        .startsWith(idProdotto + "-" + improntaAttuale + "-")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Percorso del file di un derivato.
+     *
+     * @throws IOException se il nome risultante uscirebbe
+     *                     dalla cartella dei derivati
+     */
+    private Path percorso(String idProdotto, String impronta, VarianteImmagine variante)
+            throws IOException {
+
+        Path file = CARTELLA.resolve(
+                idProdotto + "-" + impronta + "-" + variante.getParametro() + ESTENSIONE);
+
+        if (!CARTELLA_ASSOLUTA.equals(file.toAbsolutePath().normalize().getParent())) {
+            throw new IOException("Percorso del derivato non valido: " + file);
+        }
+
+        return file;
+    }
+
+    /**
+     * Legge l'immagine originale dal database.
+     *
+     * @param idProdotto id del prodotto
+     * @return byte dell'immagine oppure null se assente o in caso di errore
+     */
+    private byte[] leggiOriginale(String idProdotto) {
+
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement ps =
+                        conn.prepareStatement(Query.SELECT_IMG_PRODOTTO)
+        ) {
+
+            ps.setString(1, idProdotto);
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                if (!rs.next()) {
+                    return null;
+                }
+
+                byte[] dati = rs.getBytes("immagine");
+                return (dati == null || dati.length == 0) ? null : dati;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Errore nel recupero immagine " + idProdotto);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Calcola l'impronta MD5 esadecimale di un contenuto.
+     * Coincide con il valore MD5() calcolato da MySQL.
+     */
+    static String impronta(byte[] dati) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("MD5").digest(dati));
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 è sempre disponibile in ogni JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ====================================================
+    // VOCE DELLA CACHE
+    // ====================================================
+
+    /**
+     * Immagine in cache con l'impronta dello snapshot per
+     * cui è stata caricata: se il database è già cambiato
+     * rispetto allo snapshot la voce resta valida fino al
+     * prossimo snapshot, invece di essere riletta a ogni
+     * richiesta.
+     */
+    private static class VoceCache {
+
+        private final String impronta;
+
+        private final ImmagineProdotto immagine;
+
+        VoceCache(String impronta, ImmagineProdotto immagine) {
+            this.impronta = impronta;
+            this.immagine = immagine;
+        }
+    }
+}
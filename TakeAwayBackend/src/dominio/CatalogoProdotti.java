@@ -1,6 +1,7 @@
 package dominio;
 
 import database.GestoreDatabase;
+import database.Importi;
 import database.Query;
 
 import java.sql.Connection;
@@ -9,8 +10,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /*
  * ============================================================
@@ -26,9 +35,38 @@ import java.util.List;
  * - trasformare ogni record in un oggetto Prodotto
  *
  * Rappresenta quindi il ponte tra database e dominio.
+ *
+ * ------------------------------------------------------------
+ * CACHE IN MEMORIA
+ * ------------------------------------------------------------
+ * Il catalogo cambia raramente, mentre viene letto a ogni
+ * visualizzazione del menu. Per questo viene mantenuto in
+ * memoria come SnapshotCatalogo immutabile e versionato.
+ *
+ * Lo snapshot viene ricaricato:
+ * - alla scadenza del TTL (proprietà "takeaway.catalogo.ttlMs")
+ * - su richiesta esplicita tramite invalida()
+ *
+ * Il ricaricamento avviene in background: le richieste
+ * continuano a usare lo snapshot precedente finché
+ * quello nuovo non è pronto.
+ *
+ * Gli ascoltatori registrati vengono avvisati a ogni nuovo
+ * snapshot pubblicato (es. generazione dei derivati delle
+ * immagini).
  */
 public class CatalogoProdotti {
 
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Durata di validità dello snapshot in millisecondi.
+     */
+    private static final long TTL_MS =
+            Long.getLong("takeaway.catalogo.ttlMs", 5 * 60_000);
+
     // ====================================================
     // ATTRIBUTI
     // ====================================================
@@ -39,6 +77,45 @@ public class CatalogoProdotti {
      */
     private GestoreDatabase gestoreDatabase;
 
+    /**
+     * Snapshot corrente del catalogo (null prima del primo caricamento).
+     */
+    private final AtomicReference<SnapshotCatalogo> snapshot =
+            new AtomicReference<>();
+
+    /**
+     * Contatore delle versioni del catalogo.
+     */
+    private final AtomicLong versioni = new AtomicLong();
+
+    /**
+     * Impedisce ricaricamenti concorrenti.
+     */
+    private final AtomicBoolean ricaricaInCorso = new AtomicBoolean();
+
+    /**
+     * Invalidazione richiesta dopo l'inizio del ricaricamento
+     * in corso: lo snapshot in costruzione potrebbe non
+     * contenere la modifica, quindi va ricostruito.
+     */
+    private final AtomicBoolean ricaricaRichiesta = new AtomicBoolean();
+
+    /**
+     * Ascoltatori avvisati a ogni nuovo snapshot.
+     */
+    private final List<Consumer<SnapshotCatalogo>> ascoltatori =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Thread dedicato ai ricaricamenti in background.
+     */
+    private final ExecutorService ricaricatore =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "catalogo-ricarica");
+                t.setDaemon(true);
+                return t;
+            });
+
     // ====================================================
     // COSTRUTTORE
     // ====================================================
@@ -56,67 +133,306 @@ public class CatalogoProdotti {
     // METODI PUBBLICI
     // ====================================================
 
+    /**
+     * Restituisce tutti i prodotti del catalogo,
+     * letti dallo snapshot in memoria.
+     *
+     * @return lista immutabile dei prodotti disponibili
+     */
+    public List<Prodotto> getTuttiProdotti() {
+        return getSnapshot().getProdotti();
+    }
+
+    /**
+     * Cerca un prodotto tramite il suo id.
+     *
+     * La ricerca avviene sull'indice hash dello snapshot.
+     * Solo se il prodotto non è presente (ad esempio aggiunto
+     * dopo l'ultimo caricamento) viene interrogato il database
+     * con la query per id, che non legge l'immagine.
+     *
+     * @param id identificativo del prodotto
+     * @return prodotto trovato oppure null se non esiste
+     */
+    public Prodotto getProdottoById(String id) {
+
+        Prodotto prodotto = getSnapshot().getProdotto(id);
+
+        if (prodotto != null) {
+            return prodotto;
+        }
+
+        prodotto = caricaPerId(id);
+
+        if (prodotto != null) {
+            // Il catalogo in memoria non è aggiornato
+            invalida();
+        }
+
+        return prodotto;
+    }
+
+    /**
+     * Restituisce i prodotti raggruppati per categoria.
+     *
+     * @return mappa categoria → prodotti, nell'ordine del menu
+     */
+    public Map<String, List<Prodotto>> getProdottiPerCategoria() {
+        return getSnapshot().getPerCategoria();
+    }
+
+    /**
+     * Restituisce lo snapshot corrente del catalogo.
+     *
+     * - al primo accesso il caricamento è sincrono
+     * - se lo snapshot è scaduto viene avviato un ricaricamento
+     *   in background e restituito quello attuale
+     *
+     * @return snapshot del catalogo (mai null)
+     */
+    public SnapshotCatalogo getSnapshot() {
+
+        SnapshotCatalogo attuale = snapshot.get();
+
+        if (attuale == null) {
+            return caricaSincrono();
+        }
+
+        if (System.currentTimeMillis() - attuale.getCaricatoIl() > TTL_MS) {
+            ricaricaInBackground();
+        }
+
+        return attuale;
+    }
+
+    /**
+     * Registra un ascoltatore invocato a ogni nuovo snapshot
+     * pubblicato. Se il catalogo è già caricato l'ascoltatore
+     * riceve subito lo snapshot corrente.
+     *
+     * Gli ascoltatori devono essere rapidi: lavori lunghi
+     * vanno delegati a un proprio thread.
+     *
+     * @param ascoltatore funzione che riceve il nuovo snapshot
+     */
+    public void aggiungiAscoltatore(Consumer<SnapshotCatalogo> ascoltatore) {
+
+        ascoltatori.add(ascoltatore);
+
+        SnapshotCatalogo attuale = snapshot.get();
+
+        if (attuale != null) {
+            ascoltatore.accept(attuale);
+        }
+    }
+
+    /**
+     * Invalida il catalogo: un nuovo snapshot viene
+     * costruito in background. Da chiamare dopo ogni
+     * modifica della tabella prodotto.
+     */
+    public void invalida() {
+        ricaricaRichiesta.set(true);
+        ricaricaInBackground();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Primo caricamento: un solo thread interroga il database,
+     * gli altri attendono lo stesso risultato.
+     */
+    private synchronized SnapshotCatalogo caricaSincrono() {
+
+        SnapshotCatalogo attuale = snapshot.get();
+
+        if (attuale != null) {
+            return attuale;
+        }
+
+        SnapshotCatalogo nuovo = costruisciSnapshot();
+
+        if (nuovo == null) {
+            // Database non disponibile: catalogo vuoto, si riproverà
+            return new SnapshotCatalogo(0, System.currentTimeMillis(), List.of(), Map.of());
+        }
+
+        pubblica(nuovo);
+        return nuovo;
+    }
+
+    /**
+     * Avvia un ricaricamento in background, se non ce n'è
+     * già uno in corso.
+     *
+     * Un'invalidazione arrivata durante il ricaricamento non
+     * viene persa: al termine il catalogo viene riletto.
+     */
+    private void ricaricaInBackground() {
+
+        if (!ricaricaInCorso.compareAndSet(false, true)) {
+            return;
+        }
+
+        ricaricatore.execute(() -> {
+            try {
+                // Le invalidazioni successive a questo punto
+                // richiedono un nuovo giro
+                ricaricaRichiesta.set(false);
+
+                SnapshotCatalogo nuovo = costruisciSnapshot();
+
+                // In caso di errore si continua con lo snapshot precedente
+                if (nuovo != null) {
+                    pubblica(nuovo);
+                }
+            } finally {
+                ricaricaInCorso.set(false);
+
+                // Invalidazione arrivata durante il ricaricamento
+                // (anche dopo il controllo di ricaricaInCorso)
+                if (ricaricaRichiesta.get()) {
+                    ricaricaInBackground();
+                }
+            }
+        });
+    }
+
+    /**
+     * Rende visibile un nuovo snapshot e avvisa gli ascoltatori.
+     */
+    private void pubblica(SnapshotCatalogo nuovo) {
+
+        snapshot.set(nuovo);
+
+        for (Consumer<SnapshotCatalogo> ascoltatore : ascoltatori) {
+            try {
+                ascoltatore.accept(nuovo);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Legge il catalogo dal database e costruisce un nuovo snapshot.
+     *
+     * @return nuovo snapshot oppure null in caso di errore SQL
+     */
+    private SnapshotCatalogo costruisciSnapshot() {
+
+        try {
+            List<Prodotto> prodotti = caricaDalDatabase();
+            Map<String, String> impronte = caricaImpronte();
+
+            return new SnapshotCatalogo(
+                    versioni.incrementAndGet(),
+                    System.currentTimeMillis(),
+                    prodotti,
+                    impronte
+            );
+
+        } catch (SQLException e) {
+            System.err.println("Errore nel caricamento dei prodotti");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Recupera tutti i prodotti dal database e li
      * converte in una lista di oggetti {@link Prodotto}.
      *
-     * Per ogni prodotto:
-     * - legge i dati testuali
-     * - legge l'immagine come byte[]
-     * - converte l'immagine in Base64 per l'uso HTML
+     * Vengono letti solo i dati testuali e il prezzo:
+     * la colonna immagine non viene trasferita.
      *
      * @return lista di prodotti disponibili nel catalogo
+     * @throws SQLException in caso di errore del database
      */
-    public List<Prodotto> getTuttiProdotti() {
+    private List<Prodotto> caricaDalDatabase() throws SQLException {
 
         List<Prodotto> prodotti = new ArrayList<>();
 
-        try {
+        // Try-with-resources: connessione, statement e result set
+        // vengono chiusi (e la connessione restituita al pool)
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement ps = conn.prepareStatement(Query.SELECT_TUTTI_PRODOTTI);
+                ResultSet rs = ps.executeQuery()
+        ) {
 
-            // Apertura connessione al database
-            Connection conn = gestoreDatabase.getConnessione();
+            // Creazione di un oggetto Prodotto per ogni riga
+            while (rs.next()) {
+                prodotti.add(creaProdotto(rs));
+            }
+        }
 
-            // Preparazione ed esecuzione query
-            PreparedStatement ps = conn.prepareStatement(Query.SELECT_TUTTI_PRODOTTI);
-            ResultSet rs = ps.executeQuery();
+        return prodotti;
+    }
+
+    /**
+     * Recupera l'impronta MD5 dell'immagine di ogni prodotto.
+     * L'hash è calcolato da MySQL: i byte non vengono trasferiti.
+     *
+     * @return mappa id prodotto → impronta esadecimale
+     * @throws SQLException in caso di errore del database
+     */
+    private Map<String, String> caricaImpronte() throws SQLException {
+
+        Map<String, String> impronte = new HashMap<>();
+
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement ps = conn.prepareStatement(Query.SELECT_IMPRONTE_IMMAGINI);
+                ResultSet rs = ps.executeQuery()
+        ) {
 
-            // Creazione di un oggetto Prodotto per ogni riga
             while (rs.next()) {
+                impronte.put(rs.getString("id"), rs.getString("impronta"));
+            }
+        }
 
-                String id = rs.getString("id");
-                String nome = rs.getString("nome");
-                String descrizione = rs.getString("descrizione");
-                double prezzo = rs.getDouble("prezzo");
-                String categoria = rs.getString("categoria");
-                byte[] img = rs.getBytes("immagine");
-
-                // Controllo presenza immagine
-                if (img == null || img.length == 0) {
-                    System.out.println("ID: " + id + " | IMG bytes: " + img.length);
-                    continue;
-                }
+        return impronte;
+    }
 
-                // Conversione immagine in Base64
-                String base64 = Base64.getEncoder().encodeToString(img);
+    /**
+     * Legge un singolo prodotto dal database tramite il suo id.
+     *
+     * @param id identificativo del prodotto
+     * @return prodotto oppure null se non esiste o in caso di errore
+     */
+    private Prodotto caricaPerId(String id) {
 
-                // Creazione oggetto dominio
-                Prodotto prodotto = new Prodotto(
-                        id,
-                        nome,
-                        descrizione,
-                        prezzo,
-                        categoria,
-                        base64
-                );
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement ps = conn.prepareStatement(Query.SELECT_PRODOTTO_PER_ID)
+        ) {
 
-                prodotti.add(prodotto);
+            ps.setString(1, id);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? creaProdotto(rs) : null;
             }
 
         } catch (SQLException e) {
-            System.err.println("Errore nel caricamento dei prodotti");
+            System.err.println("Errore nel recupero del prodotto " + id);
             e.printStackTrace();
+            return null;
         }
+    }
 
-        return prodotti;
+    /**
+     * Crea un Prodotto dalla riga corrente del ResultSet.
+     */
+    private Prodotto creaProdotto(ResultSet rs) throws SQLException {
+        return new Prodotto(
+                rs.getString("id"),
+                rs.getString("nome"),
+                rs.getString("descrizione"),
+                Importi.leggi(rs, "prezzo"),
+                rs.getString("categoria")
+        );
     }
 }
@@ -0,0 +1,63 @@
+package dominio;
+
+import java.util.List;
+
+/*
+ * ============================================================
+ * CLASSE CONTENUTO CARRELLO
+ * ============================================================
+ *
+ * Copia del carrello in un determinato istante: righe,
+ * totale e numero di pezzi letti insieme, sotto lo stesso
+ * lock, quindi sempre coerenti tra loro.
+ *
+ * Usata da chi deve mostrare o salvare righe e totale
+ * (pagina del carrello, API, creazione dell'ordine).
+ */
+public class ContenutoCarrello {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final List<RigaCarrello> righe;
+
+    private final long totaleCentesimi;
+
+    private final int pezzi;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param righe           copia delle righe
+     * @param totaleCentesimi totale in centesimi
+     * @param pezzi           numero di pezzi
+     */
+    public ContenutoCarrello(List<RigaCarrello> righe, long totaleCentesimi, int pezzi) {
+        this.righe = righe;
+        this.totaleCentesimi = totaleCentesimi;
+        this.pezzi = pezzi;
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public List<RigaCarrello> getRighe() {
+        return righe;
+    }
+
+    public long getTotaleCentesimi() {
+        return totaleCentesimi;
+    }
+
+    public int getPezzi() {
+        return pezzi;
+    }
+
+    public boolean isVuoto() {
+        return righe.isEmpty();
+    }
+}
@@ -0,0 +1,170 @@
+package dominio;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/*
+ * ============================================================
+ * CLASSE ELABORATORE IMMAGINI
+ * ============================================================
+ *
+ * Genera i derivati ridimensionati delle immagini dei prodotti.
+ *
+ * Le immagini originali sono PNG di 150–170 KB, ma il menu
+ * le mostra a 150px di larghezza. I derivati:
+ * - vengono ridotti alla larghezza della variante
+ *   (dimezzando progressivamente per mantenere la qualità)
+ * - vengono appiattiti su sfondo bianco, lo stesso delle card
+ * - vengono codificati in JPEG, molto più compatto del PNG
+ *   per immagini fotografiche
+ *
+ * È una classe di utilità senza stato.
+ */
+public class ElaboratoreImmagini {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Qualità della compressione JPEG (0.0 – 1.0).
+     */
+    private static final float QUALITA_JPEG = 0.82f;
+
+    /**
+     * Tipo MIME dei derivati.
+     */
+    public static final String TIPO_DERIVATI = "image/jpeg";
+
+    private ElaboratoreImmagini() {
+        // Classe di utilità: non istanziabile
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Crea il derivato di un'immagine per la variante indicata.
+     *
+     * @param originale byte dell'immagine originale
+     * @param variante  variante da generare (derivata)
+     * @return byte del derivato in formato JPEG
+     * @throws IOException se l'immagine non è leggibile
+     */
+    public static byte[] creaDerivato(byte[] originale, VarianteImmagine variante)
+            throws IOException {
+
+        BufferedImage sorgente = ImageIO.read(new ByteArrayInputStream(originale));
+
+        if (sorgente == null) {
+            throw new IOException("Formato immagine non riconosciuto");
+        }
+
+        // Dimensioni finali: mai ingrandire l'originale
+        double scala = Math.min(1.0,
+                (double) variante.getLarghezza() / sorgente.getWidth());
+
+        int larghezza = Math.max(1, (int) Math.round(sorgente.getWidth() * scala));
+        int altezza = Math.max(1, (int) Math.round(sorgente.getHeight() * scala));
+
+        // Riduzioni successive a metà: evitano l'aliasing
+        // di un singolo ridimensionamento molto ampio
+        BufferedImage corrente = sorgente;
+
+        while (corrente.getWidth() / 2 >= larghezza) {
+            corrente = ridimensiona(
+                    corrente,
+                    corrente.getWidth() / 2,
+                    corrente.getHeight() / 2,
+                    BufferedImage.TYPE_INT_ARGB,
+                    null
+            );
+        }
+
+        // Passo finale: dimensione esatta su sfondo bianco
+        BufferedImage finale = ridimensiona(
+                corrente,
+                larghezza,
+                altezza,
+                BufferedImage.TYPE_INT_RGB,
+                Color.WHITE
+        );
+
+        return codificaJpeg(finale);
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Disegna l'immagine alle dimensioni indicate
+     * con interpolazione bilineare.
+     */
+    private static BufferedImage ridimensiona(
+            BufferedImage sorgente,
+            int larghezza,
+            int altezza,
+            int tipo,
+            Color sfondo
+    ) {
+
+        BufferedImage destinazione = new BufferedImage(larghezza, altezza, tipo);
+        Graphics2D g = destinazione.createGraphics();
+
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                    RenderingHints.VALUE_RENDER_QUALITY);
+
+            if (sfondo != null) {
+                g.setColor(sfondo);
+                g.fillRect(0, 0, larghezza, altezza);
+            }
+
+            g.drawImage(sorgente, 0, 0, larghezza, altezza, null);
+
+        } finally {
+            g.dispose();
+        }
+
+        return destinazione;
+    }
+
+    /**
+     * Codifica l'immagine in JPEG con la qualità configurata.
+     */
+    private static byte[] codificaJpeg(BufferedImage immagine) throws IOException {
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+
+            ImageWriteParam parametri = writer.getDefaultWriteParam();
+            parametri.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametri.setCompressionQuality(QUALITA_JPEG);
+
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(immagine, null, null), parametri);
+
+        } finally {
+            writer.dispose();
+        }
+
+        return out.toByteArray();
+    }
+}
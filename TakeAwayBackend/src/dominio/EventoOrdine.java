@@ -0,0 +1,96 @@
+package dominio;
+
+/*
+ * ============================================================
+ * CLASSE EVENTO ORDINE
+ * ============================================================
+ *
+ * Un evento pubblicato sul BusEventiOrdine:
+ * - NUOVO → un cliente ha confermato un ordine
+ * - STATO → lo staff ha cambiato lo stato di un ordine
+ *
+ * Contiene una copia dei dati dell'ordine al momento
+ * dell'evento: è immutabile e può essere letto da
+ * qualsiasi thread.
+ */
+public class EventoOrdine {
+
+    // ====================================================
+    // TIPI DI EVENTO
+    // ====================================================
+
+    public enum Tipo {
+        NUOVO,
+        STATO
+    }
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Numero progressivo assegnato dal bus (crescente).
+     */
+    private final long numero;
+
+    private final Tipo tipo;
+
+    /**
+     * Id dell'ordine (0 se non ancora scritto nel database).
+     */
+    private final int ordineId;
+
+    private final String codice;
+
+    private final String nomeCliente;
+
+    private final long totaleCentesimi;
+
+    private final StatoOrdine stato;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    EventoOrdine(long numero, Tipo tipo, Ordine ordine) {
+        this.numero = numero;
+        this.tipo = tipo;
+        this.ordineId = ordine.getId();
+        this.codice = ordine.getCodice();
+        this.nomeCliente = ordine.getNomeCliente();
+        this.totaleCentesimi = ordine.getTotaleCentesimi();
+        this.stato = ordine.getStato();
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public long getNumero() {
+        return numero;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public int getOrdineId() {
+        return ordineId;
+    }
+
+    public String getCodice() {
+        return codice;
+    }
+
+    public String getNomeCliente() {
+        return nomeCliente;
+    }
+
+    public long getTotaleCentesimi() {
+        return totaleCentesimi;
+    }
+
+    public StatoOrdine getStato() {
+        return stato;
+    }
+}
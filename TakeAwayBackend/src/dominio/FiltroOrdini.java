@@ -0,0 +1,158 @@
+package dominio;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/*
+ * ============================================================
+ * CLASSE FILTRO ORDINI
+ * ============================================================
+ *
+ * Criteri di selezione di una pagina di ordini
+ * (dashboard staff):
+ * - stato dell'ordine (null = tutti)
+ * - intervallo di giorni di creazione (estremi inclusi,
+ *   null = nessun limite)
+ * - cursore: posizione dell'ultimo ordine della pagina
+ *   precedente (null = prima pagina)
+ *
+ * Gli ordini sono elencati dal più recente, per
+ * (data_creazione, id) decrescenti. Il cursore è la coppia
+ * (data, id) dell'ultimo ordine mostrato: la pagina
+ * successiva parte subito dopo, senza OFFSET, quindi il
+ * costo non dipende da quante pagine si sono sfogliate.
+ *
+ * Il filtro è immutabile.
+ */
+public class FiltroOrdini {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final StatoOrdine stato;
+
+    private final LocalDate dal;
+
+    private final LocalDate al;
+
+    /**
+     * Data di creazione dell'ultimo ordine già mostrato.
+     */
+    private final LocalDateTime dopoData;
+
+    /**
+     * Id dell'ultimo ordine già mostrato.
+     */
+    private final int dopoId;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Filtro per la prima pagina.
+     *
+     * @param stato stato richiesto, null per tutti
+     * @param dal   primo giorno incluso, null per nessun limite
+     * @param al    ultimo giorno incluso, null per nessun limite
+     */
+    public FiltroOrdini(StatoOrdine stato, LocalDate dal, LocalDate al) {
+        this(stato, dal, al, null, 0);
+    }
+
+    private FiltroOrdini(
+            StatoOrdine stato,
+            LocalDate dal,
+            LocalDate al,
+            LocalDateTime dopoData,
+            int dopoId
+    ) {
+        this.stato = stato;
+        this.dal = dal;
+        this.al = al;
+        this.dopoData = dopoData;
+        this.dopoId = dopoId;
+    }
+
+    // ====================================================
+    // PAGINAZIONE
+    // ====================================================
+
+    /**
+     * Stesso filtro, a partire dall'ordine indicato (escluso).
+     *
+     * @param ultimo ultimo ordine della pagina corrente
+     * @return filtro della pagina successiva
+     */
+    public FiltroOrdini dopo(Ordine ultimo) {
+        return new FiltroOrdini(stato, dal, al, ultimo.getDataCreazione(), ultimo.getId());
+    }
+
+    /**
+     * Stesso filtro, a partire dal cursore testuale indicato
+     * (vedi getCursore). Un cursore non valido viene ignorato.
+     *
+     * @param cursore cursore ricevuto nella query string
+     * @return filtro posizionato dopo il cursore
+     */
+    public FiltroOrdini dopo(String cursore) {
+
+        if (cursore == null) {
+            return this;
+        }
+
+        int separatore = cursore.lastIndexOf('_');
+
+        if (separatore < 0) {
+            return this;
+        }
+
+        try {
+            return new FiltroOrdini(
+                    stato,
+                    dal,
+                    al,
+                    LocalDateTime.parse(cursore.substring(0, separatore)),
+                    Integer.parseInt(cursore.substring(separatore + 1))
+            );
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return this;
+        }
+    }
+
+    /**
+     * Cursore testuale da inserire nei link ("data_id"),
+     * null per la prima pagina.
+     *
+     * @return cursore della pagina
+     */
+    public String getCursore() {
+        return dopoData != null ? dopoData + "_" + dopoId : null;
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public StatoOrdine getStato() {
+        return stato;
+    }
+
+    public LocalDate getDal() {
+        return dal;
+    }
+
+    public LocalDate getAl() {
+        return al;
+    }
+
+    public LocalDateTime getDopoData() {
+        return dopoData;
+    }
+
+    public int getDopoId() {
+        return dopoId;
+    }
+}
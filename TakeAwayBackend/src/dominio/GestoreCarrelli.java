@@ -0,0 +1,286 @@
+package dominio;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * ============================================================
+ * CLASSE GESTORE CARRELLI
+ * ============================================================
+ *
+ * Conserva i carrelli dei clienti, uno per sessione.
+ *
+ * Ogni carrello è identificato da un id casuale non
+ * indovinabile, inviato al browser in un cookie.
+ *
+ * I carrelli vivono in una ConcurrentHashMap: clienti
+ * diversi leggono e scrivono senza lock comuni.
+ *
+ * Limiti (proprietà di sistema):
+ * - takeaway.carrelli.inattivitaMs → un carrello non usato
+ *   per questo tempo viene eliminato (default 30 minuti)
+ * - takeaway.carrelli.massimo → numero massimo di carrelli
+ *   in memoria (default 10000)
+ * - takeaway.carrelli.memoriaMassima → percentuale di heap
+ *   occupato oltre la quale si liberano carrelli (default 85)
+ *
+ * Quando un limite viene superato si eliminano i carrelli
+ * usati meno di recente (LRU), un gruppo alla volta.
+ */
+public class GestoreCarrelli {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final long INATTIVITA_MS =
+            Long.getLong("takeaway.carrelli.inattivitaMs", 30 * 60_000);
+
+    private static final int MASSIMO =
+            Integer.getInteger("takeaway.carrelli.massimo", 10_000);
+
+    private static final int MEMORIA_MASSIMA_PERCENTUALE =
+            Integer.getInteger("takeaway.carrelli.memoriaMassima", 85);
+
+    /**
+     * Frazione dei carrelli eliminati a ogni espulsione
+     * per pressione sulla memoria.
+     */
+    private static final int QUOTA_ESPULSIONE_PERCENTUALE = 10;
+
+    /**
+     * Intervallo del controllo periodico.
+     */
+    private static final long INTERVALLO_PULIZIA_MS = 60_000;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Carrelli attivi indicizzati per id di sessione.
+     */
+    private final Map<String, Carrello> carrelli = new ConcurrentHashMap<>();
+
+    /**
+     * Generatore degli id di sessione.
+     */
+    private final SecureRandom casuale = new SecureRandom();
+
+    /**
+     * Impedisce espulsioni concorrenti: un solo thread
+     * libera spazio, gli altri proseguono.
+     */
+    private final AtomicBoolean espulsioneInCorso = new AtomicBoolean();
+
+    private final AtomicLong creati = new AtomicLong();
+
+    private final AtomicLong scaduti = new AtomicLong();
+
+    private final AtomicLong espulsi = new AtomicLong();
+
+    /**
+     * Thread del controllo periodico (scadenza e memoria).
+     */
+    private final ScheduledExecutorService pulizia =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "carrelli-pulizia");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Crea il gestore e avvia il controllo periodico.
+     */
+    public GestoreCarrelli() {
+        pulizia.scheduleWithFixedDelay(
+                this::manutenzione,
+                INTERVALLO_PULIZIA_MS,
+                INTERVALLO_PULIZIA_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Cerca il carrello di una sessione.
+     *
+     * @param id identificativo letto dal cookie (può essere null)
+     * @return carrello oppure null se inesistente o scaduto
+     */
+    public Carrello trova(String id) {
+
+        if (id == null) {
+            return null;
+        }
+
+        Carrello carrello = carrelli.get(id);
+
+        if (carrello == null) {
+            return null;
+        }
+
+        if (isScaduto(carrello, System.currentTimeMillis())) {
+            if (carrelli.remove(id, carrello)) {
+                scaduti.incrementAndGet();
+            }
+            return null;
+        }
+
+        carrello.tocca();
+        return carrello;
+    }
+
+    /**
+     * Crea un nuovo carrello vuoto con un id casuale.
+     * Se il numero di carrelli supera il massimo vengono
+     * prima eliminati quelli usati meno di recente.
+     *
+     * @return nuovo carrello
+     */
+    public Carrello crea() {
+
+        if (carrelli.size() >= MASSIMO) {
+            espelli(carrelli.size() - MASSIMO + 1 + MASSIMO * QUOTA_ESPULSIONE_PERCENTUALE / 100);
+        }
+
+        Carrello carrello;
+
+        do {
+            carrello = new Carrello(nuovoId());
+        } while (carrelli.putIfAbsent(carrello.getId(), carrello) != null);
+
+        creati.incrementAndGet();
+        return carrello;
+    }
+
+    /**
+     * @return numero di carrelli in memoria
+     */
+    public int getNumeroCarrelli() {
+        return carrelli.size();
+    }
+
+    public long getCreati() {
+        return creati.get();
+    }
+
+    public long getScaduti() {
+        return scaduti.get();
+    }
+
+    public long getEspulsi() {
+        return espulsi.get();
+    }
+
+    /**
+     * Arresta il controllo periodico.
+     */
+    public void chiudi() {
+        pulizia.shutdownNow();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Controllo periodico:
+     * - elimina i carrelli inattivi
+     * - se l'heap è quasi pieno elimina i meno recenti
+     */
+    private void manutenzione() {
+
+        try {
+            long adesso = System.currentTimeMillis();
+
+            for (Carrello carrello : carrelli.values()) {
+                if (isScaduto(carrello, adesso)
+                        && carrelli.remove(carrello.getId(), carrello)) {
+                    scaduti.incrementAndGet();
+                }
+            }
+
+            if (isMemoriaSottoPressione()) {
+                espelli(Math.max(1, carrelli.size() * QUOTA_ESPULSIONE_PERCENTUALE / 100));
+            }
+
+        } catch (RuntimeException e) {
+            // Il controllo deve continuare alle esecuzioni successive
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Elimina i carrelli usati meno di recente.
+     *
+     * @param quanti numero di carrelli da eliminare
+     */
+    private void espelli(int quanti) {
+
+        if (quanti <= 0 || !espulsioneInCorso.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            List<Carrello> ordinati = new ArrayList<>(carrelli.values());
+            ordinati.sort(Comparator.comparingLong(Carrello::getUltimoAccesso));
+
+            int limite = Math.min(quanti, ordinati.size());
+
+            for (int i = 0; i < limite; i++) {
+                Carrello carrello = ordinati.get(i);
+
+                if (carrelli.remove(carrello.getId(), carrello)) {
+                    espulsi.incrementAndGet();
+                }
+            }
+
+        } finally {
+            espulsioneInCorso.set(false);
+        }
+    }
+
+    private boolean isScaduto(Carrello carrello, long adesso) {
+        return adesso - carrello.getUltimoAccesso() > INATTIVITA_MS;
+    }
+
+    /**
+     * Verifica se l'heap occupato supera la soglia configurata.
+     */
+    private boolean isMemoriaSottoPressione() {
+
+        Runtime runtime = Runtime.getRuntime();
+        long occupata = runtime.totalMemory() - runtime.freeMemory();
+
+        return occupata * 100 > runtime.maxMemory() * MEMORIA_MASSIMA_PERCENTUALE;
+    }
+
+    /**
+     * Genera un id di sessione casuale (128 bit, Base64 URL-safe).
+     */
+    private String nuovoId() {
+
+        byte[] byteCasuali = new byte[16];
+        casuale.nextBytes(byteCasuali);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(byteCasuali);
+    }
+}
@@ -1,17 +1,27 @@
 package dominio;
 
 import database.GestoreDatabase;
+import database.Importi;
 import database.Query;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  * ============================================================
@@ -24,6 +34,21 @@ import java.util.List;
  * - lettura degli ordini
  * - aggiornamento dello stato
  *
+ * Con la proprietà "takeaway.ordini.asincroni=true" i nuovi
+ * ordini vengono registrati in un giornale locale e scritti
+ * nel database in background (vedi ScrittoreOrdini).
+ *
+ * Gli ordini non ancora consegnati sono tenuti anche in
+ * memoria (OrdiniAttivi), aggiornati dopo ogni scrittura
+ * nel database: stato per il cliente, dashboard filtrata
+ * su uno stato attivo e cambi di stato non richiedono
+ * letture dal database.
+ *
+ * Ogni cambio di stato viene registrato nella tabella
+ * storico_stato_ordine (stessa transazione dell'UPDATE) e
+ * il tempo trascorso nello stato precedente alimenta gli
+ * istogrammi di TempiStatoOrdini.
+ *
  * La classe funge da collegamento tra:
  * - handler HTTP
  * - dominio
@@ -31,6 +56,44 @@ import java.util.List;
  */
 public class GestoreOrdini {
 
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Dimensioni disponibili della IN per le righe ordine
+     * e relative query (vedi Query.SELECT_RIGHE_PER_ORDINI_*).
+     */
+    private static final int[] DIMENSIONI_IN = { 8, 32, 128 };
+
+    private static final String[] QUERY_RIGHE_IN = {
+            Query.SELECT_RIGHE_PER_ORDINI_8,
+            Query.SELECT_RIGHE_PER_ORDINI_32,
+            Query.SELECT_RIGHE_PER_ORDINI_128
+    };
+
+    /**
+     * Estremi usati quando il filtro non limita le date.
+     */
+    private static final LocalDateTime INIZIO_TEMPO = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final LocalDateTime FINE_TEMPO = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    /**
+     * Ordinamento delle pagine: dal più recente (come la
+     * ORDER BY di Query.SELECT_ORDINI_PAGINA).
+     */
+    private static final Comparator<Ordine> PIU_RECENTE_PRIMA =
+            Comparator.comparing(Ordine::getDataCreazione)
+                      .thenComparingInt(Ordine::getId)
+                      .reversed();
+
+    /**
+     * Attesa minima tra due tentativi di caricamento degli
+     * ordini attivi, se il database non era disponibile.
+     */
+    private static final long RIPROVA_CARICAMENTO_MS = 30_000;
+
     // ====================================================
     // ATTRIBUTI
     // ====================================================
@@ -40,6 +103,44 @@ public class GestoreOrdini {
      */
     private GestoreDatabase gestoreDatabase;
 
+    /**
+     * Assegna i codici ordine prima dell'inserimento.
+     */
+    private AllocatoreCodiciOrdine allocatoreCodici;
+
+    /**
+     * Eventi sugli ordini (nuovi ordini, cambi di stato)
+     * per le dashboard collegate in streaming.
+     */
+    private final BusEventiOrdine busEventi = new BusEventiOrdine();
+
+    /**
+     * Clienti in attesa di un cambio di stato del proprio ordine.
+     */
+    private final AttesaStatoOrdini attesaStato = new AttesaStatoOrdini();
+
+    /**
+     * Ordini non ancora consegnati, con le righe.
+     */
+    private final OrdiniAttivi ordiniAttivi = new OrdiniAttivi();
+
+    /**
+     * Tempi di permanenza negli stati, dall'avvio.
+     */
+    private final TempiStatoOrdini tempiStato = new TempiStatoOrdini();
+
+    /**
+     * Istante dell'ultimo tentativo di caricamento degli
+     * ordini attivi.
+     */
+    private final AtomicLong ultimoCaricamento = new AtomicLong();
+
+    /**
+     * Scrittura asincrona tramite giornale, oppure null
+     * se gli ordini vengono salvati in modo sincrono.
+     */
+    private ScrittoreOrdini scrittore;
+
     // ====================================================
     // COSTRUTTORE
     // ====================================================
@@ -51,6 +152,31 @@ public class GestoreOrdini {
      */
     public GestoreOrdini(GestoreDatabase gestoreDatabase) {
         this.gestoreDatabase = gestoreDatabase;
+        this.allocatoreCodici = new AllocatoreCodiciOrdine(gestoreDatabase);
+
+        // Le attese dei clienti vengono completate dagli eventi
+        busEventi.aggiungiAscoltatore(attesaStato);
+
+        // Prima dello scrittore: gli ordini recuperati dal
+        // giornale vengono aggiunti man mano che sono scritti
+        ultimoCaricamento.set(System.currentTimeMillis());
+        caricaOrdiniAttivi();
+
+        if (Boolean.getBoolean("takeaway.ordini.asincroni")) {
+            try {
+                this.scrittore = new ScrittoreOrdini(
+                        gestoreDatabase,
+                        Path.of(System.getProperty(
+                                "takeaway.ordini.giornale", "dati/ordini.giornale")),
+                        this::ordiniScritti
+                );
+            } catch (IOException e) {
+                // Senza giornale non c'è garanzia di durabilità:
+                // gli ordini vengono salvati in modo sincrono
+                System.err.println("Giornale ordini non disponibile: salvataggio sincrono");
+                e.printStackTrace();
+            }
+        }
     }
 
     // ====================================================
@@ -61,19 +187,27 @@ public class GestoreOrdini {
      * Crea un ordine partendo dal carrello.
      *
      * Il flusso è il seguente:
-     * 1) calcolo del totale
-     * 2) inserimento ordine nel database
-     * 3) recupero ID generato
-     * 4) generazione codice ordine leggibile
-     * 5) aggiornamento codice ordine nel DB
-     * 6) inserimento righe ordine
-     * 7) svuotamento carrello
+     * 1) copia delle righe e calcolo del totale
+     * 2) assegnazione del codice ordine (AllocatoreCodiciOrdine)
+     * 3) salvataggio:
+     *    - sincrono: transazione con ordine e righe (batch JDBC)
+     *    - asincrono: registrazione nel giornale su disco,
+     *      la scrittura nel database avviene in background
+     * 4) svuotamento carrello e notifica sul bus degli eventi
+     *
+     * L'ordine entra tra gli ordini attivi appena scritto
+     * nel database (con l'id assegnato).
+     *
+     * In modalità sincrona tutte le scritture avvengono in
+     * un'unica transazione: un errore a metà annulla l'intero
+     * ordine (nessun ordine senza righe nel database).
+     * In caso di errore il carrello resta intatto.
      *
      * @param carrello    carrello del cliente
      * @param nomeCliente nome del cliente
      * @param contatto    contatto del cliente
      * @param note        eventuali note
-     * @return ordine creato
+     * @return ordine creato oppure null se il salvataggio è fallito
      */
     public Ordine creaOrdine(
             Carrello carrello,
@@ -82,95 +216,395 @@ public class GestoreOrdini {
             String note
     ) {
 
-        double totale = carrello.getTotale();
+        // ====================================================
+        // 1️⃣ Copia delle righe e totale
+        // ====================================================
 
-        // Codice temporaneo (verrà aggiornato dopo l'inserimento)
-        Ordine ordine = new Ordine(
-                "TEMP",
-                nomeCliente,
-                contatto,
-                note,
-                totale
-        );
+        // Una sola copia: righe salvate e totale sono coerenti
+        // anche se il cliente modifica il carrello nel frattempo
+        ContenutoCarrello contenuto = carrello.getContenuto();
 
-        try (Connection conn = gestoreDatabase.getConnessione()) {
+        OrdineDaScrivere daScrivere;
 
+        try {
             // ====================================================
-            // 1️⃣ Inserimento ordine
+            // 2️⃣ Codice ordine definitivo, già univoco
             // ====================================================
 
-            PreparedStatement psOrdine = conn.prepareStatement(
-                    Query.INSERT_ORDINE,
-                    Statement.RETURN_GENERATED_KEYS
+            Ordine ordine = new Ordine(
+                    allocatoreCodici.prossimoCodice(),
+                    nomeCliente,
+                    contatto,
+                    note,
+                    contenuto.getTotaleCentesimi()
             );
 
-            psOrdine.setString(1, ordine.getCodice());
-            psOrdine.setString(2, ordine.getNomeCliente());
-            psOrdine.setString(3, ordine.getContatto());
-            psOrdine.setString(4, ordine.getNote());
-            psOrdine.setDouble(5, ordine.getTotale());
-            psOrdine.setString(6, ordine.getStato().name());
-
-            psOrdine.executeUpdate();
+            daScrivere = new OrdineDaScrivere(ordine, contenuto.getRighe());
 
             // ====================================================
-            // 2️⃣ Recupero ID generato
+            // 3️⃣ Salvataggio
             // ====================================================
 
-            ResultSet chiavi = psOrdine.getGeneratedKeys();
-            chiavi.next();
-            int ordineId = chiavi.getInt(1);
+            boolean accettato = scrittore != null && scrittore.accetta(daScrivere);
 
-            // ====================================================
-            // 3️⃣ Creazione codice ordine leggibile
-            // ====================================================
+            // Modalità sincrona, oppure coda asincrona piena
+            if (!accettato) {
+                salva(daScrivere);
+                aggiungiAttivo(daScrivere);
+            }
 
-            String codice = "ORD-" + ordineId;
+        } catch (SQLException | IOException e) {
+            System.err.println("Errore durante la creazione dell'ordine");
+            e.printStackTrace();
+            return null;
+        }
 
-            // ====================================================
-            // 4️⃣ Aggiornamento codice nel database
-            // ====================================================
+        // ====================================================
+        // 4️⃣ Solo a ordine salvato il carrello viene svuotato
+        // ====================================================
+
+        carrello.svuota();
 
-            PreparedStatement psUpdateCodice =
-                    conn.prepareStatement("UPDATE ordine SET codice = ? WHERE id = ?");
-            psUpdateCodice.setString(1, codice);
-            psUpdateCodice.setInt(2, ordineId);
-            psUpdateCodice.executeUpdate();
+        // Notifica alle dashboard collegate
+        busEventi.pubblica(EventoOrdine.Tipo.NUOVO, daScrivere.getOrdine());
+
+        return daScrivere.getOrdine();
+    }
+
+    /**
+     * Numero di ordini confermati ai clienti e non ancora
+     * scritti nel database (profondità del giornale).
+     *
+     * @return ordini in attesa, 0 in modalità sincrona
+     */
+    public int getOrdiniInAttesa() {
+        return scrittore != null ? scrittore.getProfondita() : 0;
+    }
+
+    /**
+     * Bus su cui vengono pubblicati gli eventi degli ordini.
+     *
+     * @return bus degli eventi
+     */
+    public BusEventiOrdine getBusEventi() {
+        return busEventi;
+    }
+
+    /**
+     * Attende il prossimo cambio di stato di un ordine.
+     *
+     * L'attesa viene registrata prima di leggere lo stato
+     * corrente: un cambio avvenuto nel frattempo non va perso.
+     * Se lo stato è già diverso da quello noto al cliente
+     * (o l'ordine non esiste) il risultato è immediato.
+     *
+     * @param codice     codice dell'ordine
+     * @param statoNoto  stato già mostrato al cliente
+     * @return stato nuovo (null se l'ordine non esiste),
+     *         oppure null se ci sono troppe attese in corso
+     */
+    public CompletableFuture<StatoOrdine> attendiCambioStato(
+            String codice,
+            StatoOrdine statoNoto
+    ) {
+
+        CompletableFuture<StatoOrdine> attesa = attesaStato.registra(codice);
+
+        if (attesa == null) {
+            return null;
+        }
+
+        Ordine ordine = getOrdineByCodice(codice);
+
+        if (ordine == null || ordine.getStato() != statoNoto) {
+            attesa.complete(ordine != null ? ordine.getStato() : null);
+        }
+
+        return attesa;
+    }
+
+    /**
+     * @return numero di clienti in attesa di un cambio di stato
+     */
+    public int getAtteseStato() {
+        return attesaStato.getNumeroAttese();
+    }
+
+    /**
+     * Ordini non ancora consegnati, tenuti in memoria.
+     *
+     * @return ordini attivi
+     */
+    public OrdiniAttivi getOrdiniAttivi() {
+        return ordiniAttivi;
+    }
+
+    /**
+     * Tempi di permanenza degli ordini negli stati.
+     *
+     * @return istogrammi per stato e ora del giorno
+     */
+    public TempiStatoOrdini getTempiStato() {
+        return tempiStato;
+    }
+
+    /**
+     * Arresta la scrittura asincrona (se attiva).
+     */
+    public void chiudi() {
+        if (scrittore != null) {
+            scrittore.chiudi();
+        }
+    }
+
+    // ====================================================
+    // SCRITTURA NEL DATABASE
+    // ====================================================
+
+    /**
+     * Salva un ordine con una transazione dedicata.
+     */
+    private void salva(OrdineDaScrivere daScrivere) throws SQLException {
+
+        // Try-with-resources: la connessione viene restituita
+        // al pool anche in caso di errore
+        try (Connection conn = gestoreDatabase.getConnessione()) {
+
+            // Inizio transazione (il pool ripristina l'autocommit
+            // quando la connessione viene restituita)
+            conn.setAutoCommit(false);
+
+            try {
+                inserisci(conn, List.of(daScrivere));
+                conn.commit();
+
+            } catch (SQLException e) {
+                // Nessuna scrittura parziale resta nel database
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Inserisce uno o più ordini con le relative righe,
+     * all'interno della transazione aperta dal chiamante.
+     *
+     * - gli ordini vengono inviati con un unico batch
+     * - gli id generati vengono assegnati agli oggetti Ordine
+     * - tutte le righe vengono inviate con un secondo batch
+     *
+     * Usato sia dal salvataggio sincrono sia dal
+     * ScrittoreOrdini (group commit).
+     *
+     * @param conn   connessione con autocommit disattivato
+     * @param ordini ordini da inserire
+     * @throws SQLException in caso di errore del database
+     */
+    static void inserisci(Connection conn, List<OrdineDaScrivere> ordini)
+            throws SQLException {
+
+        try (
+                PreparedStatement psOrdine = conn.prepareStatement(
+                        Query.INSERT_ORDINE,
+                        Statement.RETURN_GENERATED_KEYS
+                );
+                PreparedStatement psRiga =
+                        conn.prepareStatement(Query.INSERT_RIGA_ORDINE)
+        ) {
 
             // ====================================================
-            // 5️⃣ Aggiornamento oggetto Java
+            // Inserimento ordini
             // ====================================================
 
-            ordine.setCodice(codice);
-            ordine.setId(ordineId);
+            for (OrdineDaScrivere daScrivere : ordini) {
+
+                Ordine ordine = daScrivere.getOrdine();
+
+                psOrdine.setString(1, ordine.getCodice());
+                psOrdine.setString(2, ordine.getNomeCliente());
+                psOrdine.setString(3, ordine.getContatto());
+                psOrdine.setString(4, ordine.getNote());
+                Importi.imposta(psOrdine, 5, ordine.getTotaleCentesimi());
+                psOrdine.setString(6, ordine.getStato().name());
+                psOrdine.setTimestamp(7, Timestamp.valueOf(ordine.getDataCreazione()));
+                psOrdine.addBatch();
+            }
+
+            psOrdine.executeBatch();
 
             // ====================================================
-            // 6️⃣ Inserimento righe ordine
+            // Recupero ID generati (stesso ordine del batch)
             // ====================================================
 
-            PreparedStatement psRiga =
-                    conn.prepareStatement(Query.INSERT_RIGA_ORDINE);
+            try (ResultSet chiavi = psOrdine.getGeneratedKeys()) {
+
+                for (OrdineDaScrivere daScrivere : ordini) {
 
-            for (RigaCarrello riga : carrello.getRighe()) {
-                psRiga.setInt(1, ordineId);
-                psRiga.setString(2, riga.getProdotto().getId());
-                psRiga.setInt(3, riga.getQuantita());
-                psRiga.setDouble(4, riga.getProdotto().getPrezzo());
-                psRiga.executeUpdate();
+                    if (!chiavi.next()) {
+                        throw new SQLException("Id generati mancanti per gli ordini");
+                    }
+
+                    daScrivere.getOrdine().setId(chiavi.getInt(1));
+                }
             }
 
             // ====================================================
-            // 7️⃣ Svuotamento carrello
+            // Inserimento righe ordine (un solo invio)
             // ====================================================
 
-            carrello.svuota();
+            for (OrdineDaScrivere daScrivere : ordini) {
 
-        } catch (SQLException e) {
-            System.err.println("Errore durante la creazione dell'ordine");
-            e.printStackTrace();
+                int ordineId = daScrivere.getOrdine().getId();
+
+                for (RigaCarrello riga : daScrivere.getRighe()) {
+                    psRiga.setInt(1, ordineId);
+                    psRiga.setString(2, riga.getProdotto().getId());
+                    psRiga.setInt(3, riga.getQuantita());
+                    Importi.imposta(psRiga, 4, riga.getProdotto().getPrezzoCentesimi());
+                    psRiga.addBatch();
+                }
+            }
+
+            psRiga.executeBatch();
         }
+    }
 
-        return ordine;
+    /**
+     * Ordini scritti in background dallo ScrittoreOrdini.
+     */
+    private void ordiniScritti(List<OrdineDaScrivere> ordini) {
+        for (OrdineDaScrivere daScrivere : ordini) {
+            aggiungiAttivo(daScrivere);
+        }
+    }
+
+    /**
+     * Aggiunge agli ordini attivi un ordine appena scritto.
+     */
+    private void aggiungiAttivo(OrdineDaScrivere daScrivere) {
+
+        List<RigaOrdine> righe = new ArrayList<>(daScrivere.getRighe().size());
+
+        for (RigaCarrello riga : daScrivere.getRighe()) {
+            righe.add(new RigaOrdine(
+                    riga.getProdotto().getId(),
+                    riga.getProdotto().getNome(),
+                    riga.getQuantita(),
+                    riga.getProdotto().getPrezzoCentesimi()
+            ));
+        }
+
+        ordiniAttivi.aggiungi(daScrivere.getOrdine(), righe);
+    }
+
+    // ====================================================
+    // ORDINI ATTIVI IN MEMORIA
+    // ====================================================
+
+    /**
+     * Carica dal database gli ordini non consegnati e le
+     * loro righe. Se nel frattempo l'insieme viene modificato
+     * il caricamento viene ripetuto.
+     *
+     * @return true se il caricamento è riuscito
+     */
+    private boolean caricaOrdiniAttivi() {
+
+        for (int tentativo = 0; tentativo < 3; tentativo++) {
+
+            long versione = ordiniAttivi.getVersione();
+
+            List<Ordine> ordini = new ArrayList<>();
+            Map<Integer, List<RigaOrdine>> righe = new HashMap<>();
+            Map<Integer, LocalDateTime> inStatoDa = new HashMap<>();
+
+            try (
+                    Connection conn = gestoreDatabase.getConnessione();
+                    PreparedStatement ps =
+                            conn.prepareStatement(Query.SELECT_ORDINI_ATTIVI)
+            ) {
+
+                try (ResultSet rs = ps.executeQuery()) {
+
+                    while (rs.next()) {
+
+                        Ordine ordine = leggiOrdine(rs);
+
+                        ordini.add(ordine);
+                        inStatoDa.put(ordine.getId(),
+                                rs.getTimestamp("data_stato").toLocalDateTime());
+                    }
+                }
+
+                leggiRighe(conn, ordini, righe);
+
+            } catch (SQLException e) {
+                // Le letture useranno il database finché
+                // il caricamento non riesce
+                System.err.println("Caricamento ordini attivi non riuscito: "
+                        + e.getMessage());
+                return false;
+            }
+
+            if (ordiniAttivi.carica(ordini, righe, inStatoDa, versione)) {
+                System.out.println("Ordini attivi in memoria: " + ordini.size());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Indica se gli ordini attivi sono in memoria; altrimenti
+     * ritenta il caricamento (al massimo ogni 30 secondi).
+     */
+    private boolean ordiniAttiviDisponibili() {
+
+        if (ordiniAttivi.isCaricato()) {
+            return true;
+        }
+
+        long ora = System.currentTimeMillis();
+        long ultimo = ultimoCaricamento.get();
+
+        return ora - ultimo >= RIPROVA_CARICAMENTO_MS
+                && ultimoCaricamento.compareAndSet(ultimo, ora)
+                && caricaOrdiniAttivi();
+    }
+
+    /**
+     * Pagina di ordini in uno stato attivo, dalla memoria
+     * (stesse condizioni della query a cursore).
+     */
+    private List<Ordine> paginaDaMemoria(
+            StatoOrdine stato,
+            LocalDateTime inizio,
+            LocalDateTime limite,
+            int limiteId,
+            int quanti
+    ) {
+
+        List<Ordine> trovati = new ArrayList<>();
+
+        for (Ordine ordine : ordiniAttivi.getOrdini()) {
+
+            LocalDateTime data = ordine.getDataCreazione();
+
+            if (ordine.getStato() == stato
+                    && !data.isBefore(inizio)
+                    && (data.isBefore(limite)
+                        || (data.equals(limite) && ordine.getId() < limiteId))) {
+                trovati.add(ordine);
+            }
+        }
+
+        trovati.sort(PIU_RECENTE_PRIMA);
+
+        return trovati.size() > quanti
+                ? new ArrayList<>(trovati.subList(0, quanti))
+                : trovati;
     }
 
     // ====================================================
@@ -178,54 +612,229 @@ public class GestoreOrdini {
     // ====================================================
 
     /**
-     * Recupera tutti gli ordini presenti nel database.
+     * Recupera una pagina di ordini, dal più recente.
      *
-     * @return lista di ordini
+     * La pagina parte dal cursore del filtro (paginazione
+     * keyset su data_creazione e id, senza OFFSET) e viene
+     * letta tramite indice: il costo resta lo stesso anche
+     * con milioni di ordini nella tabella.
+     *
+     * Con il filtro su uno stato non ancora consegnato la
+     * pagina viene costruita dagli ordini attivi in memoria.
+     *
+     * @param filtro     stato, intervallo di giorni e cursore
+     * @param dimensione numero massimo di ordini
+     * @return pagina di ordini (vuota in caso di errore)
      */
-    public List<Ordine> getTuttiOrdini() {
+    public PaginaOrdini getPaginaOrdini(FiltroOrdini filtro, int dimensione) {
 
         List<Ordine> ordini = new ArrayList<>();
 
-        try {
+        // Intervallo di date: senza limiti si usano estremi
+        // che comprendono qualsiasi ordine
+        LocalDateTime inizio = filtro.getDal() != null
+                ? filtro.getDal().atStartOfDay()
+                : INIZIO_TEMPO;
+
+        LocalDateTime limite;
+        int limiteId;
+
+        if (filtro.getDopoData() != null) {
+            // Pagine successive: subito dopo l'ultimo ordine mostrato
+            limite = filtro.getDopoData();
+            limiteId = filtro.getDopoId();
+        } else {
+            // Prima pagina: fino alla fine dell'ultimo giorno
+            limite = filtro.getAl() != null
+                    ? filtro.getAl().plusDays(1).atStartOfDay()
+                    : FINE_TEMPO;
+            limiteId = 0;
+        }
 
-            Connection conn = gestoreDatabase.getConnessione();
-            PreparedStatement ps =
-                    conn.prepareStatement(Query.SELECT_TUTTI_ORDINI);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-
-                int id = rs.getInt("id");
-                String codice = rs.getString("codice");
-                String nomeCliente = rs.getString("nome_cliente");
-                String contatto = rs.getString("contatto");
-                double totale = rs.getDouble("totale");
-                StatoOrdine stato =
-                        StatoOrdine.valueOf(rs.getString("stato"));
-                LocalDateTime data =
-                        rs.getTimestamp("data_creazione").toLocalDateTime();
-                
-                String note = rs.getString("note");
-                Ordine ordine = new Ordine(
-                        id,
-                        codice,
-                        nomeCliente,
-                        contatto,
-                        note,
-                        totale,
-                        stato,
-                        data
-                );
+        StatoOrdine stato = filtro.getStato();
+
+        // Un ordine in più per sapere se esiste una pagina successiva
+        if (stato != null && stato != StatoOrdine.CONSEGNATO && ordiniAttiviDisponibili()) {
+
+            ordini = paginaDaMemoria(stato, inizio, limite, limiteId, dimensione + 1);
+
+        } else {
+            leggiPagina(filtro, inizio, limite, limiteId, dimensione + 1, ordini);
+        }
+
+        if (ordini.size() <= dimensione) {
+            return new PaginaOrdini(ordini, null);
+        }
+
+        // L'ordine in più non viene mostrato: la pagina
+        // successiva parte dall'ultimo ordine di questa
+        ordini.remove(dimensione);
 
-                ordini.add(ordine);
+        return new PaginaOrdini(ordini, filtro.dopo(ordini.get(dimensione - 1)));
+    }
+
+    /**
+     * Legge dal database una pagina di ordini (query a cursore).
+     * In caso di errore la pagina resta vuota.
+     */
+    private void leggiPagina(
+            FiltroOrdini filtro,
+            LocalDateTime inizio,
+            LocalDateTime limite,
+            int limiteId,
+            int quanti,
+            List<Ordine> ordini
+    ) {
+
+        String sql = filtro.getStato() != null
+                ? Query.SELECT_ORDINI_PAGINA_PER_STATO
+                : Query.SELECT_ORDINI_PAGINA;
+
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement ps = conn.prepareStatement(sql)
+        ) {
+
+            int indice = 1;
+
+            if (filtro.getStato() != null) {
+                ps.setString(indice++, filtro.getStato().name());
+            }
+
+            ps.setTimestamp(indice++, Timestamp.valueOf(inizio));
+            ps.setTimestamp(indice++, Timestamp.valueOf(limite));
+            ps.setTimestamp(indice++, Timestamp.valueOf(limite));
+            ps.setInt(indice++, limiteId);
+
+            ps.setInt(indice, quanti);
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                while (rs.next()) {
+                    ordini.add(leggiOrdine(rs));
+                }
             }
 
         } catch (SQLException e) {
             System.err.println("Errore nel caricamento degli ordini");
             e.printStackTrace();
+            ordini.clear();
+        }
+    }
+
+    /**
+     * Recupera le righe di un insieme di ordini.
+     *
+     * Le righe di tutti gli ordini vengono lette con una sola
+     * query (IN sugli id) e raggruppate in memoria: il costo
+     * non cresce con il numero di ordini mostrati.
+     * Oltre 128 ordini la lettura prosegue a blocchi di 128.
+     *
+     * Le righe degli ordini attivi sono già in memoria: se
+     * la pagina contiene solo ordini attivi il database non
+     * viene interrogato.
+     *
+     * @param ordini ordini di cui leggere le righe
+     * @return mappa id ordine → righe (mai null; vuota in caso
+     *         di errore)
+     */
+    public Map<Integer, List<RigaOrdine>> getRighePerOrdini(List<Ordine> ordini) {
+
+        Map<Integer, List<RigaOrdine>> righe = new HashMap<>();
+
+        // Ordini non attivi (o non ancora caricati in memoria)
+        List<Ordine> mancanti = new ArrayList<>();
+
+        for (Ordine ordine : ordini) {
+
+            List<RigaOrdine> attive = ordiniAttivi.getRighe(ordine.getId());
+
+            if (attive != null) {
+                righe.put(ordine.getId(), attive);
+            } else {
+                mancanti.add(ordine);
+            }
+        }
+
+        if (mancanti.isEmpty()) {
+            return righe;
+        }
+
+        try (Connection conn = gestoreDatabase.getConnessione()) {
+
+            leggiRighe(conn, mancanti, righe);
+
+        } catch (SQLException e) {
+            System.err.println("Errore nel caricamento delle righe ordine");
+            e.printStackTrace();
         }
 
-        return ordini;
+        return righe;
+    }
+
+    /**
+     * Legge dal database le righe di un elenco di ordini,
+     * a blocchi di al massimo 128.
+     */
+    private void leggiRighe(
+            Connection conn,
+            List<Ordine> ordini,
+            Map<Integer, List<RigaOrdine>> righe
+    ) throws SQLException {
+
+        int massimo = DIMENSIONI_IN[DIMENSIONI_IN.length - 1];
+
+        for (int inizio = 0; inizio < ordini.size(); inizio += massimo) {
+
+            List<Ordine> blocco = ordini.subList(
+                    inizio, Math.min(ordini.size(), inizio + massimo));
+
+            leggiBloccoRighe(conn, blocco, righe);
+        }
+    }
+
+    /**
+     * Legge le righe di al massimo 128 ordini, usando la
+     * query con la IN più piccola che li contiene tutti.
+     */
+    private void leggiBloccoRighe(
+            Connection conn,
+            List<Ordine> blocco,
+            Map<Integer, List<RigaOrdine>> righe
+    ) throws SQLException {
+
+        int scelta = 0;
+
+        while (DIMENSIONI_IN[scelta] < blocco.size()) {
+            scelta++;
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(QUERY_RIGHE_IN[scelta])) {
+
+            // Posti in eccesso: ripetizione dell'ultimo id
+            // (non cambia il risultato della IN)
+            int ultimoId = blocco.get(blocco.size() - 1).getId();
+
+            for (int i = 0; i < DIMENSIONI_IN[scelta]; i++) {
+                ps.setInt(i + 1, i < blocco.size() ? blocco.get(i).getId() : ultimoId);
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                while (rs.next()) {
+
+                    RigaOrdine riga = new RigaOrdine(
+                            rs.getString("prodotto_id"),
+                            rs.getString("nome"),
+                            rs.getInt("quantita"),
+                            Importi.leggi(rs, "prezzo_unitario")
+                    );
+
+                    righe.computeIfAbsent(rs.getInt("ordine_id"), k -> new ArrayList<>())
+                            .add(riga);
+                }
+            }
+        }
     }
 
     // ====================================================
@@ -236,6 +845,16 @@ public class GestoreOrdini {
      * Cambia lo stato di un ordine verificando
      * che la transizione sia consentita.
      *
+     * Verifica e modifica avvengono con un'unica istruzione
+     * condizionata sullo stato precedente: il numero di righe
+     * modificate decide l'esito. Con due richieste
+     * contemporanee sullo stesso ordine solo una riesce.
+     *
+     * Nella stessa transazione il cambio viene aggiunto allo
+     * storico (storico_stato_ordine). Dopo il commit l'ordine
+     * in memoria viene sostituito (o rimosso se consegnato) e
+     * il tempo trascorso nello stato precedente registrato.
+     *
      * @param ordineId   id dell'ordine
      * @param nuovoStato nuovo stato desiderato
      * @return true se aggiornamento riuscito, false altrimenti
@@ -245,48 +864,85 @@ public class GestoreOrdini {
             StatoOrdine nuovoStato
     ) {
 
-        try (Connection conn = gestoreDatabase.getConnessione()) {
+        // Unico stato da cui si può arrivare al nuovo stato
+        StatoOrdine statoAtteso = nuovoStato.getStatoPrecedente();
 
-            // ====================================================
-            // 1️⃣ Recupero stato attuale
-            // ====================================================
+        if (statoAtteso == null) {
+            System.err.println("Transizione NON consentita: -> " + nuovoStato);
+            return false;
+        }
 
-            PreparedStatement psSelect =
-                    conn.prepareStatement("SELECT stato FROM ordine WHERE id = ?");
-            psSelect.setInt(1, ordineId);
+        // Ingresso nello stato attuale (solo ordini in memoria)
+        LocalDateTime entrata = ordiniAttivi.getInStatoDa(ordineId);
 
-            ResultSet rs = psSelect.executeQuery();
+        // Stesso istante (orologio del server, al millisecondo)
+        // per ordine, storico e memoria
+        LocalDateTime ora = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
 
-            if (!rs.next()) {
-                return false;
-            }
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement psUpdate =
+                        conn.prepareStatement(Query.UPDATE_STATO_ORDINE);
+                PreparedStatement psStorico =
+                        conn.prepareStatement(Query.INSERT_STORICO_STATO)
+        ) {
 
-            StatoOrdine statoAttuale =
-                    StatoOrdine.valueOf(rs.getString("stato"));
+            conn.setAutoCommit(false);
+
+            try {
+                // ====================================================
+                // 1️⃣ Transizione condizionata (una sola istruzione)
+                // ====================================================
+
+                psUpdate.setString(1, nuovoStato.name());
+                psUpdate.setTimestamp(2, Timestamp.valueOf(ora));
+                psUpdate.setInt(3, ordineId);
+                psUpdate.setString(4, statoAtteso.name());
+
+                if (psUpdate.executeUpdate() == 0) {
+                    // Ordine inesistente, oppure non più in statoAtteso
+                    // (ad esempio già aggiornato da un altro operatore)
+                    conn.rollback();
+                    System.err.println(
+                            "Transizione NON consentita: ordine " + ordineId
+                                    + " non in " + statoAtteso + " -> " + nuovoStato
+                    );
+                    return false;
+                }
+
+                // ====================================================
+                // 2️⃣ Storico, nella stessa transazione
+                // ====================================================
+
+                impostaStorico(psStorico, ordineId, statoAtteso, nuovoStato, ora);
+                psStorico.executeUpdate();
+
+                conn.commit();
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
 
             // ====================================================
-            // 2️⃣ Verifica transizione di stato
+            // 3️⃣ Tempi, ordini attivi e notifica alle dashboard
             // ====================================================
 
-            if (!statoAttuale.puoPassareA(nuovoStato)) {
-                System.err.println(
-                        "Transizione NON consentita: "
-                                + statoAttuale + " -> " + nuovoStato
-                );
-                return false;
+            if (entrata != null) {
+                tempiStato.registra(statoAtteso, entrata, ora);
             }
 
-            // ====================================================
-            // 3️⃣ Aggiornamento database
-            // ====================================================
+            Ordine aggiornato = ordiniAttivi.aggiornaStato(ordineId, nuovoStato, ora);
 
-            PreparedStatement psUpdate =
-                    conn.prepareStatement(Query.UPDATE_STATO_ORDINE);
+            if (aggiornato == null) {
+                // Ordine non in memoria (insieme non ancora caricato)
+                aggiornato = leggiOrdinePerId(conn, ordineId);
+            }
 
-            psUpdate.setString(1, nuovoStato.name());
-            psUpdate.setInt(2, ordineId);
+            if (aggiornato != null) {
+                busEventi.pubblica(EventoOrdine.Tipo.STATO, aggiornato);
+            }
 
-            psUpdate.executeUpdate();
             return true;
 
         } catch (Exception e) {
@@ -296,6 +952,122 @@ public class GestoreOrdini {
         }
     }
 
+    /**
+     * Porta al passo successivo tutti gli ordini che si
+     * trovano in uno stato (ad esempio tutti i RICEVUTO in
+     * IN_PREPARAZIONE), con un'unica istruzione di UPDATE.
+     *
+     * Nella stessa transazione gli ordini vengono prima letti
+     * e bloccati (SELECT ... FOR UPDATE): servono per gli
+     * eventi e per gli ordini in memoria, e nessun ordine può
+     * entrare o uscire dallo stato prima del commit. Se il
+     * numero di righe aggiornate non corrisponde l'operazione
+     * viene annullata. Lo storico riceve una riga per ordine
+     * (un solo batch) nella stessa transazione.
+     *
+     * @param statoAttuale stato degli ordini da avanzare
+     * @return numero di ordini avanzati, -1 in caso di errore
+     *         o se lo stato non ha un successivo
+     */
+    public int avanzaOrdini(StatoOrdine statoAttuale) {
+
+        StatoOrdine nuovoStato = statoAttuale.getProssimoStato();
+
+        if (nuovoStato == null) {
+            return -1;
+        }
+
+        List<Ordine> ordini = new ArrayList<>();
+        Map<Integer, LocalDateTime> inStatoDa = new HashMap<>();
+        LocalDateTime ora = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        try (Connection conn = gestoreDatabase.getConnessione()) {
+
+            conn.setAutoCommit(false);
+
+            try (
+                    PreparedStatement psSelect =
+                            conn.prepareStatement(Query.SELECT_ORDINI_PER_STATO_BLOCCO);
+                    PreparedStatement psUpdate =
+                            conn.prepareStatement(Query.UPDATE_STATO_ORDINI);
+                    PreparedStatement psStorico =
+                            conn.prepareStatement(Query.INSERT_STORICO_STATO)
+            ) {
+
+                psSelect.setString(1, statoAttuale.name());
+
+                try (ResultSet rs = psSelect.executeQuery()) {
+
+                    while (rs.next()) {
+
+                        Ordine ordine = leggiOrdine(rs);
+
+                        ordini.add(ordine);
+                        inStatoDa.put(ordine.getId(),
+                                rs.getTimestamp("data_stato").toLocalDateTime());
+                    }
+                }
+
+                psUpdate.setString(1, nuovoStato.name());
+                psUpdate.setTimestamp(2, Timestamp.valueOf(ora));
+                psUpdate.setString(3, statoAttuale.name());
+
+                int aggiornati = psUpdate.executeUpdate();
+
+                if (aggiornati != ordini.size()) {
+                    throw new SQLException("Avanzamento " + statoAttuale + ": "
+                            + aggiornati + " ordini aggiornati su " + ordini.size());
+                }
+
+                for (Ordine ordine : ordini) {
+                    impostaStorico(psStorico, ordine.getId(), statoAttuale, nuovoStato, ora);
+                    psStorico.addBatch();
+                }
+
+                if (!ordini.isEmpty()) {
+                    psStorico.executeBatch();
+                }
+
+                conn.commit();
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Errore avanzamento ordini " + statoAttuale);
+            e.printStackTrace();
+            return -1;
+        }
+
+        // ====================================================
+        // Ordini attivi e notifica alle dashboard
+        // ====================================================
+
+        for (Ordine ordine : ordini) {
+
+            // Ingresso nello stato: dalla memoria se presente
+            // (più precisa), altrimenti dal database
+            LocalDateTime entrata = ordiniAttivi.getInStatoDa(ordine.getId());
+
+            tempiStato.registra(
+                    statoAttuale,
+                    entrata != null ? entrata : inStatoDa.get(ordine.getId()),
+                    ora
+            );
+
+            Ordine aggiornato = ordiniAttivi.aggiornaStato(ordine.getId(), nuovoStato, ora);
+
+            busEventi.pubblica(
+                    EventoOrdine.Tipo.STATO,
+                    aggiornato != null ? aggiornato : OrdiniAttivi.copia(ordine, nuovoStato)
+            );
+        }
+
+        return ordini.size();
+    }
+
     // ====================================================
     // RECUPERO ORDINE PER CODICE
     // ====================================================
@@ -304,11 +1076,33 @@ public class GestoreOrdini {
      * Recupera un ordine tramite il codice ordine.
      * Usato dal cliente per monitorare lo stato.
      *
+     * Gli ordini attivi vengono letti dalla memoria; il
+     * database serve solo per gli ordini già consegnati.
+     *
      * @param codice codice ordine mostrato al cliente
      * @return Ordine trovato oppure null se non esiste
      */
     public Ordine getOrdineByCodice(String codice) {
 
+        // Ordine attivo: nessun accesso al database
+        ordiniAttiviDisponibili();
+
+        Ordine attivo = ordiniAttivi.getPerCodice(codice);
+
+        if (attivo != null) {
+            return attivo;
+        }
+
+        // Ordine confermato ma non ancora scritto nel database
+        if (scrittore != null) {
+
+            Ordine inAttesa = scrittore.getInAttesa(codice);
+
+            if (inAttesa != null) {
+                return inAttesa;
+            }
+        }
+
         Ordine ordine = null;
 
         try (
@@ -318,21 +1112,12 @@ public class GestoreOrdini {
         ) {
 
             ps.setString(1, codice);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-
-                ordine = new Ordine(
-                        rs.getInt("id"),
-                        rs.getString("codice"),
-                        rs.getString("nome_cliente"),
-                        rs.getString("contatto"),
-                        rs.getString("note"),
-                        rs.getDouble("totale"),
-                        StatoOrdine.valueOf(rs.getString("stato")),
-                        rs.getTimestamp("data_creazione")
-                                .toLocalDateTime()
-                );
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                if (rs.next()) {
+                    ordine = leggiOrdine(rs);
+                }
             }
 
         } catch (SQLException e) {
@@ -342,4 +1127,58 @@ public class GestoreOrdini {
 
         return ordine;
     }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Imposta i parametri di Query.INSERT_STORICO_STATO.
+     */
+    private static void impostaStorico(
+            PreparedStatement ps,
+            int ordineId,
+            StatoOrdine statoPrecedente,
+            StatoOrdine stato,
+            LocalDateTime ora
+    ) throws SQLException {
+        ps.setInt(1, ordineId);
+        ps.setString(2, statoPrecedente.name());
+        ps.setString(3, stato.name());
+        ps.setTimestamp(4, Timestamp.valueOf(ora));
+    }
+
+    /**
+     * Legge un ordine dal database tramite id.
+     *
+     * @return ordine, oppure null se non esiste
+     */
+    private Ordine leggiOrdinePerId(Connection conn, int ordineId)
+            throws SQLException {
+
+        try (PreparedStatement ps = conn.prepareStatement(Query.SELECT_ORDINE_PER_ID)) {
+
+            ps.setInt(1, ordineId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? leggiOrdine(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Crea un Ordine dalla riga corrente del ResultSet.
+     */
+    private Ordine leggiOrdine(ResultSet rs) throws SQLException {
+        return new Ordine(
+                rs.getInt("id"),
+                rs.getString("codice"),
+                rs.getString("nome_cliente"),
+                rs.getString("contatto"),
+                rs.getString("note"),
+                Importi.leggi(rs, "totale"),
+                StatoOrdine.valueOf(rs.getString("stato")),
+                rs.getTimestamp("data_creazione").toLocalDateTime()
+        );
+    }
 }
@@ -0,0 +1,534 @@
+package dominio;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * ============================================================
+ * CLASSE GIORNALE ORDINI
+ * ============================================================
+ *
+ * File locale (write-ahead log) in cui ogni ordine viene
+ * registrato prima di essere confermato al cliente.
+ *
+ * Formato: un record per riga, campi separati da TAB,
+ * testi codificati (URL encoding) per non contenere mai
+ * TAB o a capo.
+ *
+ *   O  codice  data  nome  contatto  note  totale  righe
+ *      (importi in centesimi,
+ *       righe = id:quantità:prezzo:nomeProdotto,...)
+ *   C  codice                     → ordine scritto nel database
+ *   S  codice  motivo             → ordine scartato
+ *
+ * Durabilità:
+ * - ogni ordine viene forzato su disco (fsync) prima della
+ *   conferma al cliente
+ * - più ordini arrivati insieme condividono lo stesso fsync
+ *   (group commit sul file)
+ * - i marcatori C/S non vengono forzati: se vanno persi,
+ *   all'avvio si verifica nel database quali codici esistono
+ *
+ * Un record interrotto (arresto durante la scrittura) non
+ * era stato confermato: all'apertura il file viene troncato
+ * dopo l'ultimo a capo, così il record successivo non si
+ * accoda al frammento. Un record "O" viene accettato solo
+ * se le righe corrispondono al totale.
+ *
+ * Quando tutti gli ordini registrati sono stati scritti
+ * e il file supera la soglia ("takeaway.ordini.giornale.soglia")
+ * il file viene svuotato.
+ *
+ * Gli ordini scartati vengono copiati in un file a parte
+ * ("<giornale>.scartati") per il recupero manuale.
+ */
+public class GiornaleOrdini {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Dimensione (byte) oltre la quale il file viene
+     * svuotato appena non ci sono ordini in attesa.
+     */
+    private static final long SOGLIA_COMPATTAZIONE =
+            Long.getLong("takeaway.ordini.giornale.soglia", 1024 * 1024);
+
+    private static final String SEPARATORE = "\t";
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final Path file;
+
+    private final Path fileScartati;
+
+    private final FileChannel canale;
+
+    /**
+     * Serializza le scritture sul file.
+     */
+    private final ReentrantLock lockScrittura = new ReentrantLock();
+
+    /**
+     * Serializza gli fsync: chi arriva mentre un fsync è in
+     * corso attende e spesso trova il proprio record già forzato.
+     */
+    private final ReentrantLock lockForzatura = new ReentrantLock();
+
+    /**
+     * Numero progressivo dell'ultimo record scritto.
+     */
+    private volatile long scritti;
+
+    /**
+     * Numero progressivo dell'ultimo record forzato su disco.
+     */
+    private volatile long forzati;
+
+    /**
+     * Ordini registrati e non ancora scritti nel database.
+     */
+    private int pendenti;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Apre (o crea) il file del giornale.
+     *
+     * @param file percorso del file
+     * @throws IOException se il file non può essere aperto
+     */
+    public GiornaleOrdini(Path file) throws IOException {
+
+        this.file = file;
+        this.fileScartati = file.resolveSibling(file.getFileName() + ".scartati");
+
+        Path cartella = file.toAbsolutePath().getParent();
+
+        if (cartella != null) {
+            Files.createDirectories(cartella);
+        }
+
+        this.canale = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+
+        long fine = fineUltimaRiga();
+
+        if (fine < canale.size()) {
+            System.err.println("Giornale ordini: record incompleto rimosso ("
+                    + (canale.size() - fine) + " byte)");
+            canale.truncate(fine);
+            canale.force(true);
+        }
+
+        canale.position(fine);
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Legge gli ordini registrati e non ancora scritti
+     * (né scartati). Da chiamare una volta all'avvio,
+     * prima di registrare nuovi ordini.
+     *
+     * Un'ultima riga senza a capo (arresto durante la scrittura)
+     * viene ignorata: quell'ordine non era stato confermato.
+     *
+     * @return ordini da scrivere, nell'ordine di arrivo
+     * @throws IOException in caso di errore di lettura
+     */
+    public List<OrdineDaScrivere> leggiNonScritti() throws IOException {
+
+        Map<String, OrdineDaScrivere> aperti = new LinkedHashMap<>();
+
+        String contenuto = Files.readString(file, StandardCharsets.UTF_8);
+
+        // Solo le righe terminate da un a capo
+        int fine = contenuto.lastIndexOf('\n');
+
+        for (String riga : contenuto.substring(0, fine + 1).split("\n")) {
+
+            String[] campi = riga.split(SEPARATORE, -1);
+
+            try {
+                switch (campi[0]) {
+                    case "O":
+                        OrdineDaScrivere ordine = decodifica(campi);
+                        aperti.put(ordine.getCodice(), ordine);
+                        break;
+
+                    case "C":
+                    case "S":
+                        aperti.remove(campi[1]);
+                        break;
+
+                    default:
+                        // Riga vuota o sconosciuta
+                }
+
+            } catch (RuntimeException e) {
+                System.err.println("Giornale ordini: riga non valida ignorata ("
+                        + e.getMessage() + ")");
+            }
+        }
+
+        lockScrittura.lock();
+
+        try {
+            pendenti = aperti.size();
+        } finally {
+            lockScrittura.unlock();
+        }
+
+        return new ArrayList<>(aperti.values());
+    }
+
+    /**
+     * Registra un ordine e attende che sia su disco.
+     * Al ritorno l'ordine sopravvive a un arresto del server.
+     *
+     * @param ordine ordine da registrare
+     * @throws IOException se la scrittura o l'fsync falliscono
+     */
+    public void registra(OrdineDaScrivere ordine) throws IOException {
+
+        long numero;
+
+        lockScrittura.lock();
+
+        try {
+            scrivi(codifica(ordine));
+            pendenti++;
+            numero = ++scritti;
+        } finally {
+            lockScrittura.unlock();
+        }
+
+        forza(numero);
+    }
+
+    /**
+     * Segna come scritti nel database gli ordini indicati.
+     *
+     * @param codici codici degli ordini scritti
+     */
+    public void segnaScritti(Collection<String> codici) {
+
+        StringBuilder marcatori = new StringBuilder();
+
+        for (String codice : codici) {
+            marcatori.append('C').append(SEPARATORE).append(codice).append('\n');
+        }
+
+        chiudiRecord(marcatori.toString(), codici.size());
+    }
+
+    /**
+     * Segna un ordine come scartato e ne conserva una copia
+     * nel file degli scartati.
+     *
+     * @param ordine ordine che non è stato possibile scrivere
+     * @param motivo descrizione dell'errore
+     */
+    public void scarta(OrdineDaScrivere ordine, String motivo) {
+
+        try {
+            Files.writeString(
+                    fileScartati,
+                    codifica(ordine),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND
+            );
+        } catch (IOException e) {
+            System.err.println("Impossibile salvare l'ordine scartato " + ordine.getCodice());
+            e.printStackTrace();
+        }
+
+        chiudiRecord(
+                "S" + SEPARATORE + ordine.getCodice() + SEPARATORE + testo(motivo) + "\n",
+                1
+        );
+    }
+
+    /**
+     * @return ordini registrati e non ancora scritti nel database
+     */
+    public int getProfondita() {
+
+        lockScrittura.lock();
+
+        try {
+            return pendenti;
+        } finally {
+            lockScrittura.unlock();
+        }
+    }
+
+    /**
+     * Chiude il file del giornale.
+     */
+    public void chiudi() {
+        try {
+            canale.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO — FILE
+    // ====================================================
+
+    /**
+     * Scrive marcatori di chiusura e, se non restano ordini
+     * in attesa, svuota il file quando è troppo grande.
+     */
+    private void chiudiRecord(String marcatori, int quanti) {
+
+        lockScrittura.lock();
+
+        try {
+            pendenti -= quanti;
+
+            if (pendenti == 0 && canale.size() > SOGLIA_COMPATTAZIONE) {
+                // Nessun ordine aperto: il contenuto non serve più
+                canale.truncate(0);
+                canale.force(true);
+                return;
+            }
+
+            scrivi(marcatori);
+
+        } catch (IOException e) {
+            // Marcatore perso: all'avvio l'ordine verrà
+            // ritrovato nel database e non riscritto
+            System.err.println("Giornale ordini: marcatore non scritto");
+            e.printStackTrace();
+        } finally {
+            lockScrittura.unlock();
+        }
+    }
+
+    /**
+     * Posizione subito dopo l'ultimo a capo del file
+     * (0 se non ce ne sono), letta a blocchi dalla fine.
+     */
+    private long fineUltimaRiga() throws IOException {
+
+        ByteBuffer blocco = ByteBuffer.allocate(4096);
+        long fine = canale.size();
+
+        while (fine > 0) {
+
+            long inizio = Math.max(0, fine - blocco.capacity());
+
+            blocco.clear().limit((int) (fine - inizio));
+
+            while (blocco.hasRemaining()
+                    && canale.read(blocco, inizio + blocco.position()) >= 0) {
+                // lettura del blocco completo
+            }
+
+            for (int i = blocco.position() - 1; i >= 0; i--) {
+                if (blocco.get(i) == '\n') {
+                    return inizio + i + 1;
+                }
+            }
+
+            fine = inizio;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Scrive una o più righe in coda al file
+     * (chiamato con lockScrittura acquisito).
+     */
+    private void scrivi(String righe) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(righe.getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            canale.write(buffer);
+        }
+    }
+
+    /**
+     * Forza su disco tutti i record fino a quello indicato.
+     * Un solo fsync copre tutti i record scritti prima del
+     * suo inizio.
+     */
+    private void forza(long numero) throws IOException {
+
+        lockForzatura.lock();
+
+        try {
+            if (forzati >= numero) {
+                // Già coperto da un fsync precedente
+                return;
+            }
+
+            long fino = scritti;
+            canale.force(false);
+            forzati = fino;
+
+        } finally {
+            lockForzatura.unlock();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO — FORMATO
+    // ====================================================
+
+    /**
+     * Riga "O" che descrive l'ordine completo.
+     */
+    private String codifica(OrdineDaScrivere daScrivere) {
+
+        Ordine ordine = daScrivere.getOrdine();
+        StringBuilder riga = new StringBuilder(256);
+
+        riga.append('O')
+            .append(SEPARATORE).append(ordine.getCodice())
+            .append(SEPARATORE).append(ordine.getDataCreazione())
+            .append(SEPARATORE).append(testo(ordine.getNomeCliente()))
+            .append(SEPARATORE).append(testo(ordine.getContatto()))
+            .append(SEPARATORE).append(testo(ordine.getNote()))
+            .append(SEPARATORE).append(ordine.getTotaleCentesimi())
+            .append(SEPARATORE);
+
+        List<RigaCarrello> righe = daScrivere.getRighe();
+
+        for (int i = 0; i < righe.size(); i++) {
+
+            RigaCarrello r = righe.get(i);
+
+            if (i > 0) {
+                riga.append(',');
+            }
+
+            // Il nome serve alla dashboard per gli ordini
+            // recuperati, mostrati dalla memoria
+            riga.append(testo(r.getProdotto().getId()))
+                .append(':').append(r.getQuantita())
+                .append(':').append(r.getProdotto().getPrezzoCentesimi())
+                .append(':').append(testo(r.getProdotto().getNome()));
+        }
+
+        return riga.append('\n').toString();
+    }
+
+    /**
+     * Ricostruisce un ordine da una riga "O".
+     */
+    private OrdineDaScrivere decodifica(String[] campi) {
+
+        if (campi.length != 8) {
+            throw new IllegalArgumentException("Record ordine incompleto");
+        }
+
+        Ordine ordine = new Ordine(
+                0,
+                campi[1],
+                daTesto(campi[3]),
+                daTesto(campi[4]),
+                daTesto(campi[5]),
+                Long.parseLong(campi[6]),
+                StatoOrdine.RICEVUTO,
+                LocalDateTime.parse(campi[2])
+        );
+
+        List<RigaCarrello> righe = new ArrayList<>();
+
+        if (!campi[7].isEmpty()) {
+            for (String r : campi[7].split(",")) {
+
+                String[] parti = r.split(":", -1);
+
+                // 3 campi: record scritto prima dell'aggiunta del nome
+                if (parti.length != 3 && parti.length != 4) {
+                    throw new IllegalArgumentException("Riga ordine non valida: " + r);
+                }
+
+                String id = daTesto(parti[0]);
+                String nome = parti.length == 4 ? daTesto(parti[3]) : null;
+
+                // Del prodotto servono id, nome e prezzo
+                // (senza nome si mostra l'id)
+                Prodotto prodotto = new Prodotto(
+                        id, nome != null ? nome : id, null,
+                        Long.parseLong(parti[2]), null);
+
+                righe.add(new RigaCarrello(prodotto, Integer.parseInt(parti[1])));
+            }
+        }
+
+        // Un record troncato dentro le righe resta leggibile:
+        // il totale registrato ne garantisce la completezza
+        long totale = 0;
+
+        for (RigaCarrello riga : righe) {
+            totale += riga.getTotaleCentesimi();
+        }
+
+        if (totale != ordine.getTotaleCentesimi()) {
+            throw new IllegalArgumentException(
+                    "Totale non corrispondente alle righe: " + campi[1]);
+        }
+
+        return new OrdineDaScrivere(ordine, righe);
+    }
+
+    /**
+     * Codifica un testo (null → stringa vuota marcata con "-").
+     */
+    private static String testo(String valore) {
+
+        if (valore == null) {
+            return "-";
+        }
+
+        return "=" + URLEncoder.encode(valore, StandardCharsets.UTF_8);
+    }
+
+    private static String daTesto(String codificato) {
+
+        if (codificato.equals("-")) {
+            return null;
+        }
+
+        if (!codificato.startsWith("=")) {
+            throw new IllegalArgumentException("Campo non valido: " + codificato);
+        }
+
+        return URLDecoder.decode(codificato.substring(1), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package dominio;
+
+/*
+ * ============================================================
+ * CLASSE IMMAGINE PRODOTTO
+ * ============================================================
+ *
+ * Rappresenta l'immagine di un prodotto (originale o
+ * derivato ridimensionato) pronta per essere inviata
+ * al browser:
+ * - i byte del file
+ * - l'ETag forte calcolato sul contenuto
+ * - l'impronta dell'originale da cui deriva, che
+ *   versiona l'URL usato nel menu
+ *
+ * Le istanze sono immutabili e condivise tra tutte
+ * le richieste tramite CatalogoImmagini.
+ */
+public class ImmagineProdotto {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Contenuto binario dell'immagine.
+     */
+    private final byte[] dati;
+
+    /**
+     * Impronta MD5 esadecimale del contenuto.
+     */
+    private final String impronta;
+
+    /**
+     * Impronta MD5 dell'immagine originale (coincide con
+     * "impronta" per la variante ORIGINALE).
+     */
+    private final String improntaOrigine;
+
+    /**
+     * Tipo MIME dell'immagine.
+     */
+    private final String tipo;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param dati            contenuto dell'immagine
+     * @param impronta        impronta MD5 del contenuto
+     * @param improntaOrigine impronta MD5 dell'originale
+     * @param tipo            tipo MIME (es. image/png)
+     */
+    public ImmagineProdotto(
+            byte[] dati,
+            String impronta,
+            String improntaOrigine,
+            String tipo
+    ) {
+        this.dati = dati;
+        this.impronta = impronta;
+        this.improntaOrigine = improntaOrigine;
+        this.tipo = tipo;
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    /**
+     * Restituisce i byte dell'immagine.
+     * L'array è condiviso: non deve essere modificato.
+     *
+     * @return contenuto dell'immagine
+     */
+    public byte[] getDati() {
+        return dati;
+    }
+
+    public String getImpronta() {
+        return impronta;
+    }
+
+    public String getImprontaOrigine() {
+        return improntaOrigine;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Restituisce l'ETag forte da inviare nell'header HTTP.
+     *
+     * @return impronta racchiusa tra virgolette
+     */
+    public String getEtag() {
+        return "\"" + impronta + "\"";
+    }
+}
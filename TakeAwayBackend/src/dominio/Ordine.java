@@ -47,9 +47,9 @@ public class Ordine {
     private String note;
 
     /**
-     * Totale dell'ordine.
+     * Totale dell'ordine in centesimi di euro.
      */
-    private double totale;
+    private long totaleCentesimi;
 
     /**
      * Stato corrente dell'ordine.
@@ -77,20 +77,20 @@ public class Ordine {
      * @param nomeCliente  nome del cliente
      * @param contatto     contatto del cliente
      * @param note         eventuali note
-     * @param totale       totale dell'ordine
+     * @param totaleCentesimi totale dell'ordine in centesimi
      */
     public Ordine(
             String codice,
             String nomeCliente,
             String contatto,
             String note,
-            double totale
+            long totaleCentesimi
     ) {
         this.codice = codice;
         this.nomeCliente = nomeCliente;
         this.contatto = contatto;
         this.note = note;
-        this.totale = totale;
+        this.totaleCentesimi = totaleCentesimi;
         this.stato = StatoOrdine.RICEVUTO;
         this.dataCreazione = LocalDateTime.now();
     }
@@ -107,7 +107,7 @@ public class Ordine {
      * @param nomeCliente    nome del cliente
      * @param contatto       contatto del cliente
      * @param note           note dell'ordine
-     * @param totale         totale dell'ordine
+     * @param totaleCentesimi totale dell'ordine in centesimi
      * @param stato          stato corrente dell'ordine
      * @param dataCreazione  data e ora di creazione
      */
@@ -117,7 +117,7 @@ public class Ordine {
             String nomeCliente,
             String contatto,
             String note,
-            double totale,
+            long totaleCentesimi,
             StatoOrdine stato,
             LocalDateTime dataCreazione
     ) {
@@ -126,7 +126,7 @@ public class Ordine {
         this.nomeCliente = nomeCliente;
         this.contatto = contatto;
         this.note = note;
-        this.totale = totale;
+        this.totaleCentesimi = totaleCentesimi;
         this.stato = stato;
         this.dataCreazione = dataCreazione;
     }
@@ -175,12 +175,12 @@ public class Ordine {
         this.note = note;
     }
 
-    public double getTotale() {
-        return totale;
+    public long getTotaleCentesimi() {
+        return totaleCentesimi;
     }
 
-    public void setTotale(double totale) {
-        this.totale = totale;
+    public void setTotaleCentesimi(long totaleCentesimi) {
+        this.totaleCentesimi = totaleCentesimi;
     }
 
     public StatoOrdine getStato() {
@@ -0,0 +1,79 @@
+package dominio;
+
+import java.util.List;
+
+/*
+ * ============================================================
+ * CLASSE ORDINE DA SCRIVERE
+ * ============================================================
+ *
+ * Ordine accettato (già confermato al cliente o in fase
+ * di conferma) insieme alle sue righe, pronto per essere
+ * salvato nel database.
+ *
+ * Viene usato sia dal salvataggio sincrono sia dalla
+ * registrazione asincrona tramite GiornaleOrdini.
+ */
+public class OrdineDaScrivere {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Dati dell'ordine (codice già assegnato).
+     */
+    private final Ordine ordine;
+
+    /**
+     * Righe dell'ordine (copia del carrello).
+     */
+    private final List<RigaCarrello> righe;
+
+    /**
+     * Tentativi di scrittura falliti finora.
+     */
+    private int tentativi;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param ordine dati dell'ordine
+     * @param righe  righe dell'ordine
+     */
+    public OrdineDaScrivere(Ordine ordine, List<RigaCarrello> righe) {
+        this.ordine = ordine;
+        this.righe = List.copyOf(righe);
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public Ordine getOrdine() {
+        return ordine;
+    }
+
+    public List<RigaCarrello> getRighe() {
+        return righe;
+    }
+
+    public String getCodice() {
+        return ordine.getCodice();
+    }
+
+    int getTentativi() {
+        return tentativi;
+    }
+
+    /**
+     * Registra un tentativo di scrittura fallito.
+     *
+     * @return numero di tentativi falliti
+     */
+    int registraFallimento() {
+        return ++tentativi;
+    }
+}
@@ -0,0 +1,304 @@
+package dominio;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * ============================================================
+ * CLASSE ORDINI ATTIVI
+ * ============================================================
+ *
+ * Insieme in memoria degli ordini non ancora consegnati,
+ * con le relative righe, indicizzato per id e per codice.
+ *
+ * - viene caricato dal database all'avvio
+ * - viene aggiornato dal GestoreOrdini subito dopo ogni
+ *   scrittura riuscita nel database (write-through):
+ *   creazione e cambio di stato
+ * - un ordine CONSEGNATO viene rimosso
+ *
+ * Le letture non usano lock. Gli oggetti Ordine contenuti
+ * non vengono mai modificati: un cambio di stato sostituisce
+ * l'ordine con una copia aggiornata, quindi chi ha letto un
+ * ordine ne vede sempre una versione coerente.
+ *
+ * L'insieme presuppone che gli ordini vengano modificati
+ * solo da questo server: modifiche fatte direttamente nel
+ * database diventano visibili al riavvio successivo.
+ */
+public class OrdiniAttivi {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final Map<Integer, OrdineAttivo> perId = new ConcurrentHashMap<>();
+
+    private final Map<String, OrdineAttivo> perCodice = new ConcurrentHashMap<>();
+
+    /**
+     * Serializza le modifiche (le due mappe cambiano insieme).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Numero di modifiche: permette di scartare un caricamento
+     * dal database superato da scritture avvenute nel frattempo.
+     */
+    private volatile long versione;
+
+    private volatile boolean caricato;
+
+    // ====================================================
+    // ORDINE CON RIGHE
+    // ====================================================
+
+    /**
+     * Ordine attivo con le sue righe (entrambi immutabili)
+     * e l'istante di ingresso nello stato corrente.
+     */
+    private static final class OrdineAttivo {
+
+        private final Ordine ordine;
+
+        private final List<RigaOrdine> righe;
+
+        private final LocalDateTime inStatoDa;
+
+        OrdineAttivo(Ordine ordine, List<RigaOrdine> righe, LocalDateTime inStatoDa) {
+            this.ordine = ordine;
+            this.righe = righe;
+            this.inStatoDa = inStatoDa;
+        }
+    }
+
+    // ====================================================
+    // CARICAMENTO
+    // ====================================================
+
+    /**
+     * @return versione corrente, da leggere prima di
+     *         interrogare il database per il caricamento
+     */
+    long getVersione() {
+        return versione;
+    }
+
+    /**
+     * Sostituisce il contenuto con gli ordini letti dal database.
+     *
+     * @param ordini          ordini non consegnati
+     * @param righe           righe per id ordine
+     * @param inStatoDa       ingresso nello stato corrente per id
+     * @param versioneLettura versione letta prima della query
+     * @return false se nel frattempo l'insieme è stato modificato
+     *         (il caricamento va ripetuto)
+     */
+    boolean carica(
+            List<Ordine> ordini,
+            Map<Integer, List<RigaOrdine>> righe,
+            Map<Integer, LocalDateTime> inStatoDa,
+            long versioneLettura
+    ) {
+
+        lock.lock();
+
+        try {
+            if (versione != versioneLettura) {
+                return false;
+            }
+
+            perId.clear();
+            perCodice.clear();
+
+            for (Ordine ordine : ordini) {
+                inserisci(new OrdineAttivo(
+                        ordine,
+                        List.copyOf(righe.getOrDefault(ordine.getId(), List.of())),
+                        inStatoDa.getOrDefault(ordine.getId(), ordine.getDataCreazione())
+                ));
+            }
+
+            versione++;
+            caricato = true;
+            return true;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true se l'insieme è stato caricato dal database
+     *         (solo allora un ordine assente è non attivo)
+     */
+    public boolean isCaricato() {
+        return caricato;
+    }
+
+    // ====================================================
+    // AGGIORNAMENTI (WRITE-THROUGH)
+    // ====================================================
+
+    /**
+     * Aggiunge un ordine appena scritto nel database.
+     *
+     * @param ordine ordine con id già assegnato
+     * @param righe  righe dell'ordine
+     */
+    void aggiungi(Ordine ordine, List<RigaOrdine> righe) {
+
+        lock.lock();
+
+        try {
+            inserisci(new OrdineAttivo(
+                    ordine, List.copyOf(righe), ordine.getDataCreazione()));
+            versione++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registra il nuovo stato di un ordine: l'ordine viene
+     * sostituito da una copia aggiornata, oppure rimosso se
+     * consegnato.
+     *
+     * Gli stati avanzano soltanto: due cambi consecutivi
+     * registrati in ordine inverso non riportano indietro
+     * l'ordine in memoria.
+     *
+     * @param ordineId id dell'ordine
+     * @param stato    nuovo stato
+     * @param ora      istante del cambio di stato
+     * @return copia aggiornata (anche se rimossa), oppure null
+     *         se l'ordine non è presente
+     */
+    Ordine aggiornaStato(int ordineId, StatoOrdine stato, LocalDateTime ora) {
+
+        lock.lock();
+
+        try {
+            // Anche per un ordine assente: un caricamento in
+            // corso potrebbe averne letto lo stato precedente
+            versione++;
+
+            OrdineAttivo attuale = perId.get(ordineId);
+
+            if (attuale == null) {
+                return null;
+            }
+
+            Ordine aggiornato = copia(attuale.ordine, stato);
+
+            if (attuale.ordine.getStato().compareTo(stato) >= 0) {
+                // Stato già superato
+                return aggiornato;
+            }
+
+            if (stato == StatoOrdine.CONSEGNATO) {
+                perId.remove(ordineId);
+                perCodice.remove(aggiornato.getCodice());
+            } else {
+                inserisci(new OrdineAttivo(aggiornato, attuale.righe, ora));
+            }
+
+            return aggiornato;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ====================================================
+    // LETTURE
+    // ====================================================
+
+    /**
+     * @param codice codice ordine
+     * @return ordine attivo, oppure null
+     */
+    public Ordine getPerCodice(String codice) {
+        OrdineAttivo attivo = perCodice.get(codice);
+        return attivo != null ? attivo.ordine : null;
+    }
+
+    /**
+     * @param ordineId id dell'ordine
+     * @return ordine attivo, oppure null
+     */
+    public Ordine getPerId(int ordineId) {
+        OrdineAttivo attivo = perId.get(ordineId);
+        return attivo != null ? attivo.ordine : null;
+    }
+
+    /**
+     * @param ordineId id dell'ordine
+     * @return righe dell'ordine, oppure null se non è attivo
+     */
+    public List<RigaOrdine> getRighe(int ordineId) {
+        OrdineAttivo attivo = perId.get(ordineId);
+        return attivo != null ? attivo.righe : null;
+    }
+
+    /**
+     * @param ordineId id dell'ordine
+     * @return istante di ingresso nello stato corrente,
+     *         oppure null se l'ordine non è attivo
+     */
+    public LocalDateTime getInStatoDa(int ordineId) {
+        OrdineAttivo attivo = perId.get(ordineId);
+        return attivo != null ? attivo.inStatoDa : null;
+    }
+
+    /**
+     * @return copia dell'elenco degli ordini attivi (senza ordine)
+     */
+    public List<Ordine> getOrdini() {
+
+        List<Ordine> ordini = new ArrayList<>(perId.size());
+
+        for (OrdineAttivo attivo : perId.values()) {
+            ordini.add(attivo.ordine);
+        }
+
+        return ordini;
+    }
+
+    /**
+     * @return numero di ordini attivi
+     */
+    public int getNumero() {
+        return perId.size();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    private void inserisci(OrdineAttivo attivo) {
+        perId.put(attivo.ordine.getId(), attivo);
+        perCodice.put(attivo.ordine.getCodice(), attivo);
+    }
+
+    /**
+     * Copia di un ordine con un altro stato (gli ordini
+     * dell'insieme non vanno modificati).
+     */
+    static Ordine copia(Ordine ordine, StatoOrdine stato) {
+        return new Ordine(
+                ordine.getId(),
+                ordine.getCodice(),
+                ordine.getNomeCliente(),
+                ordine.getContatto(),
+                ordine.getNote(),
+                ordine.getTotaleCentesimi(),
+                stato,
+                ordine.getDataCreazione()
+        );
+    }
+}
@@ -0,0 +1,45 @@
+package dominio;
+
+import java.util.List;
+
+/*
+ * ============================================================
+ * CLASSE PAGINA ORDINI
+ * ============================================================
+ *
+ * Risultato di una lettura paginata degli ordini:
+ * - gli ordini della pagina, dal più recente
+ * - il filtro per la pagina successiva (null se la
+ *   pagina corrente è l'ultima)
+ */
+public class PaginaOrdini {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final List<Ordine> ordini;
+
+    private final FiltroOrdini successiva;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    public PaginaOrdini(List<Ordine> ordini, FiltroOrdini successiva) {
+        this.ordini = ordini;
+        this.successiva = successiva;
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public List<Ordine> getOrdini() {
+        return ordini;
+    }
+
+    public FiltroOrdini getSuccessiva() {
+        return successiva;
+    }
+}
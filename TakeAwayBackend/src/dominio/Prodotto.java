@@ -1,5 +1,7 @@
 package dominio;
 
+import java.math.BigDecimal;
+
 /*
  * ============================================================
  * CLASSE PRODOTTO
@@ -13,6 +15,11 @@ package dominio;
  *
  * Ogni istanza di Prodotto corrisponde a una riga
  * della tabella "prodotto" nel database.
+ *
+ * È una proiezione leggera: contiene solo i dati testuali
+ * e il prezzo. L'immagine (LONGBLOB) non fa parte del
+ * dominio e viene gestita separatamente, così che carrello
+ * e ordini non trasportino mai i dati binari.
  */
 public class Prodotto {
 
@@ -36,20 +43,16 @@ public class Prodotto {
     private String descrizione;
 
     /**
-     * Prezzo del prodotto.
+     * Prezzo del prodotto in centesimi di euro
+     * (650 = 6,50 €): nessun errore di arrotondamento.
      */
-    private double prezzo;
+    private long prezzoCentesimi;
 
     /**
      * Categoria del prodotto (Panini, Bevande, ecc.).
      */
     private String categoria;
 
-    /**
-     * Immagine del prodotto codificata in Base64.
-     */
-    private String immagine;
-
     // ====================================================
     // COSTRUTTORE
     // ====================================================
@@ -60,54 +63,27 @@ public class Prodotto {
      * @param id          identificativo del prodotto
      * @param nome        nome del prodotto
      * @param descrizione descrizione del prodotto
-     * @param prezzo      prezzo del prodotto
+     * @param prezzoCentesimi prezzo del prodotto in centesimi
      * @param categoria   categoria del prodotto
-     * @param immagine    immagine codificata in Base64
      */
     public Prodotto(
             String id,
             String nome,
             String descrizione,
-            double prezzo,
-            String categoria,
-            String immagine
+            long prezzoCentesimi,
+            String categoria
     ) {
         this.id = id;
         this.nome = nome;
         this.descrizione = descrizione;
-        this.prezzo = prezzo;
+        this.prezzoCentesimi = prezzoCentesimi;
         this.categoria = categoria;
-        this.immagine = immagine;
     }
 
     // ====================================================
     // GETTER E SETTER
     // ====================================================
 
-    /**
-     * Restituisce l'immagine del prodotto come codice HTML.
-     *
-     * L'immagine viene incorporata direttamente nella pagina
-     * tramite Base64 (data URI).
-     *
-     * @return StringBuilder contenente il tag <img>
-     */
-    public StringBuilder getImmagine() {
-
-        StringBuilder html = new StringBuilder();
-
-        html.append("<img alt=\"img ")
-            .append("\" src=\"data:image/png;base64,")
-            .append(immagine)
-            .append("\" style=\"max-width:150px\"/>");
-
-        return html;
-    }
-
-    public void setImmagine(String immagine) {
-        this.immagine = immagine;
-    }
-
     public String getId() {
         return id;
     }
@@ -132,12 +108,12 @@ public class Prodotto {
         this.descrizione = descrizione;
     }
 
-    public double getPrezzo() {
-        return prezzo;
+    public long getPrezzoCentesimi() {
+        return prezzoCentesimi;
     }
 
-    public void setPrezzo(double prezzo) {
-        this.prezzo = prezzo;
+    public void setPrezzoCentesimi(long prezzoCentesimi) {
+        this.prezzoCentesimi = prezzoCentesimi;
     }
 
     public String getCategoria() {
@@ -158,6 +134,6 @@ public class Prodotto {
      */
     @Override
     public String toString() {
-        return nome + " (" + prezzo + "€)";
+        return nome + " (" + BigDecimal.valueOf(prezzoCentesimi, 2) + "€)";
     }
 }
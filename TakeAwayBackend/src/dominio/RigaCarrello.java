@@ -73,10 +73,10 @@ public class RigaCarrello {
     /**
      * Calcola il totale della riga del carrello.
      *
-     * @return prezzo unitario del prodotto moltiplicato
-     *         per la quantità
+     * @return prezzo unitario del prodotto (in centesimi)
+     *         moltiplicato per la quantità
      */
-    public double getTotale() {
-        return prodotto.getPrezzo() * quantita;
+    public long getTotaleCentesimi() {
+        return prodotto.getPrezzoCentesimi() * quantita;
     }
 }
@@ -0,0 +1,96 @@
+package dominio;
+
+/*
+ * ============================================================
+ * CLASSE RIGA ORDINE
+ * ============================================================
+ *
+ * Questa classe rappresenta una riga di un ordine già
+ * salvato (tabella "riga_ordine"):
+ * - il prodotto ordinato (id e nome)
+ * - la quantità
+ * - il prezzo unitario al momento dell'ordine
+ *
+ * A differenza di RigaCarrello non fa riferimento al
+ * Prodotto del catalogo: il prezzo è quello pagato dal
+ * cliente, anche se il listino nel frattempo è cambiato.
+ */
+public class RigaOrdine {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Identificativo del prodotto ordinato.
+     */
+    private String prodottoId;
+
+    /**
+     * Nome del prodotto (letto dalla tabella prodotto).
+     */
+    private String nomeProdotto;
+
+    /**
+     * Quantità ordinata.
+     */
+    private int quantita;
+
+    /**
+     * Prezzo unitario in centesimi di euro.
+     */
+    private long prezzoUnitarioCentesimi;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param prodottoId              id del prodotto
+     * @param nomeProdotto            nome del prodotto
+     * @param quantita                quantità ordinata
+     * @param prezzoUnitarioCentesimi prezzo unitario in centesimi
+     */
+    public RigaOrdine(
+            String prodottoId,
+            String nomeProdotto,
+            int quantita,
+            long prezzoUnitarioCentesimi
+    ) {
+        this.prodottoId = prodottoId;
+        this.nomeProdotto = nomeProdotto;
+        this.quantita = quantita;
+        this.prezzoUnitarioCentesimi = prezzoUnitarioCentesimi;
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public String getProdottoId() {
+        return prodottoId;
+    }
+
+    public String getNomeProdotto() {
+        return nomeProdotto;
+    }
+
+    public int getQuantita() {
+        return quantita;
+    }
+
+    public long getPrezzoUnitarioCentesimi() {
+        return prezzoUnitarioCentesimi;
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * @return prezzo unitario moltiplicato per la quantità
+     */
+    public long getTotaleCentesimi() {
+        return prezzoUnitarioCentesimi * quantita;
+    }
+}
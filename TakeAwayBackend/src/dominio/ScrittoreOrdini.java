@@ -0,0 +1,652 @@
+package dominio;
+
+import database.GestoreDatabase;
+import database.Query;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * ============================================================
+ * CLASSE SCRITTORE ORDINI
+ * ============================================================
+ *
+ * Registrazione asincrona degli ordini (proprietà
+ * "takeaway.ordini.asincroni=true").
+ *
+ * Flusso:
+ * 1) l'ordine viene registrato nel GiornaleOrdini (fsync)
+ *    e confermato subito al cliente
+ * 2) un thread dedicato preleva dalla coda tutti gli ordini
+ *    accumulati (fino a "takeaway.ordini.gruppo") e li scrive
+ *    nel database con UNA transazione (group commit)
+ * 3) dopo il commit gli ordini vengono segnati come scritti
+ *    nel giornale
+ *
+ * Errori:
+ * - errori transitori (connessione, timeout del pool, deadlock,
+ *   attesa di lock): il gruppo intero torna in testa e viene
+ *   ritentato senza limite, con UNA attesa crescente (fino a
+ *   ATTESA_MASSIMA_MS) per ciclo, non una per ordine. Gli
+ *   ordini sono già confermati: un database fermo ne ritarda
+ *   la scrittura, non li perde
+ * - altri errori: ogni ordine del gruppo viene riprovato da
+ *   solo; quelli che continuano a fallire (errori dei dati)
+ *   vengono scartati dopo MAX_TENTATIVI (copia conservata nel
+ *   file degli scartati)
+ *
+ * All'avvio gli ordini rimasti aperti nel giornale vengono
+ * riscritti una sola volta: quelli il cui codice è già nel
+ * database (arresto dopo il commit ma prima del marcatore)
+ * vengono solo segnati come scritti. Se all'avvio il database
+ * non risponde la verifica viene ripetuta prima della scrittura
+ * e, in ogni caso, un ordine rifiutato per chiave duplicata il
+ * cui codice risulta nel database viene segnato come scritto
+ * (mai scartato).
+ */
+public class ScrittoreOrdini {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Numero massimo di ordini scritti in una transazione.
+     */
+    private static final int GRUPPO =
+            Integer.getInteger("takeaway.ordini.gruppo", 100);
+
+    /**
+     * Ordini in coda oltre i quali si torna al salvataggio
+     * sincrono (il database non sta tenendo il passo).
+     */
+    private static final int CAPIENZA_CODA =
+            Integer.getInteger("takeaway.ordini.coda", 10_000);
+
+    /**
+     * Tentativi falliti per errori dei dati dopo i quali
+     * un ordine viene scartato.
+     */
+    private static final int MAX_TENTATIVI = 5;
+
+    /**
+     * Attesa massima tra due tentativi.
+     */
+    private static final long ATTESA_MASSIMA_MS = 30_000;
+
+    /**
+     * SQLState delle violazioni di vincolo (chiave duplicata).
+     */
+    private static final String VIOLAZIONE_VINCOLO = "23000";
+
+    /**
+     * Codici di errore MySQL transitori: attesa di lock
+     * scaduta (1205) e deadlock (1213).
+     */
+    private static final int ATTESA_LOCK_SCADUTA = 1205;
+    private static final int DEADLOCK = 1213;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private GestoreDatabase gestoreDatabase;
+
+    private final GiornaleOrdini giornale;
+
+    /**
+     * Notificato dopo il commit di ogni gruppo di ordini,
+     * prima che lascino l'attesa.
+     */
+    private final Consumer<List<OrdineDaScrivere>> allaScrittura;
+
+    /**
+     * Ordini confermati e non ancora scritti, in ordine di arrivo.
+     */
+    private final BlockingQueue<OrdineDaScrivere> coda =
+            new LinkedBlockingQueue<>(CAPIENZA_CODA);
+
+    /**
+     * Gli stessi ordini indicizzati per codice: il cliente
+     * può consultarne lo stato prima della scrittura.
+     */
+    private final Map<String, OrdineDaScrivere> inAttesa = new ConcurrentHashMap<>();
+
+    /**
+     * Ordini falliti da ritentare (usata solo dal thread di
+     * scrittura, ha la precedenza sulla coda).
+     */
+    private final Deque<OrdineDaScrivere> daRitentare = new ArrayDeque<>();
+
+    /**
+     * Codici recuperati dal giornale senza poter verificare
+     * se sono già nel database (usata dal costruttore, poi
+     * solo dal thread di scrittura).
+     */
+    private final Set<String> daVerificare = new HashSet<>();
+
+    /**
+     * Cicli consecutivi terminati con un errore (solo thread
+     * di scrittura): determina l'attesa prima del successivo.
+     */
+    private int cicliFalliti;
+
+    private final Thread thread;
+
+    private volatile boolean attivo = true;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Apre il giornale, recupera gli ordini rimasti aperti
+     * e avvia il thread di scrittura.
+     *
+     * @param gestoreDatabase gestore delle connessioni al database
+     * @param fileGiornale    percorso del giornale
+     * @param allaScrittura   notificato con gli ordini scritti
+     * @throws IOException se il giornale non può essere aperto o letto
+     */
+    public ScrittoreOrdini(
+            GestoreDatabase gestoreDatabase,
+            Path fileGiornale,
+            Consumer<List<OrdineDaScrivere>> allaScrittura
+    ) throws IOException {
+
+        this.gestoreDatabase = gestoreDatabase;
+        this.allaScrittura = allaScrittura;
+        this.giornale = new GiornaleOrdini(fileGiornale);
+
+        recupera(giornale.leggiNonScritti());
+
+        thread = new Thread(this::ciclo, "ordini-scrittore");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Accetta un ordine: lo registra nel giornale e lo
+     * mette in coda per la scrittura nel database.
+     *
+     * @param ordine ordine da registrare
+     * @return true se accettato, false se la coda è piena
+     *         (il chiamante deve salvarlo in modo sincrono)
+     * @throws IOException se la registrazione nel giornale fallisce
+     */
+    public boolean accetta(OrdineDaScrivere ordine) throws IOException {
+
+        if (coda.remainingCapacity() == 0) {
+            return false;
+        }
+
+        giornale.registra(ordine);
+
+        inAttesa.put(ordine.getCodice(), ordine);
+
+        // La capienza è stata verificata prima: in caso di
+        // corsa si attende, l'ordine è comunque già su disco
+        try {
+            coda.put(ordine);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Resta nel giornale: verrà scritto al prossimo avvio
+        }
+
+        return true;
+    }
+
+    /**
+     * Restituisce un ordine confermato e non ancora scritto.
+     *
+     * @param codice codice dell'ordine
+     * @return ordine oppure null
+     */
+    public Ordine getInAttesa(String codice) {
+
+        OrdineDaScrivere ordine = inAttesa.get(codice);
+        return ordine != null ? ordine.getOrdine() : null;
+    }
+
+    /**
+     * @return ordini registrati nel giornale e non ancora
+     *         scritti nel database
+     */
+    public int getProfondita() {
+        return giornale.getProfondita();
+    }
+
+    /**
+     * Arresta il thread di scrittura dopo aver svuotato la
+     * coda (entro qualche secondo). Gli ordini non scritti
+     * restano nel giornale per il prossimo avvio.
+     */
+    public void chiudi() {
+
+        attivo = false;
+
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        giornale.chiudi();
+    }
+
+    // ====================================================
+    // THREAD DI SCRITTURA
+    // ====================================================
+
+    /**
+     * Ciclo principale: attende il primo ordine, preleva
+     * tutti quelli accumulati nel frattempo e li scrive.
+     */
+    private void ciclo() {
+
+        List<OrdineDaScrivere> gruppo = new ArrayList<>(GRUPPO);
+
+        while (attivo || !coda.isEmpty()) {
+
+            try {
+                while (!daRitentare.isEmpty() && gruppo.size() < GRUPPO) {
+                    gruppo.add(daRitentare.poll());
+                }
+
+                if (gruppo.isEmpty()) {
+
+                    OrdineDaScrivere primo = coda.poll(200, TimeUnit.MILLISECONDS);
+
+                    if (primo == null) {
+                        continue;
+                    }
+
+                    gruppo.add(primo);
+                }
+
+                // Tutti gli ordini arrivati durante la scrittura
+                // precedente finiscono nella stessa transazione
+                coda.drainTo(gruppo, GRUPPO - gruppo.size());
+
+                scriviGruppo(gruppo);
+
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                gruppo.clear();
+            }
+        }
+    }
+
+    /**
+     * Scrive un gruppo di ordini in un'unica transazione.
+     * In caso di errore dei dati ogni ordine viene riprovato
+     * da solo, così un ordine non valido non blocca gli altri.
+     */
+    private void scriviGruppo(List<OrdineDaScrivere> gruppo) throws InterruptedException {
+
+        if (!daVerificare.isEmpty()) {
+            escludiGiaScritti(gruppo);
+
+            if (gruppo.isEmpty()) {
+                return;
+            }
+        }
+
+        try {
+            scrivi(gruppo);
+            completa(gruppo);
+            cicliFalliti = 0;
+            return;
+
+        } catch (SQLException e) {
+            if (isTransitorio(e)) {
+                rimanda(gruppo, e);
+                return;
+            }
+        }
+
+        boolean fallito = false;
+
+        for (int i = 0; i < gruppo.size(); i++) {
+
+            OrdineDaScrivere ordine = gruppo.get(i);
+
+            try {
+                scrivi(List.of(ordine));
+                completa(List.of(ordine));
+
+            } catch (SQLException e) {
+                if (isTransitorio(e)) {
+                    // Database caduto a metà: il resto del gruppo
+                    // attende con lui
+                    rimanda(gruppo.subList(i, gruppo.size()), e);
+                    return;
+                }
+
+                gestisciFallimento(ordine, e);
+                fallito = true;
+            }
+        }
+
+        if (fallito) {
+            attendi();
+        } else {
+            cicliFalliti = 0;
+        }
+    }
+
+    /**
+     * Transazione di scrittura di uno o più ordini.
+     */
+    private void scrivi(List<OrdineDaScrivere> ordini) throws SQLException {
+
+        try (Connection conn = gestoreDatabase.getConnessione()) {
+
+            conn.setAutoCommit(false);
+
+            try {
+                GestoreOrdini.inserisci(conn, ordini);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Ordini scritti: notificati, segnati nel giornale e
+     * tolti dall'attesa.
+     */
+    private void completa(List<OrdineDaScrivere> ordini) {
+
+        // Prima della rimozione dall'attesa: l'ordine resta
+        // sempre visibile al cliente
+        allaScrittura.accept(ordini);
+
+        List<String> codici = new ArrayList<>(ordini.size());
+
+        for (OrdineDaScrivere ordine : ordini) {
+            codici.add(ordine.getCodice());
+            inAttesa.remove(ordine.getCodice());
+        }
+
+        giornale.segnaScritti(codici);
+    }
+
+    /**
+     * Ordine rifiutato per un errore dei dati: nuovo tentativo
+     * al prossimo ciclo oppure scarto definitivo.
+     */
+    private void gestisciFallimento(OrdineDaScrivere ordine, SQLException e) {
+
+        // Ordine già nel database (recupero senza verifica):
+        // va solo segnato come scritto
+        if (VIOLAZIONE_VINCOLO.equals(e.getSQLState()) && giaScritto(ordine)) {
+            segnaGiaScritti(List.of(ordine));
+            return;
+        }
+
+        int tentativi = ordine.registraFallimento();
+
+        System.err.println("Scrittura ordine " + ordine.getCodice()
+                + " fallita (tentativo " + tentativi + "): " + e.getMessage());
+
+        if (tentativi >= MAX_TENTATIVI) {
+            inAttesa.remove(ordine.getCodice());
+            giornale.scarta(ordine, e.getMessage());
+            return;
+        }
+
+        daRitentare.add(ordine);
+    }
+
+    /**
+     * Errore transitorio: gli ordini tornano in testa, nello
+     * stesso ordine, senza contare un tentativo, e il thread
+     * attende una sola volta prima del ciclo successivo.
+     */
+    private void rimanda(List<OrdineDaScrivere> ordini, SQLException e)
+            throws InterruptedException {
+
+        for (int i = ordini.size() - 1; i >= 0; i--) {
+            daRitentare.addFirst(ordini.get(i));
+        }
+
+        System.err.println("Database non disponibile (" + e.getMessage() + "): "
+                + daRitentare.size() + " ordini in attesa di scrittura");
+
+        attendi();
+    }
+
+    /**
+     * Attesa crescente dopo un ciclo fallito (fino a
+     * ATTESA_MASSIMA_MS). In chiusura non si attende: gli
+     * ordini non scritti restano nel giornale.
+     */
+    private void attendi() throws InterruptedException {
+
+        cicliFalliti++;
+
+        if (attivo) {
+            Thread.sleep(Math.min(ATTESA_MASSIMA_MS,
+                    500L << Math.min(cicliFalliti - 1, 10)));
+        }
+    }
+
+    /**
+     * Errore che dipende dallo stato del database e non
+     * dall'ordine: connessione (SQLState 08xxx, compreso il
+     * timeout del pool), rollback per deadlock o
+     * serializzazione (40xxx), attesa di lock scaduta.
+     * Viene esaminata anche la catena delle cause.
+     */
+    static boolean isTransitorio(SQLException e) {
+
+        for (Throwable t = e; t != null; t = t.getCause()) {
+
+            if (t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+
+            if (t instanceof SQLException) {
+
+                SQLException sql = (SQLException) t;
+                String stato = sql.getSQLState();
+
+                if (stato != null && (stato.startsWith("08") || stato.startsWith("40"))) {
+                    return true;
+                }
+
+                if (sql.getErrorCode() == ATTESA_LOCK_SCADUTA
+                        || sql.getErrorCode() == DEADLOCK) {
+                    return true;
+                }
+            }
+
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+
+        return false;
+    }
+
+    // ====================================================
+    // RECUPERO ALL'AVVIO
+    // ====================================================
+
+    /**
+     * Rimette in coda gli ordini rimasti aperti nel giornale,
+     * escludendo quelli già presenti nel database.
+     */
+    private void recupera(List<OrdineDaScrivere> aperti) {
+
+        if (aperti.isEmpty()) {
+            return;
+        }
+
+        Set<String> esistenti;
+
+        try {
+            esistenti = codiciEsistenti(aperti);
+        } catch (SQLException e) {
+            // Database non raggiungibile: verifica ripetuta
+            // dal thread di scrittura prima di riscriverli
+            System.err.println("Recupero ordini: verifica nel database non riuscita");
+            esistenti = Set.of();
+
+            for (OrdineDaScrivere ordine : aperti) {
+                daVerificare.add(ordine.getCodice());
+            }
+        }
+
+        List<String> giaScritti = new ArrayList<>();
+
+        for (OrdineDaScrivere ordine : aperti) {
+
+            if (esistenti.contains(ordine.getCodice())) {
+                giaScritti.add(ordine.getCodice());
+            } else {
+                inAttesa.put(ordine.getCodice(), ordine);
+                daRitentare.add(ordine);
+            }
+        }
+
+        giornale.segnaScritti(giaScritti);
+
+        System.out.println("Giornale ordini: " + (aperti.size() - giaScritti.size())
+                + " ordini da riscrivere, " + giaScritti.size() + " già presenti");
+    }
+
+    /**
+     * Toglie dal gruppo gli ordini recuperati senza verifica
+     * che risultano già nel database, segnandoli come scritti.
+     * Se il database non risponde il gruppo resta invariato
+     * (la scrittura fallirà comunque e verrà ritentata).
+     */
+    private void escludiGiaScritti(List<OrdineDaScrivere> gruppo) {
+
+        List<OrdineDaScrivere> dubbi = new ArrayList<>();
+
+        for (OrdineDaScrivere ordine : gruppo) {
+            if (daVerificare.contains(ordine.getCodice())) {
+                dubbi.add(ordine);
+            }
+        }
+
+        if (dubbi.isEmpty()) {
+            return;
+        }
+
+        Set<String> esistenti;
+
+        try {
+            esistenti = codiciEsistenti(dubbi);
+        } catch (SQLException e) {
+            return;
+        }
+
+        List<OrdineDaScrivere> giaScritti = new ArrayList<>();
+
+        for (OrdineDaScrivere ordine : dubbi) {
+
+            daVerificare.remove(ordine.getCodice());
+
+            if (esistenti.contains(ordine.getCodice())) {
+                giaScritti.add(ordine);
+            }
+        }
+
+        if (!giaScritti.isEmpty()) {
+            gruppo.removeAll(giaScritti);
+            segnaGiaScritti(giaScritti);
+        }
+    }
+
+    /**
+     * @return true se il codice dell'ordine è nel database
+     *         (false anche se la verifica non riesce)
+     */
+    private boolean giaScritto(OrdineDaScrivere ordine) {
+        try {
+            return !codiciEsistenti(List.of(ordine)).isEmpty();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Ordini trovati nel database: tolti dall'attesa e segnati
+     * nel giornale, senza notifica (id e stato sono quelli del
+     * database, ripresi dal caricamento degli ordini attivi).
+     */
+    private void segnaGiaScritti(List<OrdineDaScrivere> ordini) {
+
+        List<String> codici = new ArrayList<>(ordini.size());
+
+        for (OrdineDaScrivere ordine : ordini) {
+            codici.add(ordine.getCodice());
+            inAttesa.remove(ordine.getCodice());
+            daVerificare.remove(ordine.getCodice());
+        }
+
+        giornale.segnaScritti(codici);
+
+        System.out.println("Giornale ordini: " + codici.size()
+                + " ordini già presenti nel database");
+    }
+
+    /**
+     * Cerca nel database quali codici sono già stati scritti.
+     */
+    private Set<String> codiciEsistenti(List<OrdineDaScrivere> ordini) throws SQLException {
+
+        Set<String> esistenti = new HashSet<>();
+
+        try (
+                Connection conn = gestoreDatabase.getConnessione();
+                PreparedStatement ps = conn.prepareStatement(Query.SELECT_ESISTE_CODICE)
+        ) {
+
+            for (OrdineDaScrivere ordine : ordini) {
+
+                ps.setString(1, ordine.getCodice());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        esistenti.add(ordine.getCodice());
+                    }
+                }
+            }
+        }
+
+        return esistenti;
+    }
+}
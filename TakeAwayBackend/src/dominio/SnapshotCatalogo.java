@@ -0,0 +1,146 @@
+package dominio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * ============================================================
+ * CLASSE SNAPSHOT CATALOGO
+ * ============================================================
+ *
+ * Fotografia immutabile del catalogo prodotti in un
+ * determinato istante.
+ *
+ * Ogni snapshot ha un numero di versione crescente:
+ * quando il catalogo viene ricaricato ne viene costruito
+ * uno nuovo, mentre le richieste in corso continuano a
+ * leggere quello precedente senza alcun lock.
+ *
+ * I prodotti sono indicizzati:
+ * - per id (ricerca diretta)
+ * - per categoria (mantenendo l'ordine del menu)
+ *
+ * Delle immagini è conservata solo l'impronta (MD5),
+ * usata per costruire URL versionati: i byte vengono
+ * serviti separatamente da CatalogoImmagini.
+ */
+public class SnapshotCatalogo {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Versione del catalogo (cresce a ogni ricaricamento).
+     */
+    private final long versione;
+
+    /**
+     * Istante di caricamento (millisecondi epoch).
+     */
+    private final long caricatoIl;
+
+    /**
+     * Prodotti nell'ordine del menu (categoria, nome).
+     */
+    private final List<Prodotto> prodotti;
+
+    /**
+     * Indice dei prodotti per id.
+     */
+    private final Map<String, Prodotto> perId;
+
+    /**
+     * Prodotti raggruppati per categoria.
+     */
+    private final Map<String, List<Prodotto>> perCategoria;
+
+    /**
+     * Impronte MD5 delle immagini, indicizzate per id prodotto.
+     */
+    private final Map<String, String> impronte;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * Costruisce lo snapshot e i relativi indici.
+     *
+     * @param versione   versione del catalogo
+     * @param caricatoIl istante di caricamento
+     * @param prodotti   prodotti già ordinati per il menu
+     * @param impronte   impronte delle immagini per id prodotto
+     */
+    public SnapshotCatalogo(
+            long versione,
+            long caricatoIl,
+            List<Prodotto> prodotti,
+            Map<String, String> impronte
+    ) {
+
+        this.versione = versione;
+        this.caricatoIl = caricatoIl;
+        this.prodotti = List.copyOf(prodotti);
+
+        Map<String, Prodotto> indiceId = new HashMap<>();
+        Map<String, List<Prodotto>> indiceCategoria = new LinkedHashMap<>();
+
+        for (Prodotto p : this.prodotti) {
+            indiceId.put(p.getId(), p);
+            indiceCategoria
+                    .computeIfAbsent(p.getCategoria(), c -> new ArrayList<>())
+                    .add(p);
+        }
+
+        indiceCategoria.replaceAll((categoria, lista) -> List.copyOf(lista));
+
+        this.perId = Collections.unmodifiableMap(indiceId);
+        this.perCategoria = Collections.unmodifiableMap(indiceCategoria);
+        this.impronte = Map.copyOf(impronte);
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public long getCaricatoIl() {
+        return caricatoIl;
+    }
+
+    public List<Prodotto> getProdotti() {
+        return prodotti;
+    }
+
+    public Map<String, List<Prodotto>> getPerCategoria() {
+        return perCategoria;
+    }
+
+    /**
+     * Cerca un prodotto tramite il suo id.
+     *
+     * @param id identificativo del prodotto
+     * @return prodotto oppure null se non presente
+     */
+    public Prodotto getProdotto(String id) {
+        return perId.get(id);
+    }
+
+    /**
+     * Restituisce l'impronta dell'immagine di un prodotto.
+     *
+     * @param id identificativo del prodotto
+     * @return impronta MD5 esadecimale oppure null se senza immagine
+     */
+    public String getImprontaImmagine(String id) {
+        return impronte.get(id);
+    }
+}
@@ -45,6 +45,30 @@ public enum StatoOrdine {
         }
     }
 
+    /**
+     * Restituisce lo stato da cui si arriva a questo stato
+     * (l'unico per cui puoPassareA(this) è vero).
+     *
+     * @return stato precedente oppure null se non esiste
+     */
+    public StatoOrdine getStatoPrecedente() {
+
+        switch (this) {
+            case IN_PREPARAZIONE:
+                return RICEVUTO;
+
+            case PRONTO:
+                return IN_PREPARAZIONE;
+
+            case CONSEGNATO:
+                return PRONTO;
+
+            default:
+                // RICEVUTO è lo stato iniziale
+                return null;
+        }
+    }
+
     /**
      * Verifica se è possibile passare allo stato indicato.
      *
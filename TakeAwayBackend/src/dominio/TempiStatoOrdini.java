@@ -0,0 +1,102 @@
+package dominio;
+
+import metriche.Istogramma;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/*
+ * ============================================================
+ * CLASSE TEMPI STATO ORDINI
+ * ============================================================
+ *
+ * Tempi di permanenza degli ordini in ogni stato, misurati
+ * a ogni cambio di stato (GestoreOrdini).
+ *
+ * Per ogni stato esiste un istogramma complessivo e uno per
+ * ciascuna ora del giorno in cui l'ordine è entrato nello
+ * stato: permette di vedere, ad esempio, quanto restano in
+ * RICEVUTO gli ordini arrivati tra le 20 e le 21.
+ *
+ * I valori sono in millisecondi e raccolti dall'avvio del
+ * server; lo storico completo resta nella tabella
+ * storico_stato_ordine per le analisi sul lungo periodo.
+ * CONSEGNATO è lo stato finale e non ha una durata.
+ */
+public class TempiStatoOrdini {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Istogramma complessivo per stato (indice = ordinal).
+     */
+    private final Istogramma[] perStato =
+            new Istogramma[StatoOrdine.values().length];
+
+    /**
+     * Istogrammi per stato e ora del giorno (0-23).
+     */
+    private final Istogramma[][] perOra =
+            new Istogramma[StatoOrdine.values().length][24];
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    public TempiStatoOrdini() {
+
+        for (int s = 0; s < perStato.length; s++) {
+
+            perStato[s] = new Istogramma();
+
+            for (int ora = 0; ora < 24; ora++) {
+                perOra[s][ora] = new Istogramma();
+            }
+        }
+    }
+
+    // ====================================================
+    // REGISTRAZIONE
+    // ====================================================
+
+    /**
+     * Registra il tempo trascorso da un ordine in uno stato.
+     *
+     * @param stato   stato lasciato dall'ordine
+     * @param entrata istante di ingresso nello stato
+     * @param uscita  istante del cambio di stato
+     */
+    void registra(StatoOrdine stato, LocalDateTime entrata, LocalDateTime uscita) {
+
+        // Gli istanti vengono tutti dall'orologio del server;
+        // data_creazione (DATETIME senza frazioni) può però
+        // essere arrotondata al secondo successivo
+        long millisecondi = Math.max(0, Duration.between(entrata, uscita).toMillis());
+
+        perStato[stato.ordinal()].registra(millisecondi);
+        perOra[stato.ordinal()][entrata.getHour()].registra(millisecondi);
+    }
+
+    // ====================================================
+    // LETTURE
+    // ====================================================
+
+    /**
+     * @param stato stato dell'ordine
+     * @return tempi di permanenza nello stato (ms)
+     */
+    public Istogramma getTempi(StatoOrdine stato) {
+        return perStato[stato.ordinal()];
+    }
+
+    /**
+     * @param stato stato dell'ordine
+     * @param ora   ora del giorno di ingresso nello stato (0-23)
+     * @return tempi di permanenza nello stato (ms)
+     */
+    public Istogramma getTempi(StatoOrdine stato, int ora) {
+        return perOra[stato.ordinal()][ora];
+    }
+}
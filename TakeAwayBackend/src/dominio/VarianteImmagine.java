@@ -0,0 +1,75 @@
+package dominio;
+
+/*
+ * ============================================================
+ * ENUM VARIANTE IMMAGINE
+ * ============================================================
+ *
+ * Rappresenta le dimensioni in cui può essere servita
+ * l'immagine di un prodotto.
+ *
+ * - ORIGINALE → il file così come salvato nel database
+ * - MINIATURA, SCHEDA, COMPLETA → derivati ridimensionati
+ *   alla larghezza massima indicata (mai ingranditi)
+ *
+ * Il menu mostra le immagini a 150px: il browser sceglie
+ * la variante adatta alla densità dello schermo tramite
+ * l'attributo srcset.
+ */
+public enum VarianteImmagine {
+
+    ORIGINALE(0),
+    MINIATURA(150),
+    SCHEDA(300),
+    COMPLETA(600);
+
+    /**
+     * Larghezza massima in pixel (0 = nessun ridimensionamento).
+     */
+    private final int larghezza;
+
+    VarianteImmagine(int larghezza) {
+        this.larghezza = larghezza;
+    }
+
+    public int getLarghezza() {
+        return larghezza;
+    }
+
+    /**
+     * Indica se la variante è un derivato da generare.
+     *
+     * @return true per tutte le varianti tranne ORIGINALE
+     */
+    public boolean isDerivata() {
+        return larghezza > 0;
+    }
+
+    /**
+     * Nome usato nel parametro "dim" dell'URL.
+     *
+     * @return nome della variante in minuscolo
+     */
+    public String getParametro() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Converte il parametro "dim" dell'URL nella variante.
+     *
+     * @param parametro valore del parametro (può essere null)
+     * @return variante corrispondente, ORIGINALE se sconosciuta
+     */
+    public static VarianteImmagine daParametro(String parametro) {
+
+        if (parametro != null) {
+            for (VarianteImmagine v : values()) {
+                if (v.getParametro().equals(parametro)) {
+                    return v;
+                }
+            }
+        }
+
+        return ORIGINALE;
+    }
+}
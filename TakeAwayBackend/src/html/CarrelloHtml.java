@@ -107,6 +107,9 @@ public class CarrelloHtml {
     /**
      * Chiusura del totale, form di conferma ordine
      * e chiusura completa del documento HTML.
+     *
+     * Il segnaposto %s riceve la chiave di idempotenza:
+     * un doppio invio del form non crea due ordini.
      */
     public static final String CARRELLO_PARTE_3 = """
                     </span>
@@ -114,7 +117,10 @@ public class CarrelloHtml {
             </div>
 
             <!-- FORM CONFERMA ORDINE -->
-            <form action="/ordine" method="post">
+            <form action="/ordine" method="post"
+                  onsubmit="this.querySelector('button[type=submit]').disabled = true">
+
+                <input type="hidden" name="chiave" value="%s">
 
                 <div class="mb-3">
                     <label class="form-label">Nome cliente</label>
@@ -8,8 +8,9 @@ package html;
  * Contiene le parti statiche della pagina HTML
  * della Dashboard Staff.
  *
- * Le righe della tabella e i pulsanti di cambio stato
- * vengono inseriti dinamicamente dal DashboardStaffHandler.
+ * Il form dei filtri, le righe della tabella, i pulsanti di
+ * cambio stato e i link di paginazione vengono inseriti
+ * dinamicamente dal DashboardStaffHandler.
  *
  * La struttura è divisa in più sezioni per:
  * - mantenere l'HTML leggibile
@@ -19,7 +20,7 @@ package html;
 public class DashboardStaffHtml {
 
     // ====================================================
-    // PARTE 1 — HEAD + NAVBAR + APERTURA TABELLA
+    // PARTE 1 — HEAD + NAVBAR + APERTURA CONTENUTO
     // ====================================================
 
     /**
@@ -27,7 +28,7 @@ public class DashboardStaffHtml {
      * - doctype
      * - head con Bootstrap
      * - navbar staff
-     * - apertura tabella ordini
+     * - apertura del contenitore (filtri e messaggi)
      */
     public static final String DASHBOARD_PARTE_1 = """
             <!DOCTYPE html>
@@ -62,6 +63,9 @@ public class DashboardStaffHtml {
                     </span>
 
                     <div class="ms-auto">
+                        <a href="/staff/tempi" class="btn btn-outline-light btn-sm me-2">
+                            Tempi
+                        </a>
                         <a href="/" class="btn btn-outline-light btn-sm">
                             Torna al menu
                         </a>
@@ -70,12 +74,27 @@ public class DashboardStaffHtml {
             </nav>
 
             <div class="container mt-4">
+            """;
+
+    // ====================================================
+    // APERTURA TABELLA ORDINI
+    // ====================================================
+
+    /**
+     * Intestazione della tabella ordini.
+     */
+    public static final String DASHBOARD_TABELLA = """
+                <div id="nuovi-ordini" class="alert alert-warning d-none">
+                    <span></span>
+                    <a class="btn btn-sm btn-dark ms-2" href="/staff/dashboard">Mostra</a>
+                </div>
 
                 <table class="table table-bordered table-striped align-middle shadow-sm">
                     <thead class="table-dark">
                         <tr>
                             <th>Codice</th>
                             <th>Cliente</th>
+                            <th>Prodotti</th>
                             <th>Totale</th>
                             <th>Stato</th>
                             <th>Azioni</th>
@@ -85,17 +104,103 @@ public class DashboardStaffHtml {
             """;
 
     // ====================================================
-    // PARTE 2 — CHIUSURA TABELLA E PAGINA
+    // PARTE 2 — CHIUSURA TABELLA
     // ====================================================
 
     /**
-     * Chiusura della tabella e del documento HTML.
+     * Chiusura della tabella (seguono i link di paginazione).
      */
     public static final String DASHBOARD_PARTE_2 = """
                     </tbody>
                 </table>
+            """;
+
+    // ====================================================
+    // PARTE 3 — CHIUSURA PAGINA
+    // ====================================================
+
+    /**
+     * Chiusura del contenitore e del documento HTML.
+     *
+     * Lo script riceve gli eventi degli ordini
+     * (Server-Sent Events su /staff/eventi):
+     * - stato → aggiorna badge e pulsanti della riga
+     * - nuovo → mostra quanti ordini sono arrivati
+     * - ricarica → eventi persi: pagina ricaricata
+     */
+    public static final String DASHBOARD_PARTE_3 = """
             </div>
 
+            <script>
+            (function () {
+                if (!window.EventSource) {
+                    return;
+                }
+
+                const STATI = ["RICEVUTO", "IN_PREPARAZIONE", "PRONTO", "CONSEGNATO"];
+                const BADGE = {
+                    RICEVUTO: "bg-secondary",
+                    IN_PREPARAZIONE: "bg-primary",
+                    PRONTO: "bg-warning text-dark",
+                    CONSEGNATO: "bg-success"
+                };
+                const BOTTONE = {
+                    RICEVUTO: "secondary",
+                    IN_PREPARAZIONE: "primary",
+                    PRONTO: "warning text-dark",
+                    CONSEGNATO: "success"
+                };
+
+                let nuovi = 0;
+                const eventi = new EventSource("/staff/eventi");
+
+                eventi.addEventListener("stato", function (e) {
+                    const ordine = JSON.parse(e.data);
+                    const riga = document.querySelector('tr[data-ordine="' + ordine.id + '"]');
+
+                    if (!riga) {
+                        return;
+                    }
+
+                    const badge = riga.querySelector("[data-badge]");
+                    badge.className = "badge " + BADGE[ordine.stato];
+                    badge.textContent = ordine.stato;
+
+                    const attuale = STATI.indexOf(ordine.stato);
+                    let azioni = "";
+
+                    STATI.forEach(function (stato, i) {
+                        if (i === attuale) {
+                            azioni += '<span class="btn btn-sm btn-' + BOTTONE[stato]
+                                    + ' me-1 disabled">' + stato + '</span>';
+                        } else if (i === attuale + 1) {
+                            azioni += '<a class="btn btn-sm btn-outline-' + BOTTONE[stato]
+                                    + ' me-1" href="/staff/dashboard?stato=' + stato
+                                    + '&id=' + ordine.id + '">' + stato + '</a>';
+                        } else {
+                            azioni += '<span class="btn btn-sm btn-outline-secondary me-1 disabled">'
+                                    + stato + '</span>';
+                        }
+                    });
+
+                    riga.querySelector("[data-azioni]").innerHTML = azioni;
+                });
+
+                eventi.addEventListener("nuovo", function () {
+                    nuovi++;
+
+                    const avviso = document.getElementById("nuovi-ordini");
+                    avviso.querySelector("span").textContent =
+                            nuovi === 1 ? "1 nuovo ordine" : nuovi + " nuovi ordini";
+                    avviso.classList.remove("d-none");
+                });
+
+                eventi.addEventListener("ricarica", function () {
+                    location.reload();
+                });
+            })();
+            </script>
+
             </body>
             </html>
             """;
@@ -0,0 +1,53 @@
+package html;
+
+/**
+ * ============================================================
+ * CLASSE FORMATO PREZZO
+ * ============================================================
+ *
+ * Scrive un importo in centesimi nel formato italiano
+ * usato dalle pagine: 650 → "6,50".
+ *
+ * La scrittura avviene direttamente nello StringBuilder
+ * della pagina, cifra per cifra: nessuna stringa
+ * intermedia, nessun Formatter, nessun double.
+ */
+public final class FormatoPrezzo {
+
+    private FormatoPrezzo() {
+    }
+
+    /**
+     * Aggiunge l'importo formattato (es. "6,50").
+     *
+     * @param html      pagina in costruzione
+     * @param centesimi importo in centesimi
+     * @return lo stesso StringBuilder, per concatenare altre append
+     */
+    public static StringBuilder appendi(StringBuilder html, long centesimi) {
+
+        if (centesimi < 0) {
+            html.append('-');
+            centesimi = -centesimi;
+        }
+
+        long resto = centesimi % 100;
+
+        return html.append(centesimi / 100)
+                   .append(',')
+                   .append((char) ('0' + resto / 10))
+                   .append((char) ('0' + resto % 10));
+    }
+
+    /**
+     * Aggiunge l'importo seguito dal simbolo dell'euro
+     * (es. "6,50 €").
+     *
+     * @param html      pagina in costruzione
+     * @param centesimi importo in centesimi
+     * @return lo stesso StringBuilder
+     */
+    public static StringBuilder appendiEuro(StringBuilder html, long centesimi) {
+        return appendi(html, centesimi).append(" €");
+    }
+}
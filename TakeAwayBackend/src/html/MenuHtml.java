@@ -70,6 +70,7 @@ public class MenuHtml {
                     <div class="ms-auto d-flex gap-2">
                         <a href="/carrello" class="btn btn-success btn-sm">
                             Carrello
+                            <span id="badge-carrello" class="badge bg-light text-dark ms-1">0</span>
                         </a>
 
                         <a href="/staff/login" class="btn btn-outline-light btn-sm">
@@ -130,6 +131,37 @@ public class MenuHtml {
                 © Takeaway Express
             </footer>
 
+            <!-- =========================
+                 CARRELLO SENZA RICARICARE
+                 ========================= -->
+            <script>
+                const badge = document.getElementById("badge-carrello");
+
+                function aggiornaBadge(riepilogo) {
+                    badge.textContent = riepilogo.pezzi;
+                }
+
+                // La pagina è la stessa per tutti: il numero
+                // di pezzi viene letto dal carrello del cliente
+                fetch("/carrello/api/riepilogo")
+                    .then(r => r.json())
+                    .then(aggiornaBadge)
+                    .catch(() => {});
+
+                document.querySelectorAll("a[data-aggiungi]").forEach(link => {
+                    link.addEventListener("click", evento => {
+                        evento.preventDefault();
+
+                        fetch("/carrello/api/aggiungi?id=" + encodeURIComponent(link.dataset.aggiungi),
+                                { method: "POST" })
+                            .then(r => r.ok ? r.json() : Promise.reject(r))
+                            .then(aggiornaBadge)
+                            // In caso di errore si usa il link tradizionale
+                            .catch(() => { window.location = link.href; });
+                    });
+                });
+            </script>
+
             </body>
             </html>
             """;
@@ -0,0 +1,71 @@
+package html;
+
+/**
+ * ============================================================
+ * CLASSE ORDINE ERRORE HTML
+ * ============================================================
+ *
+ * Pagina mostrata quando l'ordine non può essere salvato
+ * (ad esempio database non raggiungibile).
+ *
+ * Il carrello del cliente non viene svuotato:
+ * l'ordine può essere inviato di nuovo.
+ */
+public class OrdineErroreHtml {
+
+    // ====================================================
+    // PAGINA COMPLETA
+    // ====================================================
+
+    /**
+     * Pagina di errore completa (nessuna parte dinamica).
+     */
+    public static final String PAGINA = """
+        <!DOCTYPE html>
+        <html lang="it">
+        <head>
+            <meta charset="UTF-8">
+            <title>Ordine non riuscito</title>
+
+            <link href="https://cdn.jsdelivr.net/npm/bootstrap@5.3.3/dist/css/bootstrap.min.css" rel="stylesheet">
+
+            <style>
+                body {
+                    background-color: #f8f9fa;
+                }
+
+                header {
+                    background-color: #dc3545;
+                    color: white;
+                    padding: 20px;
+                    text-align: center;
+                }
+            </style>
+        </head>
+
+        <body>
+
+        <header>
+            <h1>Ordine non riuscito</h1>
+            <p>Non è stato possibile registrare il tuo ordine</p>
+        </header>
+
+        <div class="container mt-4">
+            <div class="card shadow-sm">
+                <div class="card-body">
+                    <p>Si è verificato un problema temporaneo.</p>
+                    <p>Il tuo carrello è stato conservato: puoi riprovare tra qualche istante.</p>
+                </div>
+            </div>
+
+            <div class="text-center mt-4">
+                <a href="/carrello" class="btn btn-primary">
+                    Torna al carrello
+                </a>
+            </div>
+        </div>
+
+        </body>
+        </html>
+        """;
+}
@@ -66,6 +66,10 @@ public class StatoOrdineClienteHtml {
     /**
      * Chiusura della card, pulsante di ritorno
      * al menu e chiusura del documento HTML.
+     *
+     * Lo script attende i cambi di stato (long-poll su
+     * /ordine/stato/attesa) e aggiorna il badge, fino
+     * alla consegna dell'ordine.
      */
     public static final String PARTE_2 = """
                 </div>
@@ -78,6 +82,50 @@ public class StatoOrdineClienteHtml {
             </div>
         </div>
 
+        <script>
+        (function () {
+            const badge = document.getElementById("stato-ordine");
+
+            if (!badge || !window.fetch) {
+                return;
+            }
+
+            const codice = badge.dataset.codice;
+
+            function attendi() {
+                const stato = badge.textContent.trim();
+
+                if (stato === "CONSEGNATO") {
+                    return;
+                }
+
+                fetch("/ordine/stato/attesa?codice=" + encodeURIComponent(codice)
+                        + "&stato=" + encodeURIComponent(stato))
+                    .then(function (risposta) {
+                        if (risposta.status === 200) {
+                            return risposta.json().then(function (ordine) {
+                                badge.textContent = ordine.stato;
+                                attendi();
+                            });
+                        }
+
+                        if (risposta.status === 204) {
+                            attendi();
+                            return;
+                        }
+
+                        // Errore: nuovo tentativo più tardi
+                        setTimeout(attendi, 10000);
+                    })
+                    .catch(function () {
+                        setTimeout(attendi, 10000);
+                    });
+            }
+
+            attendi();
+        })();
+        </script>
+
         </body>
         </html>
         """;
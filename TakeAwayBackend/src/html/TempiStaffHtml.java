@@ -0,0 +1,86 @@
+package html;
+
+/**
+ * ============================================================
+ * CLASSE TEMPI STAFF HTML
+ * ============================================================
+ *
+ * Contiene le parti statiche della pagina dei tempi di
+ * permanenza degli ordini negli stati (area staff).
+ *
+ * Le tabelle con i percentili vengono inserite
+ * dinamicamente dal TempiStaffHandler.
+ */
+public class TempiStaffHtml {
+
+    // ====================================================
+    // PARTE 1 — HEAD + NAVBAR + APERTURA CONTENUTO
+    // ====================================================
+
+    /**
+     * Intestazione HTML:
+     * - doctype
+     * - head con Bootstrap
+     * - navbar staff
+     * - apertura del contenitore
+     */
+    public static final String TEMPI_PARTE_1 = """
+            <!DOCTYPE html>
+            <html lang="it">
+            <head>
+                <meta charset="UTF-8">
+                <title>Tempi degli ordini</title>
+
+                <link href="https://cdn.jsdelivr.net/npm/bootstrap@5.3.3/dist/css/bootstrap.min.css" rel="stylesheet">
+
+                <style>
+                    body {
+                        background-color: #f4f6f8;
+                    }
+
+                    td.num, th.num {
+                        text-align: right;
+                        font-variant-numeric: tabular-nums;
+                    }
+                </style>
+            </head>
+
+            <body>
+
+            <nav class="navbar navbar-expand-lg navbar-dark bg-dark">
+                <div class="container">
+                    <span class="navbar-brand fw-bold">
+                        ⏱️ Tempi degli ordini
+                    </span>
+
+                    <div class="ms-auto">
+                        <a href="/staff/dashboard" class="btn btn-outline-light btn-sm">
+                            Torna alla dashboard
+                        </a>
+                    </div>
+                </div>
+            </nav>
+
+            <div class="container mt-4">
+
+                <p class="text-muted small">
+                    Tempo trascorso dagli ordini in ogni stato (minuti:secondi),
+                    dall'avvio del server. Le fasce orarie si riferiscono
+                    all'ingresso dell'ordine nello stato.
+                </p>
+            """;
+
+    // ====================================================
+    // PARTE 2 — CHIUSURA PAGINA
+    // ====================================================
+
+    /**
+     * Chiusura del contenitore e del documento HTML.
+     */
+    public static final String TEMPI_PARTE_2 = """
+            </div>
+
+            </body>
+            </html>
+            """;
+}
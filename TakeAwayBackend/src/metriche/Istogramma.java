@@ -0,0 +1,185 @@
+package metriche;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * ============================================================
+ * CLASSE ISTOGRAMMA
+ * ============================================================
+ *
+ * Distribuzione di valori non negativi (tipicamente durate
+ * in microsecondi) registrati da più thread contemporaneamente.
+ *
+ * I valori vengono contati in intervalli a scala logaritmica:
+ * ogni potenza di due è divisa in 4 sotto-intervalli, quindi
+ * un percentile stimato si discosta al massimo del 25% dal
+ * valore reale, qualunque sia l'ordine di grandezza.
+ *
+ * - registra() non usa lock né alloca memoria: può essere
+ *   chiamato su ogni richiesta o query
+ * - le letture sono approssimate mentre altri thread
+ *   registrano (nessuna fotografia atomica)
+ */
+public class Istogramma {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Sotto-intervalli per ogni potenza di due (2^2).
+     */
+    private static final int BIT_SOTTOINTERVALLI = 2;
+
+    private static final int SOTTOINTERVALLI = 1 << BIT_SOTTOINTERVALLI;
+
+    /**
+     * Numero di intervalli: copre tutti i long positivi.
+     */
+    private static final int INTERVALLI =
+            (64 - BIT_SOTTOINTERVALLI) * SOTTOINTERVALLI;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final AtomicLongArray conteggi = new AtomicLongArray(INTERVALLI);
+
+    private final LongAdder conteggio = new LongAdder();
+
+    private final LongAdder somma = new LongAdder();
+
+    private final AtomicLong massimo = new AtomicLong();
+
+    // ====================================================
+    // REGISTRAZIONE
+    // ====================================================
+
+    /**
+     * Registra un valore (i valori negativi valgono 0).
+     *
+     * @param valore valore osservato
+     */
+    public void registra(long valore) {
+
+        if (valore < 0) {
+            valore = 0;
+        }
+
+        conteggi.incrementAndGet(indice(valore));
+        conteggio.increment();
+        somma.add(valore);
+
+        // Aggiornamento del massimo solo se necessario
+        // (evita scritture sulla stessa cache line)
+        if (valore > massimo.get()) {
+            massimo.accumulateAndGet(valore, Math::max);
+        }
+    }
+
+    // ====================================================
+    // LETTURA
+    // ====================================================
+
+    public long getConteggio() {
+        return conteggio.sum();
+    }
+
+    public long getSomma() {
+        return somma.sum();
+    }
+
+    public long getMassimo() {
+        return massimo.get();
+    }
+
+    /**
+     * Media dei valori registrati.
+     *
+     * @return media, 0 se l'istogramma è vuoto
+     */
+    public double getMedia() {
+        long n = conteggio.sum();
+        return n == 0 ? 0 : (double) somma.sum() / n;
+    }
+
+    /**
+     * Stima un percentile: restituisce il limite superiore
+     * dell'intervallo che lo contiene (mai oltre il massimo).
+     *
+     * @param quantile valore tra 0 e 1 (es. 0.95)
+     * @return percentile stimato, 0 se l'istogramma è vuoto
+     */
+    public long getPercentile(double quantile) {
+
+        long[] copia = new long[INTERVALLI];
+        long totale = 0;
+
+        for (int i = 0; i < INTERVALLI; i++) {
+            copia[i] = conteggi.get(i);
+            totale += copia[i];
+        }
+
+        if (totale == 0) {
+            return 0;
+        }
+
+        // Posizione (1..totale) del valore cercato
+        long posizione = Math.max(1, (long) Math.ceil(quantile * totale));
+        long cumulato = 0;
+
+        for (int i = 0; i < INTERVALLI; i++) {
+
+            cumulato += copia[i];
+
+            if (cumulato >= posizione) {
+                return Math.min(limiteSuperiore(i), massimo.get());
+            }
+        }
+
+        return massimo.get();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Intervallo in cui cade un valore.
+     * I valori 0..3 hanno un intervallo ciascuno; oltre,
+     * ogni potenza di due è divisa in 4 parti uguali.
+     */
+    private static int indice(long valore) {
+
+        if (valore < SOTTOINTERVALLI) {
+            return (int) valore;
+        }
+
+        int esponente = 63 - Long.numberOfLeadingZeros(valore);
+        int spostamento = esponente - BIT_SOTTOINTERVALLI;
+        int sotto = (int) (valore >>> spostamento) & (SOTTOINTERVALLI - 1);
+
+        return (spostamento + 1) * SOTTOINTERVALLI + sotto;
+    }
+
+    /**
+     * Valore più alto che cade nell'intervallo indicato.
+     */
+    private static long limiteSuperiore(int indice) {
+
+        if (indice < SOTTOINTERVALLI) {
+            return indice;
+        }
+
+        int spostamento = indice / SOTTOINTERVALLI - 1;
+        int sotto = indice % SOTTOINTERVALLI;
+
+        long inizio = (long) (SOTTOINTERVALLI + sotto) << spostamento;
+
+        // L'ultimo intervallo arriva fino a Long.MAX_VALUE
+        long fine = inizio + (1L << spostamento) - 1;
+        return fine < inizio ? Long.MAX_VALUE : fine;
+    }
+}
@@ -0,0 +1,95 @@
+package metriche;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+
+/*
+ * ============================================================
+ * CLASSE METRICHE JVM
+ * ============================================================
+ *
+ * Esporta lo stato della JVM letto dagli MXBean standard:
+ * - memoria heap e non-heap
+ * - garbage collector: raccolte e tempo totale di pausa
+ *   (per collector)
+ * - thread di piattaforma attivi, daemon e picco
+ *   (i thread virtuali non sono conteggiati dagli MXBean)
+ * - tempo dall'avvio del processo
+ */
+public final class MetricheJvm {
+
+    private MetricheJvm() {
+    }
+
+    /**
+     * Scrive le metriche della JVM.
+     *
+     * @param testo risposta in costruzione
+     */
+    public static void scrivi(TestoPrometheus testo) {
+
+        // ====================================================
+        // MEMORIA
+        // ====================================================
+
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memoria.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memoria.getNonHeapMemoryUsage();
+
+        testo.intestazione("jvm_memory_used_bytes", "gauge", "Memoria in uso")
+             .valore("jvm_memory_used_bytes", heap.getUsed(), "area", "heap")
+             .valore("jvm_memory_used_bytes", nonHeap.getUsed(), "area", "nonheap");
+
+        testo.intestazione("jvm_memory_committed_bytes", "gauge", "Memoria riservata dal sistema")
+             .valore("jvm_memory_committed_bytes", heap.getCommitted(), "area", "heap")
+             .valore("jvm_memory_committed_bytes", nonHeap.getCommitted(), "area", "nonheap");
+
+        testo.intestazione("jvm_memory_max_bytes", "gauge", "Memoria massima heap (-1 se non definita)")
+             .valore("jvm_memory_max_bytes", heap.getMax(), "area", "heap");
+
+        // ====================================================
+        // GARBAGE COLLECTOR
+        // ====================================================
+
+        testo.intestazione("jvm_gc_collections_total", "counter", "Raccolte del garbage collector");
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            testo.valore("jvm_gc_collections_total",
+                    Math.max(0, gc.getCollectionCount()), "gc", gc.getName());
+        }
+
+        testo.intestazione("jvm_gc_collection_seconds_total", "counter",
+                "Tempo totale delle raccolte del garbage collector");
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            testo.valore("jvm_gc_collection_seconds_total",
+                    Math.max(0, gc.getCollectionTime()) / 1000.0, "gc", gc.getName());
+        }
+
+        // ====================================================
+        // THREAD
+        // ====================================================
+
+        ThreadMXBean thread = ManagementFactory.getThreadMXBean();
+
+        testo.intestazione("jvm_threads_current", "gauge", "Thread di piattaforma attivi")
+             .valore("jvm_threads_current", thread.getThreadCount());
+
+        testo.intestazione("jvm_threads_daemon", "gauge", "Thread daemon attivi")
+             .valore("jvm_threads_daemon", thread.getDaemonThreadCount());
+
+        testo.intestazione("jvm_threads_peak", "gauge", "Picco di thread attivi")
+             .valore("jvm_threads_peak", thread.getPeakThreadCount());
+
+        // ====================================================
+        // PROCESSO
+        // ====================================================
+
+        testo.intestazione("process_uptime_seconds", "gauge", "Secondi dall'avvio della JVM")
+             .valore("process_uptime_seconds",
+                     ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+}
@@ -0,0 +1,119 @@
+package metriche;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * ============================================================
+ * CLASSE METRICHE ROTTA
+ * ============================================================
+ *
+ * Contatori delle richieste HTTP di una rotta (contesto
+ * registrato sull'HttpServer, es. "/carrello").
+ *
+ * - richieste per codice di stato della risposta
+ * - richieste in corso
+ * - byte inviati (dopo l'eventuale compressione)
+ * - durata di ogni richiesta, in microsecondi
+ *
+ * I contatori sono LongAdder (suddivisi tra i thread, senza
+ * lock né contesa): vengono aggiornati a ogni richiesta e
+ * letti solo quando le metriche vengono esportate.
+ */
+public class MetricheRotta {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final String rotta;
+
+    /**
+     * Codice di stato → richieste completate.
+     */
+    private final Map<Integer, LongAdder> perCodice = new ConcurrentHashMap<>();
+
+    private final LongAdder inCorso = new LongAdder();
+
+    private final LongAdder byteInviati = new LongAdder();
+
+    /**
+     * Durata delle richieste in microsecondi.
+     */
+    private final Istogramma latenza = new Istogramma();
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param rotta percorso del contesto
+     */
+    public MetricheRotta(String rotta) {
+        this.rotta = rotta;
+    }
+
+    // ====================================================
+    // REGISTRAZIONE
+    // ====================================================
+
+    /**
+     * Inizio di una richiesta.
+     */
+    public void inizio() {
+        inCorso.increment();
+    }
+
+    /**
+     * Fine di una richiesta (risposta completata).
+     *
+     * @param codice     codice di stato della risposta
+     * @param dimensione byte del corpo inviati
+     * @param durataNano durata dall'inizio della richiesta
+     */
+    public void fine(int codice, long dimensione, long durataNano) {
+
+        inCorso.decrement();
+
+        perCodice.computeIfAbsent(codice, c -> new LongAdder()).increment();
+        byteInviati.add(dimensione);
+        latenza.registra(durataNano / 1_000);
+    }
+
+    // ====================================================
+    // GETTER
+    // ====================================================
+
+    public String getRotta() {
+        return rotta;
+    }
+
+    /**
+     * @return copia dei contatori per codice di stato, ordinata
+     */
+    public Map<Integer, Long> getRichiestePerCodice() {
+
+        Map<Integer, Long> copia = new TreeMap<>();
+
+        perCodice.forEach((codice, n) -> copia.put(codice, n.sum()));
+
+        return copia;
+    }
+
+    public long getInCorso() {
+        return inCorso.sum();
+    }
+
+    public long getByteInviati() {
+        return byteInviati.sum();
+    }
+
+    /**
+     * @return durata delle richieste completate (µs)
+     */
+    public Istogramma getLatenza() {
+        return latenza;
+    }
+}
@@ -0,0 +1,146 @@
+package metriche;
+
+/*
+ * ============================================================
+ * CLASSE TESTO PROMETHEUS
+ * ============================================================
+ *
+ * Costruisce una risposta nel formato testuale di Prometheus
+ * (text/plain; version=0.0.4):
+ *
+ *   # HELP nome descrizione
+ *   # TYPE nome counter|gauge|summary
+ *   nome{etichetta="valore"} 42
+ *
+ * Le etichette vengono passate come coppie nome/valore;
+ * i valori sono protetti (\\, ", a capo) come richiesto
+ * dal formato.
+ */
+public class TestoPrometheus {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final StringBuilder testo = new StringBuilder(16 * 1024);
+
+    // ====================================================
+    // SCRITTURA
+    // ====================================================
+
+    /**
+     * Intestazione di una metrica (una sola volta per nome).
+     *
+     * @param nome  nome della metrica
+     * @param tipo  counter, gauge oppure summary
+     * @param aiuto descrizione
+     * @return this
+     */
+    public TestoPrometheus intestazione(String nome, String tipo, String aiuto) {
+        testo.append("# HELP ").append(nome).append(' ').append(aiuto).append('\n');
+        testo.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+        return this;
+    }
+
+    /**
+     * Un campione intero.
+     *
+     * @param nome      nome della metrica
+     * @param valore    valore
+     * @param etichette coppie nome, valore
+     * @return this
+     */
+    public TestoPrometheus valore(String nome, long valore, String... etichette) {
+        appendiNome(nome, etichette);
+        testo.append(' ').append(valore).append('\n');
+        return this;
+    }
+
+    /**
+     * Un campione decimale.
+     */
+    public TestoPrometheus valore(String nome, double valore, String... etichette) {
+        appendiNome(nome, etichette);
+        testo.append(' ').append(valore).append('\n');
+        return this;
+    }
+
+    /**
+     * Un istogramma come "summary": quantili 0.5, 0.95 e 0.99,
+     * somma e conteggio.
+     *
+     * @param nome      nome della metrica (senza suffissi)
+     * @param valori    istogramma da esportare
+     * @param scala     fattore per la conversione nell'unità
+     *                  esportata (es. 1e-6 da µs a secondi)
+     * @param etichette coppie nome, valore
+     * @return this
+     */
+    public TestoPrometheus sommario(
+            String nome,
+            Istogramma valori,
+            double scala,
+            String... etichette
+    ) {
+        String[] conQuantile = new String[etichette.length + 2];
+        System.arraycopy(etichette, 0, conQuantile, 0, etichette.length);
+        conQuantile[etichette.length] = "quantile";
+
+        for (String q : new String[] { "0.5", "0.95", "0.99" }) {
+            conQuantile[etichette.length + 1] = q;
+            valore(nome, valori.getPercentile(Double.parseDouble(q)) * scala, conQuantile);
+        }
+
+        valore(nome + "_sum", valori.getSomma() * scala, etichette);
+        valore(nome + "_count", valori.getConteggio(), etichette);
+
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return testo.toString();
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    private void appendiNome(String nome, String[] etichette) {
+
+        testo.append(nome);
+
+        if (etichette.length == 0) {
+            return;
+        }
+
+        testo.append('{');
+
+        for (int i = 0; i + 1 < etichette.length; i += 2) {
+
+            if (i > 0) {
+                testo.append(',');
+            }
+
+            testo.append(etichette[i]).append("=\"");
+
+            String v = etichette[i + 1];
+
+            for (int j = 0; j < v.length(); j++) {
+
+                char c = v.charAt(j);
+
+                switch (c) {
+                    case '\\' -> testo.append("\\\\");
+                    case '"' -> testo.append("\\\"");
+                    case '\n' -> testo.append("\\n");
+                    default -> testo.append(c);
+                }
+            }
+
+            testo.append('"');
+        }
+
+        testo.append('}');
+    }
+}
@@ -0,0 +1 @@
+package metriche;
\ No newline at end of file
@@ -8,4 +8,6 @@ module TakeAway {
 	requires java.sql;
 	requires mysql.connector.j;
 	requires jdk.httpserver;
+	requires java.desktop;
+	requires java.management;
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import dominio.GestoreOrdini;
+import dominio.StatoOrdine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * ============================================================
+ * HANDLER ATTESA STATO ORDINE (LONG-POLL)
+ * ============================================================
+ *
+ * Rotta "/ordine/stato/attesa?codice=ORD-12&stato=RICEVUTO":
+ * risponde solo quando lo stato dell'ordine diventa diverso
+ * da quello indicato, oppure allo scadere dell'attesa.
+ *
+ * Risposte:
+ * - 200 {"codice":"ORD-12","stato":"IN_PREPARAZIONE"}
+ * - 204 nessun cambiamento entro l'attesa (il browser
+ *   ripete subito la richiesta)
+ * - 404 ordine inesistente
+ * - 503 troppi clienti in attesa
+ *
+ * L'handler registra l'attesa e termina subito: la risposta
+ * viene inviata più tardi, quando il cambio di stato viene
+ * pubblicato dal GestoreOrdini. Un cliente in attesa non
+ * occupa alcun thread né interroga il database.
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.stato.attesaMs → attesa massima di una richiesta
+ *                             (default 25 secondi)
+ */
+public class AttesaStatoOrdineHandler implements HttpHandler {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final long ATTESA_MS =
+            Long.getLong("takeaway.stato.attesaMs", 25_000);
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final GestoreOrdini gestoreOrdini;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param gestoreOrdini gestore ordini
+     */
+    public AttesaStatoOrdineHandler(GestoreOrdini gestoreOrdini) {
+        this.gestoreOrdini = gestoreOrdini;
+    }
+
+    // ====================================================
+    // METODO HANDLE
+    // ====================================================
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        // ------------------------------------------------
+        // PARAMETRI: codice e stato già noto al cliente
+        // ------------------------------------------------
+        String codice = null;
+        StatoOrdine statoNoto = null;
+
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (query != null) {
+            for (String p : query.split("&")) {
+
+                String[] coppia = p.split("=", 2);
+
+                if (coppia.length != 2) {
+                    continue;
+                }
+
+                String valore = URLDecoder.decode(coppia[1], StandardCharsets.UTF_8);
+
+                if (coppia[0].equals("codice")) {
+                    codice = valore;
+                } else if (coppia[0].equals("stato")) {
+                    try {
+                        statoNoto = StatoOrdine.valueOf(valore);
+                    } catch (IllegalArgumentException e) {
+                        // Stato sconosciuto: risposta immediata
+                    }
+                }
+            }
+        }
+
+        if (codice == null || codice.isEmpty()) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+
+        // ------------------------------------------------
+        // REGISTRAZIONE DELL'ATTESA
+        // ------------------------------------------------
+        CompletableFuture<StatoOrdine> attesa =
+                gestoreOrdini.attendiCambioStato(codice, statoNoto);
+
+        if (attesa == null) {
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        final String codiceOrdine = codice;
+
+        // La risposta viene scritta da un thread del pool comune,
+        // non da quello che ha pubblicato il cambio di stato
+        attesa.orTimeout(ATTESA_MS, TimeUnit.MILLISECONDS)
+              .whenCompleteAsync((stato, errore) ->
+                      rispondi(exchange, codiceOrdine, stato, errore));
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Completa la richiesta rimasta in attesa.
+     */
+    private void rispondi(
+            HttpExchange exchange,
+            String codice,
+            StatoOrdine stato,
+            Throwable errore
+    ) {
+        try {
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+
+            if (errore != null) {
+                // Attesa scaduta: nessun cambiamento
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+
+            if (stato == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            StringBuilder json = new StringBuilder(64);
+            json.append("{\"codice\":");
+            TestoJson.appendiStringa(json, codice);
+            json.append(",\"stato\":\"").append(stato.name()).append("\"}");
+
+            byte[] risposta = json.toString().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders()
+                    .set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, risposta.length);
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(risposta);
+            }
+
+        } catch (IOException e) {
+            // Il cliente ha chiuso la pagina nel frattempo
+
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import dominio.Carrello;
+import dominio.CatalogoProdotti;
+import dominio.ContenutoCarrello;
+import dominio.GestoreCarrelli;
+import dominio.Prodotto;
+import dominio.RigaCarrello;
+import html.FormatoPrezzo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * ============================================================
+ * HANDLER API CARRELLO
+ * ============================================================
+ *
+ * Versione "leggera" del CarrelloHandler usata dal
+ * JavaScript del menu: modifica il carrello e risponde con
+ * un piccolo JSON invece di ridirigere alla pagina del menu.
+ *
+ * Rotte (contesto "/carrello/api"):
+ * - POST /carrello/api/aggiungi?id=ID         → +1 pezzo
+ * - POST /carrello/api/rimuovi?id=ID          → -1 pezzo
+ * - POST /carrello/api/quantita?id=ID&q=N     → quantità N (0 rimuove)
+ * - GET  /carrello/api/riepilogo              → contenuto del carrello
+ *
+ * I parametri possono arrivare nella query string oppure
+ * nel body (x-www-form-urlencoded).
+ *
+ * Risposta (sempre lo stato aggiornato del carrello):
+ * {"righe":[{"id":"..","nome":"..","quantita":2,
+ *  "totaleCentesimi":900,"totale":"9,00"}, ...],
+ *  "pezzi":3,"totaleCentesimi":1350,"totale":"13,50"}
+ *
+ * Il link tradizionale "/carrello?add=ID" resta disponibile
+ * per i browser senza JavaScript.
+ */
+public class CarrelloApiHandler implements HttpHandler {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Carrelli dei clienti, uno per sessione.
+     */
+    private GestoreCarrelli gestoreCarrelli;
+
+    /**
+     * Catalogo usato per risolvere gli id dei prodotti.
+     */
+    private CatalogoProdotti catalogoProdotti;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param gestoreCarrelli  carrelli dei clienti
+     * @param catalogoProdotti catalogo prodotti
+     */
+    public CarrelloApiHandler(GestoreCarrelli gestoreCarrelli, CatalogoProdotti catalogoProdotti) {
+        this.gestoreCarrelli = gestoreCarrelli;
+        this.catalogoProdotti = catalogoProdotti;
+    }
+
+    // ====================================================
+    // METODO HANDLE
+    // ====================================================
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+        String metodo = exchange.getRequestMethod();
+
+        // Azione = ultima parte del percorso
+        String percorso = exchange.getRequestURI().getPath();
+        String azione = percorso.substring(percorso.lastIndexOf('/') + 1);
+
+        // ====================================================
+        // RIEPILOGO (GET)
+        // ====================================================
+
+        if (azione.equals("riepilogo")) {
+
+            if (!metodo.equalsIgnoreCase("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // Senza sessione si risponde con un carrello vuoto
+            // (nessun cookie viene creato per una semplice lettura)
+            inviaRiepilogo(exchange, CookieCarrello.trova(exchange, gestoreCarrelli));
+            return;
+        }
+
+        // ====================================================
+        // MODIFICHE (POST)
+        // ====================================================
+
+        if (!metodo.equalsIgnoreCase("POST")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        Map<String, String> parametri = leggiParametri(exchange);
+        String prodottoId = parametri.get("id");
+
+        if (prodottoId == null || prodottoId.isEmpty()) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+
+        Prodotto prodotto = catalogoProdotti.getProdottoById(prodottoId);
+
+        if (prodotto == null) {
+            // Prodotto inesistente
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        Carrello carrello;
+
+        switch (azione) {
+            case "aggiungi":
+                carrello = CookieCarrello.trovaOCrea(exchange, gestoreCarrelli);
+                carrello.aggiungiProdotto(prodotto);
+                break;
+
+            case "rimuovi":
+                carrello = CookieCarrello.trova(exchange, gestoreCarrelli);
+
+                if (carrello != null) {
+                    carrello.diminuisciProdotto(prodotto.getId());
+                }
+                break;
+
+            case "quantita":
+                int quantita;
+
+                try {
+                    quantita = Integer.parseInt(parametri.getOrDefault("q", ""));
+                } catch (NumberFormatException e) {
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+
+                if (quantita < 0 || quantita > 99) {
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+
+                carrello = quantita > 0
+                        ? CookieCarrello.trovaOCrea(exchange, gestoreCarrelli)
+                        : CookieCarrello.trova(exchange, gestoreCarrelli);
+
+                if (carrello != null) {
+                    carrello.impostaQuantita(prodotto, quantita);
+                }
+                break;
+
+            default:
+                exchange.sendResponseHeaders(404, -1);
+                return;
+        }
+
+        inviaRiepilogo(exchange, carrello);
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Invia lo stato del carrello in formato JSON.
+     *
+     * @param exchange richiesta HTTP
+     * @param carrello carrello del cliente (null = vuoto)
+     */
+    private void inviaRiepilogo(HttpExchange exchange, Carrello carrello)
+            throws IOException {
+
+        // Righe, totale e pezzi letti insieme dal carrello
+        ContenutoCarrello contenuto = carrello != null
+                ? carrello.getContenuto()
+                : new ContenutoCarrello(List.of(), 0, 0);
+
+        List<RigaCarrello> righe = contenuto.getRighe();
+
+        StringBuilder json = new StringBuilder(64 + righe.size() * 80);
+        json.append("{\"righe\":[");
+
+        for (int i = 0; i < righe.size(); i++) {
+
+            RigaCarrello riga = righe.get(i);
+
+            if (i > 0) {
+                json.append(',');
+            }
+
+            json.append("{\"id\":");
+            TestoJson.appendiStringa(json, riga.getProdotto().getId());
+            json.append(",\"nome\":");
+            TestoJson.appendiStringa(json, riga.getProdotto().getNome());
+            json.append(",\"quantita\":").append(riga.getQuantita());
+            json.append(",\"totaleCentesimi\":").append(riga.getTotaleCentesimi());
+            json.append(",\"totale\":\"");
+            FormatoPrezzo.appendi(json, riga.getTotaleCentesimi()).append('"');
+            json.append('}');
+        }
+
+        json.append("],\"pezzi\":").append(contenuto.getPezzi());
+        json.append(",\"totaleCentesimi\":").append(contenuto.getTotaleCentesimi());
+        json.append(",\"totale\":\"");
+        FormatoPrezzo.appendi(json, contenuto.getTotaleCentesimi()).append('"');
+        json.append('}');
+
+        byte[] risposta = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders()
+                .set("Content-Type", "application/json; charset=UTF-8");
+
+        // Stato personale del cliente: mai in cache
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, risposta.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(risposta);
+        }
+    }
+
+    /**
+     * Legge i parametri da query string e body
+     * (i valori del body prevalgono).
+     */
+    private Map<String, String> leggiParametri(HttpExchange exchange)
+            throws IOException {
+
+        Map<String, String> parametri = new HashMap<>();
+
+        aggiungiParametri(parametri, exchange.getRequestURI().getRawQuery());
+        aggiungiParametri(parametri, new String(
+                exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+
+        return parametri;
+    }
+
+    private void aggiungiParametri(Map<String, String> parametri, String testo) {
+
+        if (testo == null || testo.isEmpty()) {
+            return;
+        }
+
+        for (String p : testo.split("&")) {
+
+            String[] coppia = p.split("=", 2);
+
+            if (coppia.length == 2) {
+                parametri.put(
+                        coppia[0],
+                        URLDecoder.decode(coppia[1], StandardCharsets.UTF_8)
+                );
+            }
+        }
+    }
+}
@@ -5,13 +5,17 @@ import com.sun.net.httpserver.HttpHandler;
 
 import dominio.Carrello;
 import dominio.CatalogoProdotti;
+import dominio.ContenutoCarrello;
+import dominio.GestoreCarrelli;
 import dominio.Prodotto;
 import dominio.RigaCarrello;
 import html.CarrelloHtml;
+import html.FormatoPrezzo;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 
 /**
  * ============================================================
@@ -23,6 +27,10 @@ import java.nio.charset.StandardCharsets;
  * - visualizzazione del contenuto del carrello
  *
  * Questo handler risponde sia a richieste GET che POST.
+ *
+ * Il carrello del cliente è individuato dal cookie di
+ * sessione (vedi CookieCarrello) e viene creato alla
+ * prima aggiunta di un prodotto.
  */
 public class CarrelloHandler implements HttpHandler {
 
@@ -31,9 +39,9 @@ public class CarrelloHandler implements HttpHandler {
     // ====================================================
 
     /**
-     * Carrello associato alla sessione corrente.
+     * Carrelli dei clienti, uno per sessione.
      */
-    private Carrello carrello;
+    private GestoreCarrelli gestoreCarrelli;
 
     /**
      * Catalogo prodotti utilizzato per recuperare
@@ -48,11 +56,11 @@ public class CarrelloHandler implements HttpHandler {
     /**
      * Costruttore del CarrelloHandler.
      *
-     * @param carrello         carrello condiviso
+     * @param gestoreCarrelli  carrelli dei clienti
      * @param catalogoProdotti catalogo prodotti
      */
-    public CarrelloHandler(Carrello carrello, CatalogoProdotti catalogoProdotti) {
-        this.carrello = carrello;
+    public CarrelloHandler(GestoreCarrelli gestoreCarrelli, CatalogoProdotti catalogoProdotti) {
+        this.gestoreCarrelli = gestoreCarrelli;
         this.catalogoProdotti = catalogoProdotti;
     }
 
@@ -85,12 +93,12 @@ public class CarrelloHandler implements HttpHandler {
 
             String prodottoId = query.substring(4);
 
-            // Ricerca del prodotto nel catalogo
-            for (Prodotto p : catalogoProdotti.getTuttiProdotti()) {
-                if (p.getId().equals(prodottoId)) {
-                    carrello.aggiungiProdotto(p);
-                    break;
-                }
+            // Ricerca diretta del prodotto nell'indice del catalogo
+            Prodotto prodotto = catalogoProdotti.getProdottoById(prodottoId);
+
+            if (prodotto != null) {
+                CookieCarrello.trovaOCrea(exchange, gestoreCarrelli)
+                        .aggiungiProdotto(prodotto);
             }
 
             // Redirect al menu principale
@@ -103,13 +111,25 @@ public class CarrelloHandler implements HttpHandler {
         // COSTRUZIONE PAGINA HTML CARRELLO
         // ====================================================
 
+        // Senza sessione il carrello è semplicemente vuoto
+        Carrello carrello = CookieCarrello.trova(exchange, gestoreCarrelli);
+
+        if (carrello == null) {
+            carrello = new Carrello(null);
+        }
+
+        // Righe e totale letti insieme dal carrello
+        // (il totale è già mantenuto a ogni modifica)
+        ContenutoCarrello contenuto = carrello.getContenuto();
+
         StringBuilder html = new StringBuilder();
 
         // PARTE 1 — intestazione e apertura tabella
         html.append(CarrelloHtml.CARRELLO_PARTE_1);
 
         // PARTE DINAMICA — righe del carrello
-        for (RigaCarrello riga : carrello.getRighe()) {
+        for (RigaCarrello riga : contenuto.getRighe()) {
+
             html.append("<tr>")
                 .append("<td>")
                 .append(riga.getProdotto().getNome())
@@ -117,9 +137,10 @@ public class CarrelloHandler implements HttpHandler {
                 .append("<td>")
                 .append(riga.getQuantita())
                 .append("</td>")
-                .append("<td>")
-                .append(riga.getTotale())
-                .append(" €</td>")
+                .append("<td>");
+
+            FormatoPrezzo.appendiEuro(html, riga.getTotaleCentesimi())
+                .append("</td>")
                 .append("</tr>");
         }
 
@@ -127,10 +148,11 @@ public class CarrelloHandler implements HttpHandler {
         html.append(CarrelloHtml.CARRELLO_PARTE_2);
 
         // INSERIMENTO TOTALE DINAMICO
-        html.append(carrello.getTotale()).append(" €");
+        FormatoPrezzo.appendiEuro(html, contenuto.getTotaleCentesimi());
 
-        // PARTE 3 — chiusura pagina
-        html.append(CarrelloHtml.CARRELLO_PARTE_3);
+        // PARTE 3 — form con una nuova chiave di idempotenza
+        // e chiusura pagina
+        html.append(CarrelloHtml.CARRELLO_PARTE_3.formatted(UUID.randomUUID()));
 
         // ====================================================
         // INVIO RISPOSTA HTTP
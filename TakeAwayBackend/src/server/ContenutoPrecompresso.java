@@ -0,0 +1,139 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * ============================================================
+ * CLASSE CONTENUTO PRECOMPRESSO
+ * ============================================================
+ *
+ * Risposta che non cambia tra una richiesta e l'altra,
+ * preparata una sola volta in tre versioni:
+ * - identità (non compressa)
+ * - gzip
+ * - deflate
+ *
+ * A ogni richiesta viene scelta la versione adatta
+ * all'header Accept-Encoding e inviata con la sua
+ * lunghezza: non si comprime nulla durante la richiesta.
+ *
+ * Poiché imposta Content-Encoding, la risposta viene
+ * lasciata invariata da FiltroCompressione.
+ */
+public class ContenutoPrecompresso {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final String tipo;
+
+    private final byte[] identita;
+
+    private final byte[] gzip;
+
+    private final byte[] deflate;
+
+    // ====================================================
+    // COSTRUTTORI
+    // ====================================================
+
+    /**
+     * @param testo contenuto testuale (codificato in UTF-8)
+     * @param tipo  valore di Content-Type
+     */
+    public ContenutoPrecompresso(String testo, String tipo) {
+        this(testo.getBytes(StandardCharsets.UTF_8), tipo);
+    }
+
+    /**
+     * @param dati contenuto già codificato
+     * @param tipo valore di Content-Type
+     */
+    public ContenutoPrecompresso(byte[] dati, String tipo) {
+        this.tipo = tipo;
+        this.identita = dati;
+        this.gzip = comprimi(dati, true);
+        this.deflate = comprimi(dati, false);
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Invia il contenuto nella codifica accettata dal client.
+     * Gli header aggiuntivi (ETag, Cache-Control) vanno
+     * impostati dal chiamante prima dell'invio.
+     *
+     * @param exchange richiesta HTTP
+     * @param codice   codice di stato HTTP
+     * @throws IOException in caso di errore I/O
+     */
+    public void invia(HttpExchange exchange, int codice) throws IOException {
+
+        String codifica = FiltroCompressione.scegliCodifica(exchange.getRequestHeaders());
+
+        byte[] corpo = identita;
+
+        if ("gzip".equals(codifica)) {
+            corpo = gzip;
+        } else if ("deflate".equals(codifica)) {
+            corpo = deflate;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", tipo);
+        exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+
+        if (corpo != identita) {
+            exchange.getResponseHeaders().set("Content-Encoding", codifica);
+        }
+
+        exchange.sendResponseHeaders(codice, corpo.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(corpo);
+        }
+    }
+
+    /**
+     * @return dimensione del contenuto non compresso in byte
+     */
+    public int getDimensione() {
+        return identita.length;
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Comprime i dati in memoria con la massima compressione
+     * disponibile nel formato richiesto.
+     */
+    private static byte[] comprimi(byte[] dati, boolean formatoGzip) {
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(dati.length / 4 + 64);
+
+        try (OutputStream out = formatoGzip
+                ? new GZIPOutputStream(buffer)
+                : new DeflaterOutputStream(buffer)) {
+
+            out.write(dati);
+
+        } catch (IOException e) {
+            // Non si verifica scrivendo in memoria
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toByteArray();
+    }
+}
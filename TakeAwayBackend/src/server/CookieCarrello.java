@@ -0,0 +1,103 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import dominio.Carrello;
+import dominio.GestoreCarrelli;
+
+import java.util.List;
+
+/*
+ * ============================================================
+ * CLASSE COOKIE CARRELLO
+ * ============================================================
+ *
+ * Collega una richiesta HTTP al carrello del cliente
+ * tramite il cookie "carrello".
+ *
+ * Il cookie contiene solo l'id della sessione:
+ * il contenuto del carrello resta sul server.
+ */
+public final class CookieCarrello {
+
+    /**
+     * Nome del cookie di sessione.
+     */
+    private static final String NOME = "carrello";
+
+    private CookieCarrello() {
+    }
+
+    // ====================================================
+    // METODI PUBBLICI
+    // ====================================================
+
+    /**
+     * Restituisce il carrello associato alla richiesta.
+     *
+     * @param exchange richiesta HTTP
+     * @param gestore  gestore dei carrelli
+     * @return carrello oppure null se il cliente non ne ha uno
+     */
+    public static Carrello trova(HttpExchange exchange, GestoreCarrelli gestore) {
+        return gestore.trova(leggiId(exchange));
+    }
+
+    /**
+     * Restituisce il carrello associato alla richiesta,
+     * creandone uno nuovo (e impostando il cookie) se manca.
+     * Va chiamato prima di sendResponseHeaders.
+     *
+     * @param exchange richiesta HTTP
+     * @param gestore  gestore dei carrelli
+     * @return carrello del cliente
+     */
+    public static Carrello trovaOCrea(HttpExchange exchange, GestoreCarrelli gestore) {
+
+        Carrello carrello = trova(exchange, gestore);
+
+        if (carrello != null) {
+            return carrello;
+        }
+
+        carrello = gestore.crea();
+
+        exchange.getResponseHeaders().add(
+                "Set-Cookie",
+                NOME + "=" + carrello.getId() + "; Path=/; HttpOnly; SameSite=Lax"
+        );
+
+        return carrello;
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Legge l'id della sessione dall'header Cookie.
+     *
+     * @return id oppure null se il cookie non è presente
+     */
+    private static String leggiId(HttpExchange exchange) {
+
+        List<String> headers = exchange.getRequestHeaders().get("Cookie");
+
+        if (headers == null) {
+            return null;
+        }
+
+        for (String header : headers) {
+            for (String cookie : header.split(";")) {
+
+                String c = cookie.trim();
+
+                if (c.startsWith(NOME + "=")) {
+                    return c.substring(NOME.length() + 1);
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -3,16 +3,26 @@ package server;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
+import dominio.FiltroOrdini;
 import dominio.GestoreOrdini;
 import dominio.Ordine;
+import dominio.PaginaOrdini;
+import dominio.RigaOrdine;
 import dominio.SessioneStaff;
 import dominio.StatoOrdine;
 import html.DashboardStaffHtml;
+import html.FormatoPrezzo;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /*
  * ============================================================
@@ -24,14 +34,53 @@ import java.util.List;
  * Funzionalità:
  * - verifica autenticazione staff
  * - visualizzazione lista ordini
- * - cambio stato ordini
+ * - cambio stato ordini, singolo o di gruppo
+ *
+ * Il cambio di stato di gruppo ("avanza") porta al passo
+ * successivo tutti gli ordini di uno stato, ad esempio
+ * tutti i RICEVUTO in IN_PREPARAZIONE nei momenti di punta.
+ * Il pulsante compare quando la lista è filtrata su uno
+ * stato che ha un successivo. L'avanzamento richiede una
+ * POST (form con conferma): un GET con "avanza" riceve 405,
+ * così un prefetch, un crawler o un link esterno non
+ * possono modificare gli ordini.
  *
  * Ogni ordine è rappresentato da UNA SOLA riga.
  * Le note (se presenti) vengono mostrate in modo compatto
  * sotto il nome del cliente.
+ *
+ * Per ogni ordine vengono mostrati i prodotti da preparare:
+ * le righe di tutti gli ordini della pagina sono lette con
+ * una sola query (nessuna query per singolo ordine).
+ *
+ * Gli ordini sono mostrati a pagine, dal più recente, con
+ * filtri su stato e intervallo di giorni (parametri
+ * "filtro", "dal", "al"). Il parametro "dopo" è il cursore
+ * della pagina: il link "Ordini meno recenti" lo imposta
+ * all'ultimo ordine mostrato.
+ *
+ * La pagina resta aggiornata senza ricaricarla: lo script
+ * della dashboard riceve gli eventi da "/staff/eventi"
+ * (EventiStaffHandler) e aggiorna stato e pulsanti delle
+ * righe, segnalando i nuovi ordini.
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.dashboard.pagina → ordini per pagina
+ *                               (default 50, massimo 128)
  */
 public class DashboardStaffHandler implements HttpHandler {
 
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Ordini per pagina: fino a 128 le righe della pagina
+     * vengono lette con un'unica query.
+     */
+    private static final int DIMENSIONE_PAGINA = Math.max(1, Math.min(128,
+            Integer.getInteger("takeaway.dashboard.pagina", 50)));
+
     // ====================================================
     // ATTRIBUTI
     // ====================================================
@@ -63,7 +112,15 @@ public class DashboardStaffHandler implements HttpHandler {
         }
 
         // ------------------------------------------------
-        // SOLO GET
+        // POST: AVANZAMENTO DI GRUPPO
+        // ------------------------------------------------
+        if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+            gestisciAvanzamento(exchange);
+            return;
+        }
+
+        // ------------------------------------------------
+        // ALTRIMENTI SOLO GET
         // ------------------------------------------------
         if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
             exchange.sendResponseHeaders(405, -1);
@@ -71,41 +128,66 @@ public class DashboardStaffHandler implements HttpHandler {
         }
 
         // ------------------------------------------------
-        // CAMBIO STATO ORDINE (?stato=...&id=...)
+        // PARAMETRI DELLA QUERY STRING
         // ------------------------------------------------
-        String query = exchange.getRequestURI().getQuery();
+        String query = exchange.getRequestURI().getRawQuery();
+        Map<String, String> parametri = leggiParametri(query);
+
+        // Avanzamento di gruppo solo con POST
+        if (parametri.containsKey("avanza")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
 
-        if (query != null) {
+        // ------------------------------------------------
+        // CAMBIO STATO ORDINE (?stato=...&id=...)
+        // ------------------------------------------------
+        String nuovoStato = parametri.get("stato");
+        String ordineId = parametri.get("id");
 
-            String[] parametri = query.split("&");
-            String nuovoStato = null;
-            Integer ordineId = null;
+        if (nuovoStato != null && ordineId != null) {
 
-            for (String p : parametri) {
-                if (p.startsWith("stato=")) {
-                    nuovoStato = p.substring(6);
-                } else if (p.startsWith("id=")) {
-                    ordineId = Integer.parseInt(p.substring(3));
-                }
-            }
+            boolean aggiornato;
 
-            if (nuovoStato != null && ordineId != null) {
-                gestoreOrdini.aggiornaStatoOrdine(
-                        ordineId,
+            try {
+                aggiornato = gestoreOrdini.aggiornaStatoOrdine(
+                        Integer.parseInt(ordineId),
                         StatoOrdine.valueOf(nuovoStato)
                 );
-
-                exchange.getResponseHeaders()
-                        .add("Location", "/staff/dashboard?ok=true");
-                exchange.sendResponseHeaders(302, -1);
+            } catch (IllegalArgumentException e) {
+                // Id o stato non validi
+                exchange.sendResponseHeaders(400, -1);
                 return;
             }
+
+            // Transizione rifiutata: tipicamente l'ordine è già
+            // stato aggiornato da un altro operatore
+            exchange.getResponseHeaders().add("Location", aggiornato
+                    ? "/staff/dashboard?ok=true"
+                    : "/staff/dashboard?conflitto=true");
+            exchange.sendResponseHeaders(302, -1);
+            return;
         }
 
         // ------------------------------------------------
-        // CARICAMENTO ORDINI
+        // FILTRI E CARICAMENTO PAGINA DI ORDINI
         // ------------------------------------------------
-        List<Ordine> ordini = gestoreOrdini.getTuttiOrdini();
+        FiltroOrdini filtro = new FiltroOrdini(
+                leggiStato(parametri.get("filtro")),
+                leggiData(parametri.get("dal")),
+                leggiData(parametri.get("al"))
+        );
+
+        PaginaOrdini pagina = gestoreOrdini.getPaginaOrdini(
+                filtro.dopo(parametri.get("dopo")),
+                DIMENSIONE_PAGINA
+        );
+
+        List<Ordine> ordini = pagina.getOrdini();
+
+        // Righe di tutti gli ordini mostrati, in un'unica lettura
+        Map<Integer, List<RigaOrdine>> righePerOrdine =
+                gestoreOrdini.getRighePerOrdini(ordini);
 
         // ------------------------------------------------
         // COSTRUZIONE HTML
@@ -114,7 +196,18 @@ public class DashboardStaffHandler implements HttpHandler {
 
         html.append(DashboardStaffHtml.DASHBOARD_PARTE_1);
 
-        if (query != null && query.contains("ok=true")) {
+        // Ordini confermati ai clienti ma non ancora nel database
+        // (registrazione asincrona): compariranno a breve
+        int inAttesa = gestoreOrdini.getOrdiniInAttesa();
+
+        if (inAttesa > 0) {
+            html.append("<div class=\"alert alert-info text-center mb-4\">")
+                .append(inAttesa)
+                .append(" ordini in fase di registrazione")
+                .append("</div>");
+        }
+
+        if (parametri.containsKey("ok")) {
             html.append("""
                 <div class="alert alert-success text-center fw-bold mb-4">
                     Stato ordine aggiornato correttamente
@@ -122,12 +215,45 @@ public class DashboardStaffHandler implements HttpHandler {
             """);
         }
 
+        if (parametri.containsKey("conflitto")) {
+            html.append("""
+                <div class="alert alert-warning text-center fw-bold mb-4">
+                    Stato non aggiornato: l'ordine era già stato modificato
+                </div>
+            """);
+        }
+
+        // Solo cifre: il valore viene riportato nella pagina
+        String avanzati = parametri.get("avanzati");
+
+        if (avanzati != null && avanzati.matches("\\d{1,9}")) {
+            html.append("<div class=\"alert alert-success text-center fw-bold mb-4\">")
+                .append(avanzati)
+                .append(" ordini avanzati allo stato successivo")
+                .append("</div>");
+        }
+
+        if (parametri.containsKey("errore")) {
+            html.append("""
+                <div class="alert alert-danger text-center fw-bold mb-4">
+                    Avanzamento non riuscito: nessun ordine modificato
+                </div>
+            """);
+        }
+
+        appendiFiltri(html, filtro);
+
+        html.append(DashboardStaffHtml.DASHBOARD_TABELLA);
+
         // ------------------------------------------------
         // RIGHE ORDINI
         // ------------------------------------------------
         for (Ordine ordine : ordini) {
 
-            html.append("<tr>");
+            // Riferimento usato dagli aggiornamenti in tempo reale
+            html.append("<tr data-ordine=\"")
+                .append(ordine.getId())
+                .append("\">");
 
             // -------------------------------
             // CODICE
@@ -158,12 +284,27 @@ public class DashboardStaffHandler implements HttpHandler {
 
             html.append("</td>");
 
+            // -------------------------------
+            // PRODOTTI DA PREPARARE
+            // -------------------------------
+            html.append("<td><ul class=\"list-unstyled mb-0 small\">");
+
+            for (RigaOrdine riga : righePerOrdine.getOrDefault(ordine.getId(), List.of())) {
+                html.append("<li><b>")
+                    .append(riga.getQuantita())
+                    .append("×</b> ")
+                    .append(riga.getNomeProdotto())
+                    .append("</li>");
+            }
+
+            html.append("</ul></td>");
+
             // -------------------------------
             // TOTALE
             // -------------------------------
-            html.append("<td>")
-                .append(ordine.getTotale())
-                .append(" €</td>");
+            html.append("<td>");
+            FormatoPrezzo.appendiEuro(html, ordine.getTotaleCentesimi())
+                .append("</td>");
 
             // -------------------------------
             // STATO (BADGE)
@@ -176,7 +317,7 @@ public class DashboardStaffHandler implements HttpHandler {
             };
 
             html.append("<td>")
-                .append("<span class=\"badge ")
+                .append("<span data-badge class=\"badge ")
                 .append(badgeClass)
                 .append("\">")
                 .append(ordine.getStato().name())
@@ -186,7 +327,7 @@ public class DashboardStaffHandler implements HttpHandler {
             // -------------------------------
             // AZIONI
             // -------------------------------
-            html.append("<td>");
+            html.append("<td data-azioni>");
 
             StatoOrdine statoAttuale = ordine.getStato();
             StatoOrdine prossimoStato = statoAttuale.getProssimoStato();
@@ -231,6 +372,10 @@ public class DashboardStaffHandler implements HttpHandler {
 
         html.append(DashboardStaffHtml.DASHBOARD_PARTE_2);
 
+        appendiPaginazione(html, filtro, pagina);
+
+        html.append(DashboardStaffHtml.DASHBOARD_PARTE_3);
+
         // ------------------------------------------------
         // RISPOSTA HTTP
         // ------------------------------------------------
@@ -244,4 +389,212 @@ public class DashboardStaffHandler implements HttpHandler {
         os.write(risposta);
         os.close();
     }
+
+    // ====================================================
+    // AVANZAMENTO DI GRUPPO (POST avanza=STATO)
+    // ====================================================
+
+    /**
+     * Porta allo stato successivo tutti gli ordini dello
+     * stato indicato nel corpo della richiesta, poi torna
+     * alla lista filtrata (303: il reload non ripete la POST).
+     */
+    private void gestisciAvanzamento(HttpExchange exchange) throws IOException {
+
+        String corpo = new String(
+                exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+        StatoOrdine daAvanzare = leggiStato(leggiParametri(corpo).get("avanza"));
+
+        if (daAvanzare == null || daAvanzare.getProssimoStato() == null) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+
+        int avanzati = gestoreOrdini.avanzaOrdini(daAvanzare);
+
+        exchange.getResponseHeaders().add("Location", avanzati >= 0
+                ? "/staff/dashboard?filtro=" + daAvanzare.name() + "&avanzati=" + avanzati
+                : "/staff/dashboard?filtro=" + daAvanzare.name() + "&errore=true");
+        exchange.sendResponseHeaders(303, -1);
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Form dei filtri (stato e intervallo di giorni).
+     */
+    private void appendiFiltri(StringBuilder html, FiltroOrdini filtro) {
+
+        html.append("<form class=\"row g-2 align-items-end mb-3\" method=\"get\">")
+            .append("<div class=\"col-auto\">")
+            .append("<label class=\"form-label small\">Stato</label>")
+            .append("<select name=\"filtro\" class=\"form-select form-select-sm\">")
+            .append("<option value=\"\">Tutti</option>");
+
+        for (StatoOrdine stato : StatoOrdine.values()) {
+            html.append("<option value=\"")
+                .append(stato.name())
+                .append(stato == filtro.getStato() ? "\" selected>" : "\">")
+                .append(stato.name())
+                .append("</option>");
+        }
+
+        html.append("</select></div>");
+
+        appendiCampoData(html, "dal", "Dal", filtro.getDal());
+        appendiCampoData(html, "al", "Al", filtro.getAl());
+
+        html.append("<div class=\"col-auto\">")
+            .append("<button class=\"btn btn-sm btn-dark\">Filtra</button> ")
+            .append("<a class=\"btn btn-sm btn-outline-secondary\" href=\"/staff/dashboard\">Azzera</a>")
+            .append("</div>");
+
+        html.append("</form>");
+
+        // Avanzamento di gruppo dello stato filtrato:
+        // form separato (POST), non annidabile nei filtri
+        StatoOrdine stato = filtro.getStato();
+
+        if (stato != null && stato.getProssimoStato() != null) {
+            html.append("<form class=\"text-end mb-3\" method=\"post\" action=\"/staff/dashboard\"")
+                .append(" onsubmit=\"return confirm('Avanzare tutti gli ordini ")
+                .append(stato.name())
+                .append("?')\">")
+                .append("<input type=\"hidden\" name=\"avanza\" value=\"")
+                .append(stato.name())
+                .append("\">")
+                .append("<button class=\"btn btn-sm btn-primary\">Tutti i ")
+                .append(stato.name())
+                .append(" → ")
+                .append(stato.getProssimoStato().name())
+                .append("</button></form>");
+        }
+    }
+
+    private void appendiCampoData(
+            StringBuilder html,
+            String nome,
+            String etichetta,
+            LocalDate valore
+    ) {
+        html.append("<div class=\"col-auto\">")
+            .append("<label class=\"form-label small\">")
+            .append(etichetta)
+            .append("</label>")
+            .append("<input type=\"date\" class=\"form-control form-control-sm\" name=\"")
+            .append(nome)
+            .append("\" value=\"")
+            .append(valore != null ? valore.toString() : "")
+            .append("\"></div>");
+    }
+
+    /**
+     * Link alla prima pagina e alla pagina successiva,
+     * con gli stessi filtri.
+     */
+    private void appendiPaginazione(
+            StringBuilder html,
+            FiltroOrdini filtro,
+            PaginaOrdini pagina
+    ) {
+        html.append("<div class=\"d-flex justify-content-between mb-4\">");
+
+        html.append("<a class=\"btn btn-sm btn-outline-dark\" href=\"");
+        appendiUrl(html, filtro, null);
+        html.append("\">Più recenti</a>");
+
+        if (pagina.getSuccessiva() != null) {
+            html.append("<a class=\"btn btn-sm btn-dark\" href=\"");
+            appendiUrl(html, filtro, pagina.getSuccessiva().getCursore());
+            html.append("\">Ordini meno recenti →</a>");
+        }
+
+        html.append("</div>");
+    }
+
+    /**
+     * URL della dashboard con i filtri e il cursore indicati.
+     */
+    private void appendiUrl(StringBuilder html, FiltroOrdini filtro, String cursore) {
+
+        html.append("/staff/dashboard?filtro=");
+
+        if (filtro.getStato() != null) {
+            html.append(filtro.getStato().name());
+        }
+
+        if (filtro.getDal() != null) {
+            html.append("&amp;dal=").append(filtro.getDal());
+        }
+
+        if (filtro.getAl() != null) {
+            html.append("&amp;al=").append(filtro.getAl());
+        }
+
+        if (cursore != null) {
+            html.append("&amp;dopo=")
+                .append(URLEncoder.encode(cursore, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Legge i parametri della query string.
+     */
+    private Map<String, String> leggiParametri(String query) {
+
+        Map<String, String> parametri = new HashMap<>();
+
+        if (query == null || query.isEmpty()) {
+            return parametri;
+        }
+
+        for (String p : query.split("&")) {
+
+            String[] coppia = p.split("=", 2);
+
+            parametri.put(
+                    coppia[0],
+                    coppia.length == 2
+                            ? URLDecoder.decode(coppia[1], StandardCharsets.UTF_8)
+                            : ""
+            );
+        }
+
+        return parametri;
+    }
+
+    /**
+     * Stato del filtro, null se assente o non valido.
+     */
+    private StatoOrdine leggiStato(String valore) {
+
+        if (valore == null || valore.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return StatoOrdine.valueOf(valore);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Giorno del filtro (aaaa-mm-gg), null se assente o non valido.
+     */
+    private LocalDate leggiData(String valore) {
+
+        if (valore == null || valore.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return LocalDate.parse(valore);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import dominio.BusEventiOrdine;
+import dominio.EventoOrdine;
+import dominio.SessioneStaff;
+import html.FormatoPrezzo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+
+/*
+ * ============================================================
+ * HANDLER EVENTI STAFF (SERVER-SENT EVENTS)
+ * ============================================================
+ *
+ * Rotta "/staff/eventi": flusso text/event-stream con gli
+ * eventi sugli ordini, letto dalla dashboard con EventSource.
+ *
+ * Eventi inviati:
+ * - event: nuovo  → ordine appena confermato
+ * - event: stato  → cambio di stato di un ordine
+ * - event: ricarica → alcuni eventi sono andati persi
+ *   (server riavviato o disconnessione troppo lunga):
+ *   la dashboard deve ricaricare la pagina
+ *
+ * Ogni evento porta il proprio numero nel campo "id":
+ * alla riconnessione il browser lo rimanda nell'header
+ * Last-Event-ID e riceve gli eventi persi nel frattempo.
+ *
+ * La connessione resta aperta e occupa un thread (virtuale
+ * nella configurazione di default). Un commento ": ping"
+ * periodico mantiene viva la connessione e rileva i client
+ * disconnessi.
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.eventi.heartbeatMs  → intervallo del ping
+ *                                  (default 15 secondi)
+ * - takeaway.eventi.massimoClienti → flussi contemporanei
+ *                                  (default 100)
+ */
+public class EventiStaffHandler implements HttpHandler {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final long HEARTBEAT_MS =
+            Long.getLong("takeaway.eventi.heartbeatMs", 15_000);
+
+    private static final int MASSIMO_CLIENTI =
+            Integer.getInteger("takeaway.eventi.massimoClienti", 100);
+
+    /**
+     * Attesa suggerita al browser prima di ricollegarsi.
+     */
+    private static final int RICONNESSIONE_MS = 3_000;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final BusEventiOrdine busEventi;
+
+    /**
+     * Limita i flussi aperti contemporaneamente.
+     */
+    private final Semaphore clienti = new Semaphore(MASSIMO_CLIENTI);
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param busEventi bus degli eventi sugli ordini
+     */
+    public EventiStaffHandler(BusEventiOrdine busEventi) {
+        this.busEventi = busEventi;
+    }
+
+    // ====================================================
+    // METODO HANDLE
+    // ====================================================
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+        // ------------------------------------------------
+        // AUTENTICAZIONE STAFF E METODO
+        // ------------------------------------------------
+        if (!SessioneStaff.isLoggato()) {
+            exchange.sendResponseHeaders(401, -1);
+            return;
+        }
+
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        if (!clienti.tryAcquire()) {
+            // Troppi flussi aperti: il browser riproverà
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        try (BusEventiOrdine.Iscrizione iscrizione =
+                     busEventi.iscrivi(leggiUltimoEvento(exchange))) {
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+
+            // Lunghezza 0 = risposta chunked, inviata evento per evento
+            exchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                trasmetti(iscrizione, os);
+            }
+
+        } catch (IOException e) {
+            // Dashboard chiusa o rete interrotta: fine del flusso
+
+        } catch (InterruptedException e) {
+            // Arresto del server
+            Thread.currentThread().interrupt();
+
+        } finally {
+            clienti.release();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Invia gli eventi finché il client resta collegato.
+     */
+    private void trasmetti(BusEventiOrdine.Iscrizione iscrizione, OutputStream os)
+            throws IOException, InterruptedException {
+
+        StringBuilder testo = new StringBuilder(256);
+
+        testo.append("retry: ").append(RICONNESSIONE_MS).append("\n\n");
+
+        if (iscrizione.isIncompleta()) {
+            testo.append("event: ricarica\ndata: {}\n\n");
+        }
+
+        for (EventoOrdine evento : iscrizione.prelevaArretrati()) {
+            appendiEvento(testo, evento);
+        }
+
+        invia(os, testo);
+
+        while (true) {
+
+            EventoOrdine evento = iscrizione.prossimo(HEARTBEAT_MS);
+
+            if (iscrizione.isScaduta()) {
+                // Client troppo lento: chiudendo il flusso il
+                // browser si ricollega e recupera dal buffer
+                return;
+            }
+
+            if (evento == null) {
+                testo.append(": ping\n\n");
+            } else {
+                appendiEvento(testo, evento);
+            }
+
+            invia(os, testo);
+        }
+    }
+
+    /**
+     * Formato text/event-stream di un evento:
+     * id, tipo e dati JSON su una sola riga.
+     */
+    private void appendiEvento(StringBuilder testo, EventoOrdine evento) {
+
+        testo.append("id: ").append(evento.getNumero()).append('\n');
+        testo.append("event: ")
+             .append(evento.getTipo() == EventoOrdine.Tipo.NUOVO ? "nuovo" : "stato")
+             .append('\n');
+
+        testo.append("data: {\"id\":").append(evento.getOrdineId());
+        testo.append(",\"codice\":");
+        TestoJson.appendiStringa(testo, evento.getCodice());
+        testo.append(",\"cliente\":");
+        TestoJson.appendiStringa(testo, evento.getNomeCliente());
+        testo.append(",\"stato\":\"").append(evento.getStato().name()).append('"');
+        testo.append(",\"totale\":\"");
+        FormatoPrezzo.appendi(testo, evento.getTotaleCentesimi());
+        testo.append("\"}\n\n");
+    }
+
+    /**
+     * Scrive e svuota il testo accumulato.
+     */
+    private void invia(OutputStream os, StringBuilder testo) throws IOException {
+        os.write(testo.toString().getBytes(StandardCharsets.UTF_8));
+        os.flush();
+        testo.setLength(0);
+    }
+
+    /**
+     * Numero dell'ultimo evento ricevuto dal browser,
+     * -1 alla prima connessione.
+     */
+    private long leggiUltimoEvento(HttpExchange exchange) {
+
+        String valore = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+
+        if (valore == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(valore.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * ============================================================
+ * FILTRO COMPRESSIONE
+ * ============================================================
+ *
+ * Filtro applicato a tutte le rotte che comprime le
+ * risposte testuali (HTML, JSON, CSS, JavaScript).
+ *
+ * Funzionamento:
+ * - legge Accept-Encoding e sceglie gzip oppure deflate
+ * - al momento di sendResponseHeaders decide se comprimere:
+ *   - solo tipi di contenuto testuali
+ *   - solo risposte sopra la soglia minima
+ *   - mai se l'handler ha già impostato Content-Encoding
+ *     (contenuti precompressi)
+ * - la risposta viene inviata in chunked e compressa
+ *   in streaming mentre l'handler scrive
+ *
+ * Le immagini (PNG, JPEG) sono già compresse e vengono
+ * inoltrate senza modifiche.
+ */
+public class FiltroCompressione extends Filter {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    /**
+     * Dimensione minima (byte) sotto la quale non conviene comprimere.
+     */
+    private static final int SOGLIA_MINIMA =
+            Integer.getInteger("takeaway.compressione.soglia", 1024);
+
+    // ====================================================
+    // METODI DEL FILTRO
+    // ====================================================
+
+    @Override
+    public String description() {
+        return "Compressione gzip/deflate delle risposte testuali";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+
+        String codifica = scegliCodifica(exchange.getRequestHeaders());
+
+        if (codifica == null) {
+            // Il client non accetta compressione
+            chain.doFilter(exchange);
+            return;
+        }
+
+        ScambioCompresso compresso = new ScambioCompresso(exchange, codifica);
+
+        try {
+            chain.doFilter(compresso);
+        } finally {
+            compresso.termina();
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    /**
+     * Sceglie la codifica tra quelle accettate dal client.
+     * Viene preferito gzip; le codifiche con q=0 sono escluse.
+     *
+     * @param headers header della richiesta
+     * @return "gzip", "deflate" oppure null
+     */
+    public static String scegliCodifica(Headers headers) {
+
+        String accettate = headers.getFirst("Accept-Encoding");
+
+        if (accettate == null) {
+            return null;
+        }
+
+        boolean gzip = false;
+        boolean deflate = false;
+
+        for (String voce : accettate.split(",")) {
+
+            String[] parti = voce.trim().split(";");
+            String nome = parti[0].trim().toLowerCase();
+
+            boolean rifiutata = parti.length > 1
+                    && parti[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+
+            if (rifiutata) {
+                continue;
+            }
+
+            if (nome.equals("gzip") || nome.equals("*")) {
+                gzip = true;
+            } else if (nome.equals("deflate")) {
+                deflate = true;
+            }
+        }
+
+        if (gzip) {
+            return "gzip";
+        }
+
+        return deflate ? "deflate" : null;
+    }
+
+    /**
+     * Indica se un tipo di contenuto è testuale e quindi
+     * comprimibile. Gli stream di eventi (SSE) sono esclusi
+     * perché la compressione ne ritarderebbe l'invio.
+     *
+     * @param tipo valore di Content-Type
+     * @return true se il contenuto va compresso
+     */
+    static boolean isComprimibile(String tipo) {
+
+        if (tipo == null) {
+            return false;
+        }
+
+        String t = tipo.toLowerCase();
+
+        if (t.startsWith("text/event-stream")) {
+            return false;
+        }
+
+        return t.startsWith("text/")
+                || t.startsWith("application/json")
+                || t.startsWith("application/javascript")
+                || t.startsWith("image/svg+xml");
+    }
+
+    // ====================================================
+    // EXCHANGE CON RISPOSTA COMPRESSA
+    // ====================================================
+
+    /**
+     * Exchange che comprime il corpo della risposta
+     * quando il contenuto lo consente.
+     */
+    private static class ScambioCompresso extends ScambioDelegato {
+
+        private final String codifica;
+
+        /**
+         * Stream compresso, valorizzato solo se si comprime.
+         */
+        private OutputStream compresso;
+
+        /**
+         * Deflater della codifica "deflate": non appartiene allo
+         * stream, va liberato (memoria nativa) in termina().
+         */
+        private Deflater deflater;
+
+        ScambioCompresso(HttpExchange originale, String codifica) {
+            super(originale);
+            this.codifica = codifica;
+        }
+
+        @Override
+        public void sendResponseHeaders(int codice, long lunghezza) throws IOException {
+
+            Headers headers = getResponseHeaders();
+            boolean comprimibile = isComprimibile(headers.getFirst("Content-Type"));
+
+            if (comprimibile && !headers.containsKey("Vary")) {
+                // Le cache intermedie devono distinguere le due versioni
+                headers.add("Vary", "Accept-Encoding");
+            }
+
+            boolean daComprimere = comprimibile
+                    && lunghezza >= 0
+                    && (lunghezza == 0 || lunghezza >= SOGLIA_MINIMA)
+                    && codice != 204 && codice != 304
+                    && !headers.containsKey("Content-Encoding");
+
+            if (!daComprimere) {
+                super.sendResponseHeaders(codice, lunghezza);
+                return;
+            }
+
+            headers.set("Content-Encoding", codifica);
+            headers.remove("Content-Length");
+
+            // Lunghezza 0 = risposta chunked: la dimensione
+            // compressa non è nota in anticipo
+            super.sendResponseHeaders(codice, 0);
+
+            OutputStream corpo = super.getResponseBody();
+
+            if (codifica.equals("gzip")) {
+                compresso = new GZIPOutputStream(corpo, 8192);
+            } else {
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+                compresso = new DeflaterOutputStream(corpo, deflater, 8192);
+            }
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return compresso != null ? compresso : super.getResponseBody();
+        }
+
+        @Override
+        public void close() {
+            termina();
+            super.close();
+        }
+
+        /**
+         * Completa lo stream compresso se l'handler
+         * non lo ha già chiuso.
+         */
+        void termina() {
+
+            if (compresso == null) {
+                return;
+            }
+
+            try {
+                compresso.close();
+            } catch (IOException e) {
+                // Client disconnesso: nulla da inviare
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+        }
+    }
+}
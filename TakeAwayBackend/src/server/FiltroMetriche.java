@@ -0,0 +1,211 @@
+package server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import metriche.MetricheRotta;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * ============================================================
+ * FILTRO METRICHE
+ * ============================================================
+ *
+ * Filtro applicato a tutte le rotte che misura ogni
+ * richiesta (vedi MetricheRotta):
+ * - codice di stato della risposta
+ * - byte del corpo effettivamente inviati
+ * - durata, dall'ingresso nel filtro al completamento
+ *   della risposta
+ *
+ * Va registrato come primo filtro: la durata comprende gli
+ * altri filtri e i byte sono quelli dopo la compressione.
+ *
+ * La risposta è completa quando l'handler chiude lo stream
+ * (o invia una risposta senza corpo); se l'handler termina
+ * dopo aver inviato gli header senza chiudere lo stream, la
+ * richiesta viene chiusa al ritorno dal filtro. Le risposte
+ * inviate in seguito da un altro thread (long-poll) vengono
+ * misurate al loro effettivo completamento.
+ */
+public class FiltroMetriche extends Filter {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Percorso del contesto → contatori della rotta.
+     */
+    private final Map<String, MetricheRotta> rotte = new ConcurrentHashMap<>();
+
+    // ====================================================
+    // METODI DEL FILTRO
+    // ====================================================
+
+    @Override
+    public String description() {
+        return "Metriche delle richieste per rotta";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+
+        MetricheRotta rotta = rotte.computeIfAbsent(
+                exchange.getHttpContext().getPath(), MetricheRotta::new);
+
+        ScambioMisurato misurato = new ScambioMisurato(exchange, rotta);
+
+        try {
+            chain.doFilter(misurato);
+        } catch (IOException | RuntimeException e) {
+            misurato.completa(misurato.codice != -1 ? misurato.codice : 500);
+            throw e;
+        }
+
+        if (misurato.codice != -1) {
+            misurato.completa(misurato.codice);
+        }
+    }
+
+    // ====================================================
+    // LETTURA
+    // ====================================================
+
+    /**
+     * @return contatori delle rotte che hanno ricevuto
+     *         almeno una richiesta, ordinati per percorso
+     */
+    public List<MetricheRotta> getRotte() {
+
+        List<MetricheRotta> elenco = new ArrayList<>(rotte.values());
+        elenco.sort(Comparator.comparing(MetricheRotta::getRotta));
+
+        return elenco;
+    }
+
+    // ====================================================
+    // EXCHANGE MISURATO
+    // ====================================================
+
+    /**
+     * Exchange che registra codice, byte inviati e durata.
+     */
+    private static class ScambioMisurato extends ScambioDelegato {
+
+        private final MetricheRotta rotta;
+
+        private final long inizio = System.nanoTime();
+
+        private final AtomicBoolean completato = new AtomicBoolean();
+
+        /**
+         * Codice inviato, -1 finché gli header non sono inviati.
+         */
+        private volatile int codice = -1;
+
+        private ContatoreByte corpo;
+
+        ScambioMisurato(HttpExchange originale, MetricheRotta rotta) {
+            super(originale);
+            this.rotta = rotta;
+            rotta.inizio();
+        }
+
+        @Override
+        public void sendResponseHeaders(int codice, long lunghezza) throws IOException {
+
+            this.codice = codice;
+            super.sendResponseHeaders(codice, lunghezza);
+
+            // Nessun corpo: la risposta è già completa
+            if (lunghezza == -1) {
+                completa(codice);
+            }
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+
+            if (corpo == null) {
+                corpo = new ContatoreByte(super.getResponseBody(), this);
+            }
+
+            return corpo;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+
+            if (codice != -1) {
+                completa(codice);
+            }
+        }
+
+        /**
+         * Registra la richiesta (una sola volta).
+         */
+        void completa(int codiceFinale) {
+
+            if (completato.compareAndSet(false, true)) {
+                rotta.fine(
+                        codiceFinale,
+                        corpo != null ? corpo.scritti : 0,
+                        System.nanoTime() - inizio
+                );
+            }
+        }
+    }
+
+    /**
+     * Stream del corpo che conta i byte scritti e segnala
+     * la chiusura.
+     */
+    private static class ContatoreByte extends FilterOutputStream {
+
+        private final ScambioMisurato scambio;
+
+        private long scritti;
+
+        ContatoreByte(OutputStream out, ScambioMisurato scambio) {
+            super(out);
+            this.scambio = scambio;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            scritti++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            scritti += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                scambio.completa(scambio.codice != -1 ? scambio.codice : 500);
+            }
+        }
+    }
+}
@@ -38,31 +38,32 @@ public class HandlerTest  implements HttpHandler{
 					"""
 					);
 			
-			Connection conn = gestoreDatabase.getConnessione();
-			PreparedStatement ps = conn.prepareStatement(Query.SELECT_TUTTI_ID);
-			System.out.println("ok 1");
+			try (
+					Connection conn = gestoreDatabase.getConnessione();
+					PreparedStatement ps = conn.prepareStatement(Query.SELECT_TUTTI_ID);
+					ResultSet rs = ps.executeQuery()
+			) {
+				System.out.println("ok 2");
+				while (rs.next()) {
+					System.out.println("ok");
+				    String id = rs.getString("id");
+				    byte[] img = rs.getBytes("immagine");
 
-			ResultSet rs = ps.executeQuery();
-			System.out.println("ok 2");
-			while (rs.next()) {
-				System.out.println("ok");
-			    String id = rs.getString("id");
-			    byte[] img = rs.getBytes("immagine");
+				    if (img == null || img.length == 0) {
+				    	System.out.println("ID: " + id + " | IMG bytes: " + img.length);
+				        continue;
+				    }
 
-			    if (img == null || img.length == 0) {
-			    	System.out.println("ID: " + id + " | IMG bytes: " + img.length);
-			        continue;
-			    }
+				    String base64 = Base64.getEncoder().encodeToString(img);
 
-			    String base64 = Base64.getEncoder().encodeToString(img);
-
-			    html.append("<div style=\"margin-bottom:20px\">")
-			      .append("<img alt=\"img ")
-			      .append(id)
-			      .append("\" src=\"data:image/png;base64,")
-			     .append(base64)
-			     .append("\" style=\"max-width:300px\"/>")
-			     .append("</div>");
+				    html.append("<div style=\"margin-bottom:20px\">")
+				      .append("<img alt=\"img ")
+				      .append(id)
+				      .append("\" src=\"data:image/png;base64,")
+				     .append(base64)
+				     .append("\" style=\"max-width:300px\"/>")
+				     .append("</div>");
+				}
 			}
 
 			
@@ -1,17 +1,15 @@
 package server;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
-import database.GestoreDatabase;
-import database.Query;
+import dominio.CatalogoImmagini;
+import dominio.ImmagineProdotto;
+import dominio.VarianteImmagine;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 /*
  * ============================================================
@@ -22,22 +20,46 @@ import java.sql.SQLException;
  *
  * Funzionamento:
  * - riceve una richiesta GET con parametro ?id=ID_PRODOTTO
- * - recupera l'immagine dal database (campo LONGBLOB)
- * - la restituisce come risposta HTTP (image/png)
+ *   e, dal menu, l'impronta dell'immagine &v=IMPRONTA
+ * - il parametro facoltativo &dim=miniatura|scheda|completa
+ *   seleziona un derivato ridimensionato (JPEG); senza
+ *   parametro viene servito l'originale (PNG)
+ * - recupera l'immagine dalla cache in memoria
+ *   (letta dal disco o dal database solo la prima volta)
+ * - la restituisce come risposta HTTP
  *
- * L'handler viene utilizzato per caricare dinamicamente
- * le immagini dei prodotti nel menu.
+ * Caching HTTP:
+ * - ETag forte calcolato sul contenuto
+ * - If-None-Match → 304 Not Modified senza corpo
+ * - URL versionato (con v=) → Cache-Control immutable per un
+ *   anno: il browser non richiede più l'immagine finché
+ *   l'impronta nel menu non cambia
  */
 public class ImageHandler implements HttpHandler {
 
+    // ====================================================
+    // COSTANTI
+    // ====================================================
+
+    /**
+     * Cache per URL versionati: il contenuto non cambia mai.
+     */
+    private static final String CACHE_IMMUTABILE =
+            "public, max-age=31536000, immutable";
+
+    /**
+     * Cache per URL senza versione: breve, con rivalidazione.
+     */
+    private static final String CACHE_BREVE = "public, max-age=300";
+
     // ====================================================
     // ATTRIBUTI
     // ====================================================
 
     /**
-     * Gestore delle connessioni al database.
+     * Cache in memoria delle immagini dei prodotti.
      */
-    private GestoreDatabase gestoreDatabase;
+    private CatalogoImmagini catalogoImmagini;
 
     // ====================================================
     // COSTRUTTORE
@@ -46,10 +68,10 @@ public class ImageHandler implements HttpHandler {
     /**
      * Costruttore dell'ImageHandler.
      *
-     * @param gestoreDatabase gestore delle connessioni al database
+     * @param catalogoImmagini cache delle immagini dei prodotti
      */
-    public ImageHandler(GestoreDatabase gestoreDatabase) {
-        this.gestoreDatabase = gestoreDatabase;
+    public ImageHandler(CatalogoImmagini catalogoImmagini) {
+        this.catalogoImmagini = catalogoImmagini;
     }
 
     // ====================================================
@@ -70,59 +92,80 @@ public class ImageHandler implements HttpHandler {
         }
 
         // ====================================================
-        // LETTURA E VALIDAZIONE PARAMETRO ID
+        // LETTURA E VALIDAZIONE PARAMETRI (id, v, dim)
         // ====================================================
 
         String query = exchange.getRequestURI().getQuery();
 
-        if (query == null || !query.startsWith("id=")) {
+        String idProdotto = null;
+        String versione = null;
+        String dimensione = null;
+
+        if (query != null) {
+            for (String p : query.split("&")) {
+                if (p.startsWith("id=")) {
+                    idProdotto = p.substring(3);
+                } else if (p.startsWith("v=")) {
+                    versione = p.substring(2);
+                } else if (p.startsWith("dim=")) {
+                    dimensione = p.substring(4);
+                }
+            }
+        }
+
+        if (idProdotto == null || idProdotto.isEmpty()) {
             // Parametro mancante o non valido
             exchange.sendResponseHeaders(400, -1);
             return;
         }
 
-        String idProdotto = query.substring(3);
-
         // ====================================================
-        // RECUPERO IMMAGINE DAL DATABASE
+        // RECUPERO IMMAGINE DALLA CACHE
         // ====================================================
 
-        try (
-                Connection conn = gestoreDatabase.getConnessione();
-                PreparedStatement ps =
-                        conn.prepareStatement(Query.SELECT_IMG_PRODOTTO)
-        ) {
+        ImmagineProdotto immagine = catalogoImmagini.getImmagine(
+                idProdotto,
+                versione,
+                VarianteImmagine.daParametro(dimensione)
+        );
 
-            ps.setString(1, idProdotto);
-            ResultSet rs = ps.executeQuery();
+        if (immagine == null) {
+            // Prodotto o immagine non trovati
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
 
-            if (!rs.next()) {
-                // Prodotto non trovato
-                exchange.sendResponseHeaders(404, -1);
-                return;
-            }
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", immagine.getEtag());
+        headers.set("Cache-Control",
+                immagine.getImprontaOrigine().equals(versione)
+                        ? CACHE_IMMUTABILE
+                        : CACHE_BREVE);
 
-            byte[] immagine = rs.getBytes("immagine");
+        // ====================================================
+        // RICHIESTA CONDIZIONALE (If-None-Match)
+        // ====================================================
 
-            if (immagine == null) {
-                // Immagine non presente
-                exchange.sendResponseHeaders(404, -1);
-                return;
-            }
+        String ifNoneMatch =
+                exchange.getRequestHeaders().getFirst("If-None-Match");
 
-            // ====================================================
-            // INVIO IMMAGINE COME RISPOSTA HTTP
-            // ====================================================
+        if (ifNoneMatch != null && ifNoneMatch.contains(immagine.getEtag())) {
+            // Il browser ha già questa versione dell'immagine
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        // ====================================================
+        // INVIO IMMAGINE COME RISPOSTA HTTP
+        // ====================================================
 
-            exchange.getResponseHeaders().set("Content-Type", "image/png");
-            exchange.sendResponseHeaders(200, immagine.length);
+        byte[] dati = immagine.getDati();
 
-            OutputStream os = exchange.getResponseBody();
-            os.write(immagine);
-            os.close();
+        headers.set("Content-Type", immagine.getTipo());
+        exchange.sendResponseHeaders(200, dati.length);
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        OutputStream os = exchange.getResponseBody();
+        os.write(dati);
+        os.close();
     }
 }
@@ -24,9 +24,27 @@ import java.nio.charset.StandardCharsets;
  * - POST → verifica le credenziali inserite
  *
  * Le credenziali sono hard-coded nella classe SessioneStaff.
+ *
+ * Il form senza messaggio di errore è sempre identico:
+ * viene preparato e compresso una sola volta.
  */
 public class LoginStaffHandler implements HttpHandler {
 
+    // ====================================================
+    // PAGINA STATICA
+    // ====================================================
+
+    /**
+     * Form di login senza errori, precompresso all'avvio.
+     */
+    private static final ContenutoPrecompresso FORM_VUOTO =
+            new ContenutoPrecompresso(
+                    LoginStaffHtml.LOGIN_PARTE_1
+                            + LoginStaffHtml.LOGIN_FORM
+                            + LoginStaffHtml.LOGIN_PARTE_4,
+                    "text/html; charset=UTF-8"
+            );
+
     // ====================================================
     // METODO HANDLE
     // ====================================================
@@ -106,6 +124,11 @@ public class LoginStaffHandler implements HttpHandler {
     private void mostraForm(HttpExchange exchange, String errore)
             throws IOException {
 
+        if (errore == null || errore.isEmpty()) {
+            FORM_VUOTO.invia(exchange, 200);
+            return;
+        }
+
         StringBuilder html = new StringBuilder();
 
         // Parte iniziale della pagina
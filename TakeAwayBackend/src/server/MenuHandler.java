@@ -3,15 +3,16 @@ package server;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
-import dominio.Carrello;
 import dominio.CatalogoProdotti;
 import dominio.Prodotto;
+import dominio.SnapshotCatalogo;
+import dominio.VarianteImmagine;
+import html.FormatoPrezzo;
 import html.MenuHtml;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /*
  * ============================================================
@@ -21,9 +22,21 @@ import java.util.List;
  * Gestisce la rotta principale "/" dell'applicazione.
  *
  * Funzionalità:
- * - recupera il menu prodotti dal database
+ * - recupera il menu prodotti dal catalogo in memoria
  * - genera dinamicamente le card dei prodotti
  * - permette l'aggiunta di prodotti al carrello
+ *
+ * ------------------------------------------------------------
+ * PAGINA PRONTA IN MEMORIA
+ * ------------------------------------------------------------
+ * La pagina cambia solo quando cambia il catalogo: viene
+ * generata una volta per ogni versione dello snapshot e
+ * conservata già codificata e compressa.
+ *
+ * - a ogni nuovo snapshot la pagina viene rigenerata dal
+ *   thread di ricaricamento del catalogo
+ * - ogni risposta porta un ETag legato alla versione:
+ *   con If-None-Match il browser riceve 304 senza corpo
  */
 public class MenuHandler implements HttpHandler {
 
@@ -38,9 +51,15 @@ public class MenuHandler implements HttpHandler {
     private CatalogoProdotti catalogoProdotti;
 
     /**
-     * Carrello associato alla sessione corrente.
+     * Pagina generata per l'ultima versione del catalogo.
+     */
+    private final AtomicReference<PaginaMenu> pagina = new AtomicReference<>();
+
+    /**
+     * Istante di avvio, incluso nell'ETag: le versioni del
+     * catalogo ripartono da 1 a ogni riavvio del server.
      */
-    private Carrello carrello;
+    private final String avvio = Long.toString(System.currentTimeMillis(), 36);
 
     // ====================================================
     // COSTRUTTORE
@@ -50,11 +69,12 @@ public class MenuHandler implements HttpHandler {
      * Costruttore del MenuHandler.
      *
      * @param catalogoProdotti catalogo prodotti
-     * @param carrello         carrello condiviso
      */
-    public MenuHandler(CatalogoProdotti catalogoProdotti, Carrello carrello) {
+    public MenuHandler(CatalogoProdotti catalogoProdotti) {
         this.catalogoProdotti = catalogoProdotti;
-        this.carrello = carrello;
+
+        // Rigenerazione della pagina a ogni nuovo snapshot
+        catalogoProdotti.aggiungiAscoltatore(this::prepara);
     }
 
     // ====================================================
@@ -75,10 +95,117 @@ public class MenuHandler implements HttpHandler {
         }
 
         // ====================================================
-        // CARICAMENTO PRODOTTI DAL DATABASE
+        // PAGINA PER LA VERSIONE CORRENTE DEL CATALOGO
         // ====================================================
 
-        List<Prodotto> prodotti = catalogoProdotti.getTuttiProdotti();
+        PaginaMenu corrente = paginaPer(catalogoProdotti.getSnapshot());
+
+        exchange.getResponseHeaders().set("ETag", corrente.etag);
+
+        // Il browser può conservare la pagina ma deve
+        // sempre verificare che sia ancora attuale
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+        // ====================================================
+        // RICHIESTA CONDIZIONALE (If-None-Match)
+        // ====================================================
+
+        String ifNoneMatch =
+                exchange.getRequestHeaders().getFirst("If-None-Match");
+
+        if (ifNoneMatch != null && ifNoneMatch.contains(corrente.etag)) {
+            // Il menu non è cambiato dall'ultima visita
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        // ====================================================
+        // INVIO RISPOSTA HTTP (copia dalla memoria)
+        // ====================================================
+
+        corrente.contenuto.invia(exchange, 200);
+    }
+
+    // ====================================================
+    // PAGINA PRONTA
+    // ====================================================
+
+    /**
+     * Pagina del menu generata per una versione del catalogo.
+     */
+    private static final class PaginaMenu {
+
+        private final long versione;
+
+        private final String etag;
+
+        private final ContenutoPrecompresso contenuto;
+
+        PaginaMenu(long versione, String etag, ContenutoPrecompresso contenuto) {
+            this.versione = versione;
+            this.etag = etag;
+            this.contenuto = contenuto;
+        }
+    }
+
+    /**
+     * Restituisce la pagina per lo snapshot indicato,
+     * generandola se non è ancora pronta (ad esempio al
+     * primo accesso, prima della notifica del catalogo).
+     */
+    private PaginaMenu paginaPer(SnapshotCatalogo snapshot) {
+
+        PaginaMenu attuale = pagina.get();
+
+        if (attuale != null && attuale.versione >= snapshot.getVersione()) {
+            return attuale;
+        }
+
+        return prepara(snapshot);
+    }
+
+    /**
+     * Genera la pagina per uno snapshot e la pubblica,
+     * a meno che non ne sia già presente una più recente.
+     *
+     * @param snapshot snapshot del catalogo
+     * @return pagina pubblicata
+     */
+    private PaginaMenu prepara(SnapshotCatalogo snapshot) {
+
+        PaginaMenu nuova = new PaginaMenu(
+                snapshot.getVersione(),
+                "\"menu-" + avvio + "-" + snapshot.getVersione() + "\"",
+                new ContenutoPrecompresso(
+                        genera(snapshot),
+                        "text/html; charset=UTF-8"
+                )
+        );
+
+        PaginaMenu attuale;
+
+        do {
+            attuale = pagina.get();
+
+            if (attuale != null && attuale.versione >= nuova.versione) {
+                return attuale;
+            }
+        } while (!pagina.compareAndSet(attuale, nuova));
+
+        return nuova;
+    }
+
+    /**
+     * Costruisce l'HTML completo del menu.
+     * Prodotti e impronte delle immagini provengono dallo
+     * stesso snapshot, quindi dalla stessa versione del catalogo.
+     *
+     * @param snapshot snapshot del catalogo
+     * @return pagina HTML
+     */
+    private String genera(SnapshotCatalogo snapshot) {
+
+        List<Prodotto> prodotti = snapshot.getProdotti();
 
         // ====================================================
         // COSTRUZIONE PAGINA HTML MENU
@@ -100,8 +227,37 @@ public class MenuHandler implements HttpHandler {
                     <div class="card h-100">
                 """);
 
-            // Immagine del prodotto (HTML già pronto dal dominio)
-            html.append(p.getImmagine());
+            // Immagine del prodotto: URL versionato con l'impronta,
+            // servito (e memorizzato dal browser) da ImageHandler.
+            // Con srcset il browser sceglie il derivato adatto
+            // alla densità dello schermo.
+            String impronta = snapshot.getImprontaImmagine(p.getId());
+
+            if (impronta != null) {
+
+                html.append("<img alt=\"")
+                    .append(p.getNome())
+                    .append("\" src=\"");
+                appendiUrlImmagine(html, p.getId(), impronta, VarianteImmagine.SCHEDA);
+
+                html.append("\" srcset=\"");
+
+                for (VarianteImmagine variante : VarianteImmagine.values()) {
+
+                    if (!variante.isDerivata()) {
+                        continue;
+                    }
+
+                    if (variante != VarianteImmagine.MINIATURA) {
+                        html.append(", ");
+                    }
+
+                    appendiUrlImmagine(html, p.getId(), impronta, variante);
+                    html.append(' ').append(variante.getLarghezza()).append('w');
+                }
+
+                html.append("\" sizes=\"150px\" loading=\"lazy\" style=\"max-width:150px\"/>");
+            }
 
             html.append("""
                         <div class="card-body">
@@ -113,14 +269,17 @@ public class MenuHandler implements HttpHandler {
                 .append(p.getDescrizione())
                 .append("""
                             </p>
-                            <p class="fw-bold">""")
-                .append(p.getPrezzo())
+                            <p class="fw-bold">""");
+
+            FormatoPrezzo.appendiEuro(html, p.getPrezzoCentesimi())
                 .append("""
-                            €</p>
+                            </p>
                             <a href="/carrello?add=""")
                 .append(p.getId())
+                .append("\" data-aggiungi=\"")
+                .append(p.getId())
+                .append("\" class=\"btn btn-primary\">")
                 .append("""
-                            " class="btn btn-primary">
                                 Aggiungi
                             </a>
                         </div>
@@ -132,18 +291,32 @@ public class MenuHandler implements HttpHandler {
         // PARTE 2 — chiusura pagina
         html.append(MenuHtml.MENU_PARTE_2);
 
-        // ====================================================
-        // INVIO RISPOSTA HTTP
-        // ====================================================
-
-        byte[] risposta = html.toString().getBytes(StandardCharsets.UTF_8);
+        return html.toString();
+    }
 
-        exchange.getResponseHeaders()
-                .set("Content-Type", "text/html; charset=UTF-8");
-        exchange.sendResponseHeaders(200, risposta.length);
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
 
-        OutputStream os = exchange.getResponseBody();
-        os.write(risposta);
-        os.close();
+    /**
+     * Aggiunge l'URL versionato di una variante dell'immagine.
+     *
+     * @param html       pagina in costruzione
+     * @param idProdotto id del prodotto
+     * @param impronta   impronta dell'immagine originale
+     * @param variante   dimensione richiesta
+     */
+    private void appendiUrlImmagine(
+            StringBuilder html,
+            String idProdotto,
+            String impronta,
+            VarianteImmagine variante
+    ) {
+        html.append("/img?id=")
+            .append(idProdotto)
+            .append("&v=")
+            .append(impronta)
+            .append("&dim=")
+            .append(variante.getParametro());
     }
 }
@@ -0,0 +1,322 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import database.GestoreDatabase;
+import database.StatistichePool;
+import database.StatisticheQuery;
+import dominio.GestoreCarrelli;
+import dominio.GestoreOrdini;
+import metriche.MetricheJvm;
+import metriche.MetricheRotta;
+import metriche.TestoPrometheus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * ============================================================
+ * HANDLER METRICHE
+ * ============================================================
+ *
+ * Rotta "/metrics": metriche dell'applicazione nel formato
+ * testuale di Prometheus, lette dallo scraper locale.
+ *
+ * Contenuto:
+ * - richieste HTTP per rotta (FiltroMetriche): conteggi per
+ *   codice di stato, richieste in corso, byte inviati, durata
+ * - JVM: memoria, garbage collector, thread (MetricheJvm)
+ * - pool di connessioni (compresa l'attesa di una connessione)
+ *   e query per costante di Query: esecuzione, lettura dei
+ *   risultati, righe, byte binari, esecuzioni lente
+ * - ordini in attesa di scrittura e ordini attivi, carrelli,
+ *   dashboard collegate (SSE) e clienti in long-poll
+ *
+ * Per default la rotta risponde solo a richieste dalla
+ * macchina locale (403 alle altre).
+ *
+ * Configurazione (proprietà di sistema):
+ * - takeaway.metriche.remote=true → risponde a qualsiasi
+ *                                   indirizzo
+ */
+public class MetricheHandler implements HttpHandler {
+
+    // ====================================================
+    // CONFIGURAZIONE
+    // ====================================================
+
+    private static final boolean REMOTE = Boolean.getBoolean("takeaway.metriche.remote");
+
+    /**
+     * Conversione da microsecondi a secondi.
+     */
+    private static final double MICROSECONDI = 1e-6;
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final FiltroMetriche filtroMetriche;
+
+    private final GestoreDatabase gestoreDatabase;
+
+    private final GestoreOrdini gestoreOrdini;
+
+    private final GestoreCarrelli gestoreCarrelli;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param filtroMetriche  filtro che misura le richieste
+     * @param gestoreDatabase pool e statistiche delle query
+     * @param gestoreOrdini   ordini, eventi e attese
+     * @param gestoreCarrelli carrelli dei clienti
+     */
+    public MetricheHandler(
+            FiltroMetriche filtroMetriche,
+            GestoreDatabase gestoreDatabase,
+            GestoreOrdini gestoreOrdini,
+            GestoreCarrelli gestoreCarrelli
+    ) {
+        this.filtroMetriche = filtroMetriche;
+        this.gestoreDatabase = gestoreDatabase;
+        this.gestoreOrdini = gestoreOrdini;
+        this.gestoreCarrelli = gestoreCarrelli;
+    }
+
+    // ====================================================
+    // METODO HANDLE
+    // ====================================================
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+        if (!REMOTE && !exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+            exchange.sendResponseHeaders(403, -1);
+            return;
+        }
+
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        TestoPrometheus testo = new TestoPrometheus();
+
+        scriviHttp(testo);
+        MetricheJvm.scrivi(testo);
+        scriviDatabase(testo);
+        scriviApplicazione(testo);
+
+        byte[] risposta = testo.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders()
+                .set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, risposta.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(risposta);
+        }
+    }
+
+    // ====================================================
+    // SEZIONI
+    // ====================================================
+
+    /**
+     * Richieste HTTP per rotta.
+     */
+    private void scriviHttp(TestoPrometheus testo) {
+
+        List<MetricheRotta> rotte = filtroMetriche.getRotte();
+
+        testo.intestazione("takeaway_http_requests_total", "counter",
+                "Richieste completate per rotta e codice di stato");
+
+        for (MetricheRotta rotta : rotte) {
+            for (Map.Entry<Integer, Long> e : rotta.getRichiestePerCodice().entrySet()) {
+                testo.valore("takeaway_http_requests_total", e.getValue(),
+                        "route", rotta.getRotta(), "code", e.getKey().toString());
+            }
+        }
+
+        testo.intestazione("takeaway_http_requests_in_flight", "gauge",
+                "Richieste in corso per rotta");
+
+        for (MetricheRotta rotta : rotte) {
+            testo.valore("takeaway_http_requests_in_flight", rotta.getInCorso(),
+                    "route", rotta.getRotta());
+        }
+
+        testo.intestazione("takeaway_http_response_bytes_total", "counter",
+                "Byte del corpo delle risposte inviati (dopo la compressione)");
+
+        for (MetricheRotta rotta : rotte) {
+            testo.valore("takeaway_http_response_bytes_total", rotta.getByteInviati(),
+                    "route", rotta.getRotta());
+        }
+
+        testo.intestazione("takeaway_http_request_duration_seconds", "summary",
+                "Durata delle richieste per rotta");
+
+        for (MetricheRotta rotta : rotte) {
+            testo.sommario("takeaway_http_request_duration_seconds", rotta.getLatenza(),
+                    MICROSECONDI, "route", rotta.getRotta());
+        }
+    }
+
+    /**
+     * Pool di connessioni e query.
+     */
+    private void scriviDatabase(TestoPrometheus testo) {
+
+        StatistichePool pool = gestoreDatabase.getStatistiche();
+
+        testo.intestazione("takeaway_db_pool_connections", "gauge",
+                        "Connessioni del pool per stato")
+             .valore("takeaway_db_pool_connections", pool.getAttive(), "state", "attive")
+             .valore("takeaway_db_pool_connections", pool.getInattive(), "state", "inattive");
+
+        testo.intestazione("takeaway_db_pool_waiting", "gauge",
+                        "Thread in attesa di una connessione")
+             .valore("takeaway_db_pool_waiting", pool.getInAttesa());
+
+        testo.intestazione("takeaway_db_pool_created_total", "counter",
+                        "Connessioni fisiche create")
+             .valore("takeaway_db_pool_created_total", pool.getCreate());
+
+        testo.intestazione("takeaway_db_pool_discarded_total", "counter",
+                        "Connessioni scartate")
+             .valore("takeaway_db_pool_discarded_total", pool.getScartate());
+
+        testo.intestazione("takeaway_db_pool_timeouts_total", "counter",
+                        "Richieste di connessione scadute")
+             .valore("takeaway_db_pool_timeouts_total", pool.getTimeout());
+
+        testo.intestazione("takeaway_db_pool_leaks_total", "counter",
+                        "Connessioni segnalate come possibili leak")
+             .valore("takeaway_db_pool_leaks_total", pool.getLeak());
+
+        testo.intestazione("takeaway_db_pool_wait_seconds", "summary",
+                        "Attesa per ottenere una connessione dal pool")
+             .sommario("takeaway_db_pool_wait_seconds",
+                     gestoreDatabase.getAttesaConnessione(), MICROSECONDI);
+
+        List<StatisticheQuery> query = gestoreDatabase.getStatisticheQuery();
+
+        testo.intestazione("takeaway_db_query_executions_total", "counter",
+                "Esecuzioni per query");
+
+        for (StatisticheQuery q : query) {
+            testo.valore("takeaway_db_query_executions_total", q.getEsecuzioni(),
+                    "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_errors_total", "counter",
+                "Esecuzioni fallite per query");
+
+        for (StatisticheQuery q : query) {
+            testo.valore("takeaway_db_query_errors_total", q.getErrori(),
+                    "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_rows_total", "counter",
+                "Righe lette o modificate per query");
+
+        for (StatisticheQuery q : query) {
+            testo.valore("takeaway_db_query_rows_total", q.getRighe(),
+                    "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_blob_bytes_total", "counter",
+                "Byte dei campi binari letti o inviati per query");
+
+        for (StatisticheQuery q : query) {
+            testo.valore("takeaway_db_query_blob_bytes_total", q.getByteBinari(),
+                    "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_slow_total", "counter",
+                "Esecuzioni oltre la soglia delle query lente");
+
+        for (StatisticheQuery q : query) {
+            testo.valore("takeaway_db_query_slow_total", q.getLente(),
+                    "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_prepares_total", "counter",
+                "Statement preparati per query");
+
+        for (StatisticheQuery q : query) {
+            testo.valore("takeaway_db_query_prepares_total", q.getPreparazioni(),
+                    "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_duration_seconds", "summary",
+                "Durata delle esecuzioni per query");
+
+        for (StatisticheQuery q : query) {
+            testo.sommario("takeaway_db_query_duration_seconds", q.getLatenza(),
+                    MICROSECONDI, "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_fetch_seconds", "summary",
+                "Durata della lettura dei risultati per query");
+
+        for (StatisticheQuery q : query) {
+            testo.sommario("takeaway_db_query_fetch_seconds", q.getLettura(),
+                    MICROSECONDI, "query", q.getNome());
+        }
+
+        testo.intestazione("takeaway_db_query_connection_wait_seconds", "summary",
+                "Attesa della connessione, attribuita alla prima query del prestito");
+
+        for (StatisticheQuery q : query) {
+            testo.sommario("takeaway_db_query_connection_wait_seconds",
+                    q.getAttesaConnessione(), MICROSECONDI, "query", q.getNome());
+        }
+    }
+
+    /**
+     * Stato dell'applicazione: ordini, carrelli, client collegati.
+     */
+    private void scriviApplicazione(TestoPrometheus testo) {
+
+        testo.intestazione("takeaway_ordini_in_attesa_scrittura", "gauge",
+                        "Ordini confermati non ancora scritti nel database")
+             .valore("takeaway_ordini_in_attesa_scrittura", gestoreOrdini.getOrdiniInAttesa());
+
+        testo.intestazione("takeaway_ordini_attivi", "gauge",
+                        "Ordini non consegnati tenuti in memoria")
+             .valore("takeaway_ordini_attivi", gestoreOrdini.getOrdiniAttivi().getNumero());
+
+        testo.intestazione("takeaway_carrelli", "gauge", "Carrelli aperti")
+             .valore("takeaway_carrelli", gestoreCarrelli.getNumeroCarrelli());
+
+        testo.intestazione("takeaway_carrelli_creati_total", "counter", "Carrelli creati")
+             .valore("takeaway_carrelli_creati_total", gestoreCarrelli.getCreati());
+
+        testo.intestazione("takeaway_carrelli_scaduti_total", "counter",
+                        "Carrelli rimossi per inattività")
+             .valore("takeaway_carrelli_scaduti_total", gestoreCarrelli.getScaduti());
+
+        testo.intestazione("takeaway_carrelli_espulsi_total", "counter",
+                        "Carrelli rimossi per limite di capienza")
+             .valore("takeaway_carrelli_espulsi_total", gestoreCarrelli.getEspulsi());
+
+        testo.intestazione("takeaway_sse_iscritti", "gauge",
+                        "Dashboard collegate al flusso di eventi")
+             .valore("takeaway_sse_iscritti", gestoreOrdini.getBusEventi().getIscritti());
+
+        testo.intestazione("takeaway_attese_stato", "gauge",
+                        "Clienti in attesa di un cambio di stato (long-poll)")
+             .valore("takeaway_attese_stato", gestoreOrdini.getAtteseStato());
+    }
+}
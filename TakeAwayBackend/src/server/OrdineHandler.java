@@ -3,10 +3,14 @@ package server;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
+import dominio.CacheIdempotenza;
 import dominio.Carrello;
+import dominio.GestoreCarrelli;
 import dominio.GestoreOrdini;
 import dominio.Ordine;
+import html.FormatoPrezzo;
 import html.OrdineConfermatoHtml;
+import html.OrdineErroreHtml;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,6 +32,11 @@ import java.nio.charset.StandardCharsets;
  *
  * Questo handler viene invocato dalla submit del form
  * presente nella pagina del carrello.
+ *
+ * Il form contiene una chiave di idempotenza generata a
+ * ogni visualizzazione del carrello: doppi click e reinvii
+ * con la stessa chiave ricevono la conferma dell'ordine già
+ * creato, senza accedere al database.
  */
 public class OrdineHandler implements HttpHandler {
 
@@ -41,9 +50,20 @@ public class OrdineHandler implements HttpHandler {
     private GestoreOrdini gestoreOrdini;
 
     /**
-     * Carrello associato alla sessione corrente.
+     * Carrelli dei clienti, uno per sessione.
+     */
+    private GestoreCarrelli gestoreCarrelli;
+
+    /**
+     * Ordini già creati, indicizzati per chiave di idempotenza.
+     */
+    private final CacheIdempotenza<Ordine> ordiniInviati = new CacheIdempotenza<>();
+
+    /**
+     * Pagina di errore (statica), precompressa all'avvio.
      */
-    private Carrello carrello;
+    private static final ContenutoPrecompresso PAGINA_ERRORE =
+            new ContenutoPrecompresso(OrdineErroreHtml.PAGINA, "text/html; charset=UTF-8");
 
     // ====================================================
     // COSTRUTTORE
@@ -53,11 +73,11 @@ public class OrdineHandler implements HttpHandler {
      * Costruttore dell'OrdineHandler.
      *
      * @param gestoreOrdini gestore ordini
-     * @param carrello      carrello del cliente
+     * @param gestoreCarrelli carrelli dei clienti
      */
-    public OrdineHandler(GestoreOrdini gestoreOrdini, Carrello carrello) {
+    public OrdineHandler(GestoreOrdini gestoreOrdini, GestoreCarrelli gestoreCarrelli) {
         this.gestoreOrdini = gestoreOrdini;
-        this.carrello = carrello;
+        this.gestoreCarrelli = gestoreCarrelli;
     }
 
     // ====================================================
@@ -77,6 +97,19 @@ public class OrdineHandler implements HttpHandler {
             return;
         }
 
+        // ====================================================
+        // CARRELLO DEL CLIENTE (COOKIE DI SESSIONE)
+        // ====================================================
+
+        Carrello carrello = CookieCarrello.trova(exchange, gestoreCarrelli);
+
+        if (carrello == null) {
+            // Sessione scaduta o inesistente: nessun ordine da creare
+            exchange.getResponseHeaders().add("Location", "/carrello");
+            exchange.sendResponseHeaders(303, -1);
+            return;
+        }
+
         // ====================================================
         // LETTURA DATI FORM (POST)
         // ====================================================
@@ -88,6 +121,7 @@ public class OrdineHandler implements HttpHandler {
         String nome = "";
         String contatto = "";
         String note = "";
+        String chiaveIdempotenza = null;
 
         // Separazione dei parametri del form
         String[] parametri = body.split("&");
@@ -108,19 +142,54 @@ public class OrdineHandler implements HttpHandler {
             switch (chiave) {
                 case "nome":
                     nome = valore;
+                    break;
                 case "contatto":
                     contatto = valore;
+                    break;
                 case "note":
                     note = valore;
+                    break;
+                case "chiave":
+                    chiaveIdempotenza = valore;
+                    break;
+                default:
+                    // Parametro sconosciuto: ignorato
             }
         }
 
         // ====================================================
-        // CREAZIONE E SALVATAGGIO ORDINE
+        // CREAZIONE E SALVATAGGIO ORDINE (UNA SOLA VOLTA)
         // ====================================================
 
-        Ordine ordine =
-                gestoreOrdini.creaOrdine(carrello, nome, contatto, note);
+        // La chiave vale solo per il carrello che l'ha ricevuta
+        String chiaveCompleta = chiaveIdempotenza != null
+                ? carrello.getId() + ":" + chiaveIdempotenza
+                : null;
+
+        // Doppio click o reinvio del browser: la stessa chiave
+        // restituisce l'ordine già creato (o attende quello in corso)
+        final String nomeCliente = nome;
+        final String contattoCliente = contatto;
+        final String noteCliente = note;
+
+        Ordine ordine = ordiniInviati.esegui(chiaveCompleta, () ->
+                carrello.isVuoto()
+                        ? null
+                        : gestoreOrdini.creaOrdine(carrello, nomeCliente, contattoCliente, noteCliente)
+        );
+
+        if (ordine == null && carrello.isVuoto()) {
+            // Carrello vuoto: nessun ordine da creare
+            exchange.getResponseHeaders().add("Location", "/carrello");
+            exchange.sendResponseHeaders(303, -1);
+            return;
+        }
+
+        if (ordine == null) {
+            // Salvataggio fallito e annullato: il carrello è intatto
+            PAGINA_ERRORE.invia(exchange, 500);
+            return;
+        }
 
         // ====================================================
         // COSTRUZIONE RISPOSTA HTML
@@ -139,9 +208,9 @@ public class OrdineHandler implements HttpHandler {
             .append(ordine.getCodice())
             .append("</p>");
 
-        html.append("<p>Totale: <b>")
-            .append(ordine.getTotale())
-            .append(" €</b></p>");
+        html.append("<p>Totale: <b>");
+        FormatoPrezzo.appendiEuro(html, ordine.getTotaleCentesimi())
+            .append("</b></p>");
 
         html.append("<p>")
             .append("<a href=\"/ordine/stato?codice=")
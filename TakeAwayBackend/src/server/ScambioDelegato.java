@@ -0,0 +1,137 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/*
+ * ============================================================
+ * CLASSE SCAMBIO DELEGATO
+ * ============================================================
+ *
+ * HttpExchange che inoltra ogni chiamata a quello originale.
+ *
+ * È la base dei filtri che devono intervenire sulla
+ * risposta (compressione, metriche): il filtro passa
+ * all'handler una sottoclasse che ridefinisce solo i
+ * metodi che gli interessano, ad esempio
+ * sendResponseHeaders e getResponseBody.
+ */
+public class ScambioDelegato extends HttpExchange {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    /**
+     * Exchange originale creato dall'HttpServer.
+     */
+    protected final HttpExchange originale;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param originale exchange a cui inoltrare le chiamate
+     */
+    public ScambioDelegato(HttpExchange originale) {
+        this.originale = originale;
+    }
+
+    // ====================================================
+    // METODI INOLTRATI
+    // ====================================================
+
+    @Override
+    public Headers getRequestHeaders() {
+        return originale.getRequestHeaders();
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return originale.getResponseHeaders();
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return originale.getRequestURI();
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return originale.getRequestMethod();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return originale.getHttpContext();
+    }
+
+    @Override
+    public void close() {
+        originale.close();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return originale.getRequestBody();
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return originale.getResponseBody();
+    }
+
+    @Override
+    public void sendResponseHeaders(int codice, long lunghezza) throws IOException {
+        originale.sendResponseHeaders(codice, lunghezza);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return originale.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return originale.getResponseCode();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return originale.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return originale.getProtocol();
+    }
+
+    @Override
+    public Object getAttribute(String nome) {
+        return originale.getAttribute(nome);
+    }
+
+    @Override
+    public void setAttribute(String nome, Object valore) {
+        originale.setAttribute(nome, valore);
+    }
+
+    @Override
+    public void setStreams(InputStream in, OutputStream out) {
+        originale.setStreams(in, out);
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return originale.getPrincipal();
+    }
+}
@@ -5,6 +5,7 @@ import com.sun.net.httpserver.HttpHandler;
 
 import dominio.GestoreOrdini;
 import dominio.Ordine;
+import html.FormatoPrezzo;
 import html.StatoOrdineClienteHtml;
 
 import java.io.IOException;
@@ -26,6 +27,10 @@ import java.nio.charset.StandardCharsets;
  * - accetta solo richieste GET
  * - recupera l'ordine tramite codice
  * - mostra i dati dell'ordine oppure un messaggio di errore
+ *
+ * La pagina non va ricaricata: il suo script attende i cambi
+ * di stato su "/ordine/stato/attesa" (AttesaStatoOrdineHandler)
+ * e aggiorna lo stato mostrato appena lo staff lo modifica.
  */
 public class StatoOrdineClienteHandler implements HttpHandler {
 
@@ -115,8 +120,11 @@ public class StatoOrdineClienteHandler implements HttpHandler {
                 .append(ordine.getCodice())
                 .append("</p>");
 
+            // Codice e stato letti dallo script di aggiornamento
             html.append("<p><b>Stato:</b> ")
-                .append("<span class=\"badge bg-info\">")
+                .append("<span id=\"stato-ordine\" class=\"badge bg-info\" data-codice=\"")
+                .append(ordine.getCodice())
+                .append("\">")
                 .append(ordine.getStato())
                 .append("</span></p>");
             
@@ -127,9 +135,9 @@ public class StatoOrdineClienteHandler implements HttpHandler {
             }
 
             
-            html.append("<p><b>Totale:</b> ")
-                .append(ordine.getTotale())
-                .append(" €</p>");
+            html.append("<p><b>Totale:</b> ");
+            FormatoPrezzo.appendiEuro(html, ordine.getTotaleCentesimi())
+                .append("</p>");
 
             html.append(StatoOrdineClienteHtml.PARTE_2);
         }
@@ -0,0 +1,194 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import dominio.SessioneStaff;
+import dominio.StatoOrdine;
+import dominio.TempiStatoOrdini;
+import html.TempiStaffHtml;
+import metriche.Istogramma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * ============================================================
+ * HANDLER TEMPI STAFF
+ * ============================================================
+ *
+ * Rotta "/staff/tempi": tempi di permanenza degli ordini in
+ * ogni stato, per individuare i colli di bottiglia della
+ * cucina (ad esempio ordini fermi in RICEVUTO nelle ore di
+ * punta).
+ *
+ * Per ogni stato vengono mostrati numero di ordini, media,
+ * p50, p95, p99 e massimo, complessivi e per fascia oraria.
+ *
+ * I valori provengono dagli istogrammi in memoria
+ * (TempiStatoOrdini): la pagina non interroga il database.
+ */
+public class TempiStaffHandler implements HttpHandler {
+
+    // ====================================================
+    // ATTRIBUTI
+    // ====================================================
+
+    private final TempiStatoOrdini tempiStato;
+
+    // ====================================================
+    // COSTRUTTORE
+    // ====================================================
+
+    /**
+     * @param tempiStato tempi di permanenza negli stati
+     */
+    public TempiStaffHandler(TempiStatoOrdini tempiStato) {
+        this.tempiStato = tempiStato;
+    }
+
+    // ====================================================
+    // METODO HANDLE
+    // ====================================================
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+        // ------------------------------------------------
+        // AUTENTICAZIONE STAFF
+        // ------------------------------------------------
+        if (!SessioneStaff.isLoggato()) {
+            exchange.getResponseHeaders().add("Location", "/staff/login");
+            exchange.sendResponseHeaders(302, -1);
+            return;
+        }
+
+        // ------------------------------------------------
+        // SOLO GET
+        // ------------------------------------------------
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        // ------------------------------------------------
+        // COSTRUZIONE HTML
+        // ------------------------------------------------
+        StringBuilder html = new StringBuilder(8192);
+
+        html.append(TempiStaffHtml.TEMPI_PARTE_1);
+
+        // -------------------------------
+        // RIEPILOGO PER STATO
+        // -------------------------------
+        html.append("<h5 class=\"mt-3\">Riepilogo per stato</h5>");
+        apriTabella(html, "Stato");
+
+        for (StatoOrdine stato : StatoOrdine.values()) {
+
+            // Stato finale: nessuna durata
+            if (stato.getProssimoStato() == null) {
+                continue;
+            }
+
+            appendiRiga(html, stato.name(), tempiStato.getTempi(stato));
+        }
+
+        html.append("</tbody></table>");
+
+        // -------------------------------
+        // DETTAGLIO PER FASCIA ORARIA
+        // -------------------------------
+        for (StatoOrdine stato : StatoOrdine.values()) {
+
+            if (stato.getProssimoStato() == null
+                    || tempiStato.getTempi(stato).getConteggio() == 0) {
+                continue;
+            }
+
+            html.append("<h5 class=\"mt-4\">")
+                .append(stato.name())
+                .append(" — per fascia oraria</h5>");
+
+            apriTabella(html, "Ora");
+
+            for (int ora = 0; ora < 24; ora++) {
+
+                Istogramma tempi = tempiStato.getTempi(stato, ora);
+
+                if (tempi.getConteggio() == 0) {
+                    continue;
+                }
+
+                appendiRiga(html, String.format("%02d:00–%02d:00", ora, (ora + 1) % 24), tempi);
+            }
+
+            html.append("</tbody></table>");
+        }
+
+        html.append(TempiStaffHtml.TEMPI_PARTE_2);
+
+        // ------------------------------------------------
+        // RISPOSTA HTTP
+        // ------------------------------------------------
+        byte[] risposta = html.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders()
+                .set("Content-Type", "text/html; charset=UTF-8");
+
+        // Dati in continuo aggiornamento
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, risposta.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(risposta);
+        }
+    }
+
+    // ====================================================
+    // METODI DI SUPPORTO
+    // ====================================================
+
+    private void apriTabella(StringBuilder html, String prima) {
+        html.append("<table class=\"table table-sm table-striped bg-white shadow-sm\">")
+            .append("<thead class=\"table-dark\"><tr><th>")
+            .append(prima)
+            .append("</th><th class=\"num\">Ordini</th><th class=\"num\">Media</th>")
+            .append("<th class=\"num\">p50</th><th class=\"num\">p95</th>")
+            .append("<th class=\"num\">p99</th><th class=\"num\">Massimo</th>")
+            .append("</tr></thead><tbody>");
+    }
+
+    private void appendiRiga(StringBuilder html, String etichetta, Istogramma tempi) {
+
+        html.append("<tr><td>")
+            .append(etichetta)
+            .append("</td><td class=\"num\">")
+            .append(tempi.getConteggio())
+            .append("</td>");
+
+        appendiCella(html, (long) tempi.getMedia());
+        appendiCella(html, tempi.getPercentile(0.50));
+        appendiCella(html, tempi.getPercentile(0.95));
+        appendiCella(html, tempi.getPercentile(0.99));
+        appendiCella(html, tempi.getMassimo());
+
+        html.append("</tr>");
+    }
+
+    /**
+     * Cella con una durata in millisecondi, come minuti:secondi.
+     */
+    private void appendiCella(StringBuilder html, long millisecondi) {
+
+        long secondi = (millisecondi + 500) / 1000;
+        long resto = secondi % 60;
+
+        html.append("<td class=\"num\">")
+            .append(secondi / 60)
+            .append(resto < 10 ? ":0" : ":")
+            .append(resto)
+            .append("</td>");
+    }
+}
@@ -0,0 +1,67 @@
+package server;
+
+/*
+ * ============================================================
+ * CLASSE TESTO JSON
+ * ============================================================
+ *
+ * Supporto minimo alla scrittura di JSON a mano
+ * (API del carrello, eventi degli ordini).
+ *
+ * È una classe di utilità:
+ * - NON deve essere istanziata
+ * - contiene solo metodi statici
+ */
+public class TestoJson {
+
+    private TestoJson() {
+    }
+
+    /**
+     * Aggiunge una stringa JSON con i caratteri speciali escapati.
+     * Un valore null viene scritto come null.
+     *
+     * @param json   testo in costruzione
+     * @param valore stringa da aggiungere
+     * @return lo stesso StringBuilder
+     */
+    public static StringBuilder appendiStringa(StringBuilder json, String valore) {
+
+        if (valore == null) {
+            return json.append("null");
+        }
+
+        json.append('"');
+
+        for (int i = 0; i < valore.length(); i++) {
+
+            char c = valore.charAt(i);
+
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        return json.append('"');
+    }
+}
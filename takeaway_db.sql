@@ -22,7 +22,9 @@ COLLATE utf8mb4_unicode_ci;
  totale DECIMAL(10,2) NOT NULL CHECK (totale >= 0),
  stato VARCHAR(30) NOT NULL,
  data_creazione DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
- data_aggiornamento DATETIME NULL
+ -- Istante dell'ultimo cambio di stato, scritto dal server
+ -- (stesso valore di storico_stato_ordine.data_cambio)
+ data_aggiornamento DATETIME(3) NULL
  );
  
  CREATE TABLE riga_ordine (
@@ -42,6 +44,43 @@ FOREIGN KEY (prodotto_id)
 REFERENCES prodotto(id)	
  );
 
+-- Indici della dashboard staff: pagine di ordini dal più
+-- recente, con o senza filtro sullo stato (paginazione
+-- keyset su data_creazione e id, nessun ordinamento in memoria)
+CREATE INDEX idx_ordine_data ON ordine (data_creazione, id);
+CREATE INDEX idx_ordine_stato_data ON ordine (stato, data_creazione, id);
+
+-- Storico dei cambi di stato degli ordini (solo inserimenti),
+-- scritto nella stessa transazione del cambio di stato: il
+-- tempo trascorso in ogni stato è la differenza tra due
+-- righe consecutive dello stesso ordine (RICEVUTO parte da
+-- ordine.data_creazione)
+CREATE TABLE storico_stato_ordine (
+ id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ ordine_id INT NOT NULL,
+ stato_precedente VARCHAR(30) NOT NULL,
+ stato VARCHAR(30) NOT NULL,
+ data_cambio DATETIME(3) NOT NULL,
+
+ CONSTRAINT fk_storico_stato_ordine
+ FOREIGN KEY (ordine_id)
+ REFERENCES ordine(id)
+ ON DELETE CASCADE
+);
+
+CREATE INDEX idx_storico_ordine ON storico_stato_ordine (ordine_id, data_cambio);
+
+-- Contatore dei codici ordine: ogni istanza del server
+-- riserva un blocco di numeri con un solo UPDATE
+CREATE TABLE sequenza_codice (
+ nome VARCHAR(30) PRIMARY KEY,
+ prossimo BIGINT NOT NULL
+);
+
+-- Il contatore parte dopo gli ordini già presenti ("ORD-" + id)
+INSERT INTO sequenza_codice (nome, prossimo)
+SELECT 'ordine', COALESCE(MAX(id), 0) + 1 FROM ordine;
+
 INSERT INTO prodotto VALUES
 ('PAN1', 'Burger Classico', 'Panino con hamburger di manzo, lattuga e pomodoro', 6.50, 'Panini', LOAD_FILE('C:\Users\gallu\OneDrive\Desktop\TakeAway\img\burgerClassico.png')),
 ('PAN2', 'Burger al Formaggio', 'Hamburger di manzo con formaggio fuso', 7.00, 'Panini', LOAD_FILE("C:\Users\gallu\OneDrive\Desktop\TakeAway\img\burgerFormaggio.png")),